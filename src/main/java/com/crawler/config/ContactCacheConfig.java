@@ -0,0 +1,34 @@
+package com.crawler.config;
+
+import com.crawler.service.ContactCache;
+import com.crawler.service.H2StorageService;
+import com.crawler.service.MappedContactCache;
+import com.crawler.service.VersionedContactStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Configuration
+public class ContactCacheConfig {
+
+    // heap - контакты объектами в куче; mapped - сериализованными в отображённых файлах, в куче только url
+    @Bean(destroyMethod = "close")
+    public ContactCache contactCache(@Value("${storage.cache.mode:heap}") String mode,
+                                     @Value("${storage.cache.mapped.directory:./data/contact-cache}") String directory,
+                                     @Value("${storage.cache.mapped.segment-size-mb:256}") int segmentSizeMb) {
+        if ("mapped".equalsIgnoreCase(mode)) {
+            return new MappedContactCache(Path.of(directory), segmentSizeMb * 1024 * 1024);
+        }
+        return new VersionedContactStore();
+    }
+
+    // Холодный кэш не мешает обслуживать запросы (они идут в H2), поэтому статус UP, а прогресс - в деталях
+    @Bean
+    public HealthIndicator contactCacheHealthIndicator(H2StorageService storageService) {
+        return () -> Health.up().withDetails(storageService.getCacheStatus()).build();
+    }
+}
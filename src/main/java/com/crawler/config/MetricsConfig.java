@@ -0,0 +1,20 @@
+package com.crawler.config;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+
+@Configuration
+public class MetricsConfig {
+
+    // Очередь и активные задачи пула, обслуживающего HttpClient
+    @Bean
+    public MeterBinder ioExecutorMetrics(ExecutorService ioExecutorService) {
+        return registry -> new ExecutorServiceMetrics(ioExecutorService, "io", Collections.emptyList())
+                .bindTo(registry);
+    }
+}
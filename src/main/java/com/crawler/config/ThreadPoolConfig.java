@@ -3,9 +3,9 @@ package com.crawler.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -13,19 +13,18 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Configuration
 public class ThreadPoolConfig {
 
-    @Bean
-    public ForkJoinPool crawlerForkJoinPool() {
-        return new ForkJoinPool(
-                Runtime.getRuntime().availableProcessors() * 2,
-                ForkJoinPool.defaultForkJoinWorkerThreadFactory,
-                null,
-                true
-        );
-    }
-
     @Bean
     public ExecutorService ioExecutorService() {
-        return Executors.newFixedThreadPool(10, new ThreadFactory() {
+        // На Java 21+ каждый запрос обслуживается виртуальным потоком
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            // На Java 17 HttpClient работает асинхронно, поэтому небольшого пула достаточно
+            // для обработки ответов при любом числе одновременных запросов
+        }
+
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
             private final AtomicInteger counter = new AtomicInteger(1);
 
             @Override
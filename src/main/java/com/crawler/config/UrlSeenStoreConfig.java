@@ -0,0 +1,25 @@
+package com.crawler.config;
+
+import com.crawler.service.BloomUrlSeenStore;
+import com.crawler.service.FingerprintUrlSeenStore;
+import com.crawler.service.UrlSeenStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class UrlSeenStoreConfig {
+
+    // Множество встреченных URL у каждого обхода своё.
+    // exact - точные отпечатки, растут с числом URL; bloom - фиксированный объём памяти ценой ложных срабатываний,
+    // фильтр рассчитан на бюджет страниц обхода, но не больше expected-urls
+    @Bean
+    public UrlSeenStore.Factory urlSeenStoreFactory(@Value("${crawler.seen.mode:exact}") String mode,
+                                                    @Value("${crawler.seen.expected-urls:10000000}") long expectedUrls,
+                                                    @Value("${crawler.seen.false-positive-rate:0.001}") double falsePositiveRate) {
+        if ("bloom".equalsIgnoreCase(mode)) {
+            return jobUrls -> new BloomUrlSeenStore(Math.max(1, Math.min(jobUrls, expectedUrls)), falsePositiveRate);
+        }
+        return jobUrls -> new FingerprintUrlSeenStore();
+    }
+}
@@ -1,11 +1,18 @@
 package com.crawler.controller;
 
+import com.crawler.service.ContentFingerprintService;
+import com.crawler.service.CrawlJob;
 import com.crawler.service.CrawlerService;
+import com.crawler.service.PageStateService;
 import com.crawler.service.SchedulerService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -19,23 +26,56 @@ public class CrawlerController {
     @Autowired
     private SchedulerService schedulerService;
 
+    @Autowired
+    private ContentFingerprintService contentFingerprintService;
+
+    @Autowired
+    private PageStateService pageStateService;
+
     @PostMapping("/start")
     public ResponseEntity<Map<String, String>> startCrawling(@RequestBody Map<String, Object> request) {
         @SuppressWarnings("unchecked")
-        Set<String> urls = (Set<String>) request.get("urls");
+        Set<String> urls = Set.copyOf((Collection<String>) request.get("urls"));
         int maxDepth = (int) request.getOrDefault("maxDepth", 2);
         int maxPages = (int) request.getOrDefault("maxPages", 100);
 
-        crawlerService.startCrawling(urls, maxDepth, maxPages);
+        CrawlJob job = crawlerService.startCrawling(urls, maxDepth, maxPages);
 
         return ResponseEntity.ok(Map.of(
                 "status", "started",
+                "jobId", job.getId(),
                 "urls", String.valueOf(urls.size()),
                 "maxDepth", String.valueOf(maxDepth),
                 "maxPages", String.valueOf(maxPages)
         ));
     }
 
+    @GetMapping("/jobs")
+    public ResponseEntity<List<Map<String, Object>>> getJobs() {
+        return ResponseEntity.ok(crawlerService.getJobs().stream()
+                .sorted(Comparator.comparingLong(CrawlJob::getStartedAt).reversed())
+                .map(this::toView)
+                .toList());
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String id) {
+        CrawlJob job = crawlerService.getJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(toView(job));
+    }
+
+    @PostMapping("/jobs/{id}/cancel")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable String id) {
+        CrawlJob job = crawlerService.cancelJob(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(toView(job));
+    }
+
     @PostMapping("/add-url")
     public ResponseEntity<Map<String, String>> addStartUrl(@RequestParam String url) {
         schedulerService.addStartUrl(url);
@@ -44,10 +84,43 @@ public class CrawlerController {
 
     @GetMapping("/status")
     public ResponseEntity<Map<String, Object>> getStatus() {
-        return ResponseEntity.ok(Map.of(
-                "startUrls", schedulerService.getStartUrls().size(),
-                "visitedUrls", crawlerService.getVisitedUrls().size(),
-                "activeTasks", crawlerService.getActiveTasks()
-        ));
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("startUrls", schedulerService.getStartUrls().size());
+        status.put("visitedUrls", crawlerService.getVisitedUrls());
+        status.put("seenStoreBytes", crawlerService.getSeenStoreBytes());
+        status.put("duplicatesAvoided", crawlerService.getDuplicatesAvoided());
+        status.put("exactDuplicatePages", contentFingerprintService.getExactDuplicates());
+        status.put("nearDuplicatePages", contentFingerprintService.getNearDuplicates());
+        status.put("notModifiedPages", pageStateService.getNotModifiedPages());
+        status.put("unchangedPages", pageStateService.getUnchangedPages());
+        status.put("changedPages", pageStateService.getChangedPages());
+        status.put("recrawlQueueSize", schedulerService.getRecrawlQueueSize());
+        status.put("runningJobs", crawlerService.getRunningJobs());
+        status.put("activeTasks", crawlerService.getActiveTasks());
+        status.put("frontierSize", crawlerService.getFrontierSize());
+        status.put("spilledLinks", crawlerService.getSpilledLinks());
+        status.put("overflowSize", crawlerService.getOverflowSize());
+        return ResponseEntity.ok(status);
+    }
+
+    // Глубина очередей по стадиям: стадия с полной очередью - узкое место
+    @GetMapping("/pipeline")
+    public ResponseEntity<Map<String, Map<String, Object>>> getPipeline() {
+        return ResponseEntity.ok(crawlerService.getPipelineStats());
+    }
+
+    private Map<String, Object> toView(CrawlJob job) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("id", job.getId());
+        view.put("status", job.getStatus());
+        view.put("startUrls", job.getStartUrls());
+        view.put("maxDepth", job.getMaxDepth());
+        view.put("maxPages", job.getMaxPages());
+        view.put("pagesClaimed", job.getPagesClaimed());
+        view.put("pagesProcessed", job.getPagesProcessed());
+        view.put("outstanding", job.getOutstanding());
+        view.put("startedAt", job.getStartedAt());
+        view.put("finishedAt", job.getFinishedAt());
+        return view;
     }
 }
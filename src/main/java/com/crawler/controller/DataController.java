@@ -1,52 +1,177 @@
 package com.crawler.controller;
 
 import com.crawler.model.ContactInfo;
+import com.crawler.service.ContentFingerprintService;
 import com.crawler.service.H2StorageService;
+import com.crawler.service.PageStateService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import tools.jackson.core.JsonGenerator;
+import tools.jackson.core.StreamWriteFeature;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectWriter;
+import tools.jackson.databind.SerializationFeature;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+// Списочные методы принимают параметр cursor: с ним ответ отдаётся страницами {items, nextCursor}
+// (пустой cursor - первая страница). Запрос с Accept: application/x-ndjson или format=ndjson
+// получает потоковую выдачу - по контакту в строке, без сборки списка в памяти.
 @RestController
 @RequestMapping("/api/data")
 public class DataController {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 10_000;
+    private static final int NDJSON_FLUSH_EVERY = 256;
+
     @Autowired
     private H2StorageService storageService;
 
-    @GetMapping("/answer")
-    public ResponseEntity<List<ContactInfo>> getAnswer() {
-        List<ContactInfo> contacts = storageService.getAllContacts();
-        return ResponseEntity.ok(contacts);
-    }
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ContentFingerprintService contentFingerprintService;
+
+    @Autowired
+    private PageStateService pageStateService;
 
-    @GetMapping("/contacts")
-    public ResponseEntity<List<ContactInfo>> getAllContacts() {
+    // Без параметров - прежний полный список; постранично и потоком - в порядке url
+    @GetMapping({"/answer", "/contacts"})
+    public ResponseEntity<?> getAllContacts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        if (cursor != null) {
+            return ResponseEntity.ok(storageService.getContactsPage("url", true, emptyToNull(cursor), pageSize(limit)));
+        }
         return ResponseEntity.ok(storageService.getAllContacts());
     }
 
+    @GetMapping(value = {"/answer", "/contacts"}, produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamAllContacts(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return ndjson(sink -> storageService.streamContacts("url", true, emptyToNull(cursor),
+                limit != null ? limit : Integer.MAX_VALUE, sink));
+    }
+
     @GetMapping("/contacts/sorted")
-    public ResponseEntity<List<ContactInfo>> getSortedContacts(
+    public ResponseEntity<?> getSortedContacts(
             @RequestParam String field,
-            @RequestParam(defaultValue = "true") boolean ascending) {
-        return ResponseEntity.ok(storageService.getContactsSortedBy(field, ascending));
+            @RequestParam(defaultValue = "true") boolean ascending,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        if (cursor != null) {
+            return ResponseEntity.ok(storageService.getContactsPage(field, ascending, emptyToNull(cursor),
+                    pageSize(limit)));
+        }
+        return ResponseEntity.ok(storageService.getContactsSortedBy(field, ascending, offset,
+                limit != null ? limit : Integer.MAX_VALUE));
+    }
+
+    @GetMapping(value = "/contacts/sorted", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamSortedContacts(
+            @RequestParam String field,
+            @RequestParam(defaultValue = "true") boolean ascending,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        return ndjson(sink -> storageService.streamContacts(field, ascending, emptyToNull(cursor),
+                limit != null ? limit : Integer.MAX_VALUE, sink));
     }
 
     @GetMapping("/contacts/filter")
-    public ResponseEntity<List<ContactInfo>> filterContacts(@RequestParam String search) {
+    public ResponseEntity<?> filterContacts(
+            @RequestParam String search,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        if (cursor != null) {
+            return ResponseEntity.ok(storageService.filterContactsPage(search, emptyToNull(cursor), pageSize(limit)));
+        }
         return ResponseEntity.ok(storageService.filterContacts(search));
     }
 
+    @GetMapping(value = "/contacts/filter", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamFilteredContacts(@RequestParam String search) {
+        return ndjson(sink -> storageService.streamFilteredContacts(search, sink));
+    }
+
+    @GetMapping("/contacts/by-phone")
+    public ResponseEntity<List<ContactInfo>> findByPhone(@RequestParam String phone) {
+        return ResponseEntity.ok(storageService.findByPhone(phone));
+    }
+
+    @GetMapping("/contacts/by-email")
+    public ResponseEntity<List<ContactInfo>> findByEmail(@RequestParam String email) {
+        return ResponseEntity.ok(storageService.findByEmail(email));
+    }
+
     @GetMapping("/count")
     public ResponseEntity<Map<String, Integer>> getDataCount() {
         return ResponseEntity.ok(Map.of("count", storageService.getDataCount()));
     }
 
+    // Состояние кэша: прогрет ли он и какая часть строк уже загружена
+    @GetMapping("/cache")
+    public ResponseEntity<Map<String, Object>> getCacheStatus() {
+        return ResponseEntity.ok(storageService.getCacheStatus());
+    }
+
     @PostMapping("/clear")
     public ResponseEntity<Map<String, String>> clearData() {
         storageService.clearData();
+        contentFingerprintService.clear();
+        pageStateService.clear();
         return ResponseEntity.ok(Map.of("status", "cleared"));
     }
+
+    // Неверный курсор - ошибка клиента
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    private ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<ContactInfo>> source) {
+        // Генератор не сбрасывает поток после каждого значения и не закрывает его - это делает контейнер
+        ObjectWriter writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .without(StreamWriteFeature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n");
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = writer.createGenerator(out)) {
+                int[] written = {0};
+                source.accept(contact -> {
+                    writer.writeValue(generator, contact);
+                    if (++written[0] % NDJSON_FLUSH_EVERY == 0) {
+                        generator.flush();
+                    }
+                });
+                if (written[0] > 0) {
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return limit;
+    }
+
+    private String emptyToNull(String cursor) {
+        return cursor == null || cursor.isEmpty() ? null : cursor;
+    }
 }
@@ -14,8 +14,11 @@ public class ContactInfo implements Serializable {
     private Set<String> addresses;
     private long timestamp;
     private String title;
+    // Компактные копии из кэша общие для всех читателей и не меняются
+    private final boolean readOnly;
 
     public ContactInfo() {
+        this.readOnly = false;
         this.phones = ConcurrentHashMap.newKeySet();
         this.emails = ConcurrentHashMap.newKeySet();
         this.addresses = ConcurrentHashMap.newKeySet();
@@ -27,37 +30,86 @@ public class ContactInfo implements Serializable {
         this.url = url;
     }
 
+    private ContactInfo(String url, String title, long timestamp,
+                        Set<String> phones, Set<String> emails, Set<String> addresses) {
+        this.url = url;
+        this.title = title;
+        this.timestamp = timestamp;
+        this.phones = phones;
+        this.emails = emails;
+        this.addresses = addresses;
+        this.readOnly = true;
+    }
+
+    // Компактная копия для кэша: вместо трёх ConcurrentHashMap - неизменяемые множества на массивах,
+    // пустые наборы - общий Set.of(). Телефоны и email повторяются на всех страницах сайта,
+    // поэтому их строки интернируются и хранятся один раз на весь кэш. Копия только для чтения:
+    // любой setter или add* бросает UnsupportedOperationException
+    public ContactInfo compact() {
+        return new ContactInfo(url, title, timestamp,
+                compactSet(phones, true), compactSet(emails, true), compactSet(addresses, false));
+    }
+
+    // Контакт из уже неизменяемых наборов - для кэшей, которые хранят контакты сериализованными
+    public static ContactInfo ofCompact(String url, String title, long timestamp,
+                                        Set<String> phones, Set<String> emails, Set<String> addresses) {
+        return new ContactInfo(url, title, timestamp, phones, emails, addresses);
+    }
+
+    private static Set<String> compactSet(Set<String> values, boolean intern) {
+        if (values.isEmpty()) {
+            return Set.of();
+        }
+        String[] array = values.toArray(new String[0]);
+        if (intern) {
+            for (int i = 0; i < array.length; i++) {
+                array[i] = array[i].intern();
+            }
+        }
+        return Set.of(array);
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Contact info " + url
+                    + " is a read-only compact copy; create a new ContactInfo to change it");
+        }
+    }
+
     public String getUrl() { return url; }
-    public void setUrl(String url) { this.url = url; }
+    public void setUrl(String url) { checkWritable(); this.url = url; }
 
     public Set<String> getPhones() { return phones; }
-    public void setPhones(Set<String> phones) { this.phones = phones; }
+    public void setPhones(Set<String> phones) { checkWritable(); this.phones = phones; }
 
     public Set<String> getEmails() { return emails; }
-    public void setEmails(Set<String> emails) { this.emails = emails; }
+    public void setEmails(Set<String> emails) { checkWritable(); this.emails = emails; }
 
     public Set<String> getAddresses() { return addresses; }
-    public void setAddresses(Set<String> addresses) { this.addresses = addresses; }
+    public void setAddresses(Set<String> addresses) { checkWritable(); this.addresses = addresses; }
 
     public long getTimestamp() { return timestamp; }
-    public void setTimestamp(long timestamp) { this.timestamp = timestamp; }
+    public void setTimestamp(long timestamp) { checkWritable(); this.timestamp = timestamp; }
 
     public String getTitle() { return title; }
-    public void setTitle(String title) { this.title = title; }
+    public void setTitle(String title) { checkWritable(); this.title = title; }
 
     public void addPhone(String phone) {
+        checkWritable();
         if (phone != null && !phone.trim().isEmpty()) {
             this.phones.add(phone.trim());
         }
     }
 
     public void addEmail(String email) {
+        checkWritable();
         if (email != null && !email.trim().isEmpty()) {
             this.emails.add(email.trim().toLowerCase());
         }
     }
 
     public void addAddress(String address) {
+        checkWritable();
         if (address != null && !address.trim().isEmpty()) {
             this.addresses.add(address.trim());
         }
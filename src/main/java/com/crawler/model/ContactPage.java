@@ -0,0 +1,18 @@
+package com.crawler.model;
+
+import java.util.List;
+
+public class ContactPage {
+    private final List<ContactInfo> items;
+    private final String nextCursor;
+
+    public ContactPage(List<ContactInfo> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ContactInfo> getItems() { return items; }
+
+    // null, если страница последняя
+    public String getNextCursor() { return nextCursor; }
+}
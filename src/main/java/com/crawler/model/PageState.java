@@ -0,0 +1,64 @@
+package com.crawler.model;
+
+import java.io.Serializable;
+
+// Состояние загруженной страницы для повторного обхода: валидаторы HTTP-кэша,
+// хэш видимого текста и счётчики загрузок и изменений
+public class PageState implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String url;
+    private String etag;
+    private String lastModified;
+    private long contentHash;
+    private long firstCrawled;
+    private long lastCrawled;
+    private long lastChanged;
+    private int fetchCount;
+    private int changeCount;
+
+    public PageState() {
+    }
+
+    public PageState(String url) {
+        this.url = url;
+    }
+
+    public String getUrl() { return url; }
+    public void setUrl(String url) { this.url = url; }
+
+    public String getEtag() { return etag; }
+    public void setEtag(String etag) { this.etag = etag; }
+
+    public String getLastModified() { return lastModified; }
+    public void setLastModified(String lastModified) { this.lastModified = lastModified; }
+
+    public long getContentHash() { return contentHash; }
+    public void setContentHash(long contentHash) { this.contentHash = contentHash; }
+
+    public long getFirstCrawled() { return firstCrawled; }
+    public void setFirstCrawled(long firstCrawled) { this.firstCrawled = firstCrawled; }
+
+    public long getLastCrawled() { return lastCrawled; }
+    public void setLastCrawled(long lastCrawled) { this.lastCrawled = lastCrawled; }
+
+    public long getLastChanged() { return lastChanged; }
+    public void setLastChanged(long lastChanged) { this.lastChanged = lastChanged; }
+
+    public int getFetchCount() { return fetchCount; }
+    public void setFetchCount(int fetchCount) { this.fetchCount = fetchCount; }
+
+    public int getChangeCount() { return changeCount; }
+    public void setChangeCount(int changeCount) { this.changeCount = changeCount; }
+
+    @Override
+    public String toString() {
+        return "PageState{" +
+                "url='" + url + '\'' +
+                ", etag='" + etag + '\'' +
+                ", lastModified='" + lastModified + '\'' +
+                ", fetchCount=" + fetchCount +
+                ", changeCount=" + changeCount +
+                '}';
+    }
+}
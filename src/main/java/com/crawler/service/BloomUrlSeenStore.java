@@ -0,0 +1,94 @@
+package com.crawler.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Фильтр Блума фиксированного размера, рассчитанного по ожидаемому числу URL и доле ложных срабатываний.
+// Ложное срабатывание означает, что новый URL будет принят за уже виденный и не будет обойдён.
+// Биты ставятся CAS-ом без блокировок; при гонке двух add одного URL оба могут вернуть true.
+public class BloomUrlSeenStore implements UrlSeenStore {
+
+    private final AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLong size;
+
+    public BloomUrlSeenStore(long expectedUrls, double falsePositiveRate) {
+        if (expectedUrls <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expectedUrls must be positive and falsePositiveRate in (0, 1)");
+        }
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (ln2 * ln2));
+        int words = (int) Math.min(Integer.MAX_VALUE - 8, (optimalBits + 63) / 64);
+        this.bits = new AtomicLongArray(words);
+        this.bitCount = (long) words * 64;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedUrls * ln2));
+        this.size = new AtomicLong();
+    }
+
+    @Override
+    public boolean add(String url) {
+        return addFingerprint(UrlSeenStore.fingerprint(url));
+    }
+
+    @Override
+    public boolean addFingerprint(long fingerprint) {
+        long step = UrlSeenStore.mix(fingerprint ^ 0x9e3779b97f4a7c15L) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            changed |= setBit(Long.remainderUnsigned(fingerprint + i * step, bitCount));
+        }
+        if (changed) {
+            size.incrementAndGet();
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long fingerprint = UrlSeenStore.fingerprint(url);
+        long step = UrlSeenStore.mix(fingerprint ^ 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Long.remainderUnsigned(fingerprint + i * step, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < bits.length(); i++) {
+            bits.set(i, 0);
+        }
+        size.set(0);
+    }
+
+    @Override
+    public long memoryBytes() {
+        return bits.length() * (long) Long.BYTES;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    private boolean setBit(long bit) {
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current = bits.get(word);
+        while ((current & mask) == 0) {
+            if (bits.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+            current = bits.get(word);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,40 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+// Кэш контактов по url, с которым работают H2StorageService и его индексы. Реализации отдают
+// неизменяемые снимки на один момент времени без блокировки читателей; одновременные записи
+// с clear исключает вызывающий.
+public interface ContactCache {
+
+    record Snapshot(long version, List<ContactInfo> contacts) {
+    }
+
+    ContactInfo get(String url);
+
+    default ContactInfo put(ContactInfo contact) {
+        return put(contact, (previous, current) -> { });
+    }
+
+    // Возвращает прежнюю версию. onChange вызывается до того, как запись станет видна следующей записи того же url
+    ContactInfo put(ContactInfo contact, BiConsumer<ContactInfo, ContactInfo> onChange);
+
+    // Не заменяет уже сохранённую версию: для загрузки из H2 одновременно с новыми записями.
+    // onChange вызывается, только если контакт добавлен
+    boolean putIfAbsent(ContactInfo contact, BiConsumer<ContactInfo, ContactInfo> onChange);
+
+    void putAll(Collection<ContactInfo> contacts);
+
+    Snapshot snapshot();
+
+    int size();
+
+    void clear();
+
+    default void close() {
+    }
+}
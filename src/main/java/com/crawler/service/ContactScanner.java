@@ -0,0 +1,365 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+
+// Однопроходный сканер контактов. Повторяет прежние регулярные выражения:
+//   телефон  (\+7|8|7)[\s\-()]*(\d[\s\-()]*){9,10}, годен только с ровно 10 цифрами после префикса;
+//   email    \b[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\.[A-Z|a-z]{2,}\b;
+//   адрес    (г.? Город|город Город),? (ул.? Улица|проспект Улица),? (номер)?, длиннее 10 символов;
+//   название первый <title>...</title> в пределах одной строки.
+// Каждое выражение искалось отдельным Matcher.find(), поэтому для каждого хранится своя позиция,
+// с которой разрешено следующее совпадение. Текст проходится один раз, кандидаты отбираются по первому символу.
+public final class ContactScanner {
+
+    public static final String NO_TITLE = "No Title";
+
+    private static final String TITLE_OPEN = "<title>";
+    private static final String TITLE_CLOSE = "</title>";
+    private static final String CITY = "город";
+    private static final String AVENUE = "проспект";
+    private static final int PHONE_DIGITS = 10;
+    private static final int MIN_ADDRESS_LENGTH = 10;
+
+    private final CharSequence text;
+    private final int length;
+    private final ContactInfo target;
+    private final boolean findTitle;
+    private final char[] phone = new char[2 + PHONE_DIGITS];
+
+    private String title;
+    private int phoneFrom;
+    private int emailFrom;
+    private int addressFrom;
+
+    // Конец текущей серии символов локальной части email и результат разбора домена после неё
+    private int localRunEnd = -1;
+    private int domainEnd = -1;
+
+    private ContactScanner(CharSequence text, ContactInfo target, boolean findTitle) {
+        this.text = text;
+        this.length = text.length();
+        this.target = target;
+        this.findTitle = findTitle;
+    }
+
+    // Разметка целиком: контакты и название из <title>
+    public static void scan(CharSequence text, ContactInfo target) {
+        if (text == null) {
+            target.setTitle(NO_TITLE);
+            return;
+        }
+        new ContactScanner(text, target, true).run();
+    }
+
+    // Уже извлечённый видимый текст: только телефоны, email и адреса, название не трогается
+    public static void scanText(CharSequence text, ContactInfo target) {
+        if (text != null) {
+            new ContactScanner(text, target, false).run();
+        }
+    }
+
+    private void run() {
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '<' && findTitle && title == null) {
+                scanTitle(i);
+            }
+            if ((c == '+' || c == '8' || c == '7') && i >= phoneFrom) {
+                scanPhone(i);
+            }
+            if (isLocalChar(c) && i >= emailFrom) {
+                scanEmail(i);
+            }
+            if ((c == 'г' || c == 'Г') && i >= addressFrom) {
+                scanAddress(i);
+            }
+        }
+        if (findTitle) {
+            target.setTitle(title != null ? title : NO_TITLE);
+        }
+    }
+
+    private void scanTitle(int start) {
+        if (!regionMatchesAscii(start, TITLE_OPEN)) {
+            return;
+        }
+        // Ленивое (.*?) не переходит через перевод строки
+        for (int i = start + TITLE_OPEN.length(); i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '<' && regionMatchesAscii(i, TITLE_CLOSE)) {
+                title = text.subSequence(start + TITLE_OPEN.length(), i).toString().trim();
+                return;
+            }
+            if (isLineTerminator(c)) {
+                return;
+            }
+        }
+    }
+
+    private void scanPhone(int start) {
+        int i = start;
+        char prefix = text.charAt(i);
+        if (prefix == '+') {
+            if (i + 1 >= length || text.charAt(i + 1) != '7') {
+                return;
+            }
+            i++;
+        }
+        i++;
+        i = skipPhoneSeparators(i);
+
+        int digits = 0;
+        while (digits < PHONE_DIGITS && i < length && isAsciiDigit(text.charAt(i))) {
+            phone[2 + digits++] = text.charAt(i);
+            i = skipPhoneSeparators(i + 1);
+        }
+        if (digits < PHONE_DIGITS - 1) {
+            return;
+        }
+
+        // Совпадение из 9 цифр тоже поглощает текст, хотя номером не считается
+        phoneFrom = i;
+        if (digits == PHONE_DIGITS) {
+            phone[0] = '+';
+            phone[1] = '7';
+            target.addPhone(new String(phone));
+        }
+    }
+
+    private void scanEmail(int start) {
+        if (start >= localRunEnd) {
+            localRunEnd = start;
+            while (localRunEnd < length && isLocalChar(text.charAt(localRunEnd))) {
+                localRunEnd++;
+            }
+            domainEnd = localRunEnd < length && text.charAt(localRunEnd) == '@' ? matchDomain(localRunEnd + 1) : -1;
+        }
+        if (domainEnd < 0 || !isBoundary(start)) {
+            return;
+        }
+        target.addEmail(text.subSequence(start, domainEnd).toString().toLowerCase());
+        emailFrom = domainEnd;
+    }
+
+    // [A-Za-z0-9.-]+\.[A-Z|a-z]{2,}\b с возвратами, как у жадных квантификаторов
+    private int matchDomain(int start) {
+        int end = start;
+        while (end < length && isDomainChar(text.charAt(end))) {
+            end++;
+        }
+        for (int dot = end - 1; dot > start; dot--) {
+            if (text.charAt(dot) != '.') {
+                continue;
+            }
+            int tldEnd = dot + 1;
+            while (tldEnd < length && isTldChar(text.charAt(tldEnd))) {
+                tldEnd++;
+            }
+            for (int candidate = tldEnd; candidate >= dot + 3; candidate--) {
+                if (isBoundary(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void scanAddress(int start) {
+        int end = matchAddress(start);
+        if (end < 0) {
+            return;
+        }
+        addressFrom = end;
+        String address = text.subSequence(start, end).toString().trim();
+        if (address.length() > MIN_ADDRESS_LENGTH) {
+            target.addAddress(address);
+        }
+    }
+
+    private int matchAddress(int start) {
+        // Первая альтернатива: г.? пробелы слово, слово сокращается при возврате
+        int word = skipSpaces(start + 1 < length && text.charAt(start + 1) == '.' ? start + 2 : start + 1);
+        int end = matchStreetAfterCity(word);
+        if (end >= 0) {
+            return end;
+        }
+
+        // Вторая: город пробелы+ слово
+        if (!regionMatchesIgnoreCase(start, CITY)) {
+            return -1;
+        }
+        int afterCity = start + CITY.length();
+        word = skipSpaces(afterCity);
+        return word > afterCity ? matchStreetAfterCity(word) : -1;
+    }
+
+    private int matchStreetAfterCity(int word) {
+        int wordEnd = skipWord(word);
+        for (int cityEnd = wordEnd; cityEnd > word; cityEnd--) {
+            int street = skipSpaces(skipComma(cityEnd));
+            int end = matchStreet(street);
+            if (end >= 0) {
+                return end;
+            }
+        }
+        return -1;
+    }
+
+    private int matchStreet(int start) {
+        if (start + 1 < length && (text.charAt(start) == 'у' || text.charAt(start) == 'У')
+                && (text.charAt(start + 1) == 'л' || text.charAt(start + 1) == 'Л')) {
+            int word = start + 2;
+            word = skipSpaces(word < length && text.charAt(word) == '.' ? word + 1 : word);
+            int wordEnd = skipWord(word);
+            if (wordEnd > word) {
+                return matchHouse(wordEnd);
+            }
+        }
+        if (regionMatchesIgnoreCase(start, AVENUE)) {
+            int afterAvenue = start + AVENUE.length();
+            int word = skipSpaces(afterAvenue);
+            int wordEnd = skipWord(word);
+            if (word > afterAvenue && wordEnd > word) {
+                return matchHouse(wordEnd);
+            }
+        }
+        return -1;
+    }
+
+    // ,?\s*(\d+[а-яА-Я]?)? - необязательный хвост, всегда совпадает
+    private int matchHouse(int start) {
+        int i = skipSpaces(skipComma(start));
+        int digits = i;
+        while (digits < length && isAsciiDigit(text.charAt(digits))) {
+            digits++;
+        }
+        if (digits == i) {
+            return i;
+        }
+        if (digits < length && isHouseLetter(text.charAt(digits))) {
+            digits++;
+        }
+        return digits;
+    }
+
+    private int skipPhoneSeparators(int i) {
+        while (i < length) {
+            char c = text.charAt(i);
+            if (!isSpace(c) && c != '-' && c != '(' && c != ')') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private int skipSpaces(int i) {
+        while (i < length && isSpace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private int skipComma(int i) {
+        return i < length && text.charAt(i) == ',' ? i + 1 : i;
+    }
+
+    private int skipWord(int i) {
+        while (i < length && isAddressWordChar(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private boolean regionMatchesAscii(int start, String expected) {
+        if (start + expected.length() > length) {
+            return false;
+        }
+        for (int k = 0; k < expected.length(); k++) {
+            char c = text.charAt(start + k);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if (c != expected.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean regionMatchesIgnoreCase(int start, String expected) {
+        if (start + expected.length() > length) {
+            return false;
+        }
+        for (int k = 0; k < expected.length(); k++) {
+            if (Character.toLowerCase(text.charAt(start + k)) != expected.charAt(k)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // \b в Java 17: граница между словесным и несловесным символом. Диакритический знак считается
+    // словесным, если перед ним стоит буква или цифра - так же, как в java.util.regex
+    private boolean isBoundary(int i) {
+        boolean left = i > 0 && isWordAt(Character.codePointBefore(text, i), i - 1);
+        boolean right = i < length && isWordAt(Character.codePointAt(text, i), i);
+        return left != right;
+    }
+
+    private boolean isWordAt(int codePoint, int index) {
+        if (codePoint == '_' || Character.isLetterOrDigit(codePoint)) {
+            return true;
+        }
+        return Character.getType(codePoint) == Character.NON_SPACING_MARK && hasBaseCharacter(index);
+    }
+
+    private boolean hasBaseCharacter(int index) {
+        for (int i = index; i >= 0; i--) {
+            int codePoint = Character.codePointAt(text, i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                return true;
+            }
+            if (Character.getType(codePoint) != Character.NON_SPACING_MARK) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isLocalChar(char c) {
+        return isAsciiLetterOrDigit(c) || c == '.' || c == '_' || c == '%' || c == '+' || c == '-';
+    }
+
+    private static boolean isDomainChar(char c) {
+        return isAsciiLetterOrDigit(c) || c == '.' || c == '-';
+    }
+
+    private static boolean isTldChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '|';
+    }
+
+    private static boolean isAsciiLetterOrDigit(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isAsciiDigit(c);
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isAddressWordChar(char c) {
+        return (c >= 'а' && c <= 'я') || (c >= 'А' && c <= 'Я') || c == 'ё' || c == 'Ё' || c == '-';
+    }
+
+    private static boolean isHouseLetter(char c) {
+        return (c >= 'а' && c <= 'я') || (c >= 'А' && c <= 'Я');
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
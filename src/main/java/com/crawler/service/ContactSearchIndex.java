@@ -0,0 +1,269 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Инвертированный индекс по триграммам для поиска подстроки в url, названии, телефонах, email и адресах.
+// Каждой версии контакта выдаётся возрастающий docId, поэтому списки вхождений отсортированы
+// и пересекаются бинарным поиском. Запись сериализуется внутренней блокировкой, чтение идёт без блокировок.
+// Списки вхождений, нумерация и документы лежат в одном State: перестройка и очистка собирают новый
+// и публикуют его одной volatile-записью, поэтому читатель никогда не видит наполовину перестроенный индекс.
+public class ContactSearchIndex {
+
+    public static final int GRAM = 3;
+
+    private static final int INITIAL_POSTING_CAPACITY = 4;
+    private static final int REBUILD_THRESHOLD = 100_000;
+
+    private final Function<String, ContactInfo> resolver;
+    private final ReentrantLock writeLock;
+    private volatile State state;
+
+    public ContactSearchIndex(Function<String, ContactInfo> resolver) {
+        this.resolver = resolver;
+        this.writeLock = new ReentrantLock();
+        this.state = new State(1024);
+    }
+
+    public void update(ContactInfo previous, ContactInfo current) {
+        writeLock.lock();
+        try {
+            State index = state;
+            if (previous != null) {
+                removeDocument(index, previous);
+            }
+            if (current != null) {
+                addDocument(index, current);
+            }
+            if (index.deadDocs > REBUILD_THRESHOLD && index.deadDocs > index.docIds.size()) {
+                rebuild(index, current);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void addAll(Collection<ContactInfo> contacts) {
+        writeLock.lock();
+        try {
+            State index = state;
+            contacts.forEach(contact -> addDocument(index, contact));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void clear() {
+        writeLock.lock();
+        try {
+            state = new State(1024);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Возвращает null, если запрос короче триграммы и индекс не может его сузить
+    public List<ContactInfo> search(String searchTerm) {
+        List<ContactInfo> result = new ArrayList<>();
+        return search(searchTerm, result::add) ? result : null;
+    }
+
+    // Передаёт найденные контакты по одному, не собирая их в список; false - запрос не индексируется
+    public boolean search(String searchTerm, Consumer<ContactInfo> sink) {
+        String term = searchTerm.toLowerCase();
+        if (term.length() < GRAM) {
+            return false;
+        }
+
+        Set<Long> grams = new HashSet<>();
+        addGrams(term, grams);
+
+        // Все чтения - из одного состояния, даже если тем временем опубликовано новое
+        State index = state;
+        Posting[] lists = new Posting[grams.size()];
+        int[] sizes = new int[grams.size()];
+        int count = 0;
+        for (Long gram : grams) {
+            Posting posting = index.postings.get(gram);
+            if (posting == null || posting.size == 0) {
+                return true;
+            }
+            lists[count++] = posting;
+        }
+
+        // Снимок списков: размер читается раньше массива, поэтому все элементы до size уже записаны
+        int[][] ids = new int[count][];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            sizes[i] = lists[i].size;
+            ids[i] = lists[i].ids;
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> sizes[i]));
+
+        String[] currentDocs = index.docs;
+        int smallest = order[0];
+        for (int n = 0; n < sizes[smallest]; n++) {
+            int docId = ids[smallest][n];
+            if (!containsInAll(docId, ids, sizes, order)) {
+                continue;
+            }
+
+            // Документ удалён после того, как прочитаны списки
+            String url = docId < currentDocs.length ? currentDocs[docId] : null;
+            if (url == null) {
+                continue;
+            }
+            ContactInfo contact = resolver.apply(url);
+            if (contact != null && matches(contact, term)) {
+                sink.accept(contact);
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return state.docIds.size();
+    }
+
+    public static boolean matches(ContactInfo contact, String term) {
+        return contact.getUrl().toLowerCase().contains(term) ||
+                (contact.getTitle() != null && contact.getTitle().toLowerCase().contains(term)) ||
+                contact.getPhones().stream().anyMatch(phone -> phone.contains(term)) ||
+                contact.getEmails().stream().anyMatch(email -> email.contains(term)) ||
+                contact.getAddresses().stream().anyMatch(address -> address.toLowerCase().contains(term));
+    }
+
+    private boolean containsInAll(int docId, int[][] ids, int[] sizes, Integer[] order) {
+        for (int i = 1; i < order.length; i++) {
+            int list = order[i];
+            if (Arrays.binarySearch(ids[list], 0, sizes[list], docId) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void addDocument(State index, ContactInfo contact) {
+        int docId = index.nextDocId++;
+        if (docId == index.docs.length) {
+            index.docs = Arrays.copyOf(index.docs, index.docs.length * 2);
+        }
+        index.docs[docId] = contact.getUrl();
+        index.docIds.put(contact.getUrl(), docId);
+
+        for (Long gram : gramsOf(contact)) {
+            index.postings.computeIfAbsent(gram, key -> new Posting()).add(docId);
+        }
+    }
+
+    private static void removeDocument(State index, ContactInfo contact) {
+        Integer docId = index.docIds.remove(contact.getUrl());
+        if (docId == null) {
+            return;
+        }
+        index.docs[docId] = null;
+        index.deadDocs++;
+
+        String[] currentDocs = index.docs;
+        for (Long gram : gramsOf(contact)) {
+            Posting posting = index.postings.get(gram);
+            if (posting != null && ++posting.dead > posting.size / 2) {
+                // Заменяем список целиком: читатели продолжают работать со старым экземпляром
+                index.postings.put(gram, posting.compact(currentDocs));
+            }
+        }
+    }
+
+    // Перенумеровывает живые документы, когда мёртвых идентификаторов становится больше живых.
+    // Новое состояние собирается отдельно, а читатели до публикации работают с прежним
+    // Изменение current ещё не видно через resolver: update вызывается до того, как кэш примет запись
+    private void rebuild(State previous, ContactInfo current) {
+        int oldCount = previous.nextDocId;
+        State rebuilt = new State(Math.max(1024, Integer.highestOneBit(Math.max(1, oldCount - previous.deadDocs)) * 2));
+
+        for (int i = 0; i < oldCount; i++) {
+            String url = previous.docs[i];
+            ContactInfo contact = url == null ? null
+                    : current != null && url.equals(current.getUrl()) ? current : resolver.apply(url);
+            if (contact != null) {
+                addDocument(rebuilt, contact);
+            }
+        }
+        state = rebuilt;
+    }
+
+    private static Set<Long> gramsOf(ContactInfo contact) {
+        Set<Long> grams = new HashSet<>();
+        addGrams(contact.getUrl().toLowerCase(), grams);
+        if (contact.getTitle() != null) {
+            addGrams(contact.getTitle().toLowerCase(), grams);
+        }
+        contact.getPhones().forEach(phone -> addGrams(phone, grams));
+        contact.getEmails().forEach(email -> addGrams(email, grams));
+        contact.getAddresses().forEach(address -> addGrams(address.toLowerCase(), grams));
+        return grams;
+    }
+
+    private static void addGrams(String text, Set<Long> grams) {
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+    }
+
+    // Изменяется только под writeLock; читатели видят его после публикации через volatile-поле state
+    private static final class State {
+        private final Map<Long, Posting> postings = new ConcurrentHashMap<>();
+        private final Map<String, Integer> docIds = new ConcurrentHashMap<>();
+        private volatile String[] docs;
+        private int nextDocId;
+        private int deadDocs;
+
+        private State(int capacity) {
+            this.docs = new String[capacity];
+        }
+    }
+
+    private static final class Posting {
+        private volatile int[] ids = new int[INITIAL_POSTING_CAPACITY];
+        private volatile int size;
+        private int dead;
+
+        private void add(int docId) {
+            int[] current = ids;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                ids = current;
+            }
+            current[size] = docId;
+            size = size + 1;
+        }
+
+        private Posting compact(String[] docs) {
+            Posting compacted = new Posting();
+            int[] live = new int[size];
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                int docId = ids[i];
+                if (docs[docId] != null) {
+                    live[count++] = docId;
+                }
+            }
+            compacted.ids = Arrays.copyOf(live, Math.max(INITIAL_POSTING_CAPACITY, count));
+            compacted.size = count;
+            return compacted;
+        }
+    }
+}
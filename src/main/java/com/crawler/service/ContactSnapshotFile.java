@@ -0,0 +1,350 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.zip.CRC32C;
+
+// Двоичный снимок кэша контактов для быстрого перезапуска. Формат колоночный: заголовок, затем
+// url, названия, метки времени, телефоны, email и адреса - каждая колонка со своей длиной и CRC32C.
+// Строки хранятся как длина + UTF-8 (-1 - null), наборы - как число значений и строки подряд.
+// Файл пишется во временный и переименовывается, а при чтении отображается в память
+// и целиком проверяется до того, как первый контакт отдан вызывающему.
+public class ContactSnapshotFile {
+
+    private static final int MAGIC = 0x43534E50; // "CSNP"
+    private static final int FORMAT_VERSION = 1;
+    private static final int COLUMNS = 6;
+    // magic, версия, число контактов, число колонок, наибольшая метка времени, время записи, CRC заголовка
+    private static final int HEADER_BYTES = 4 * Integer.BYTES + 2 * Long.BYTES + Integer.BYTES;
+    private static final int COLUMN_HEADER_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final List<Function<ContactInfo, Set<String>>> SET_COLUMNS = List.of(
+            ContactInfo::getPhones, ContactInfo::getEmails, ContactInfo::getAddresses);
+
+    public record Info(int count, long maxTimestamp, long createdAt, long bytes) {
+    }
+
+    private final Path file;
+    private final Path temporary;
+
+    public ContactSnapshotFile(Path file) {
+        this.file = file;
+        this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    // Пишет снимок во временный файл; виден он станет только после commit()
+    public Info write(List<ContactInfo> contacts) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        long createdAt = System.currentTimeMillis();
+        long maxTimestamp = 0;
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ColumnWriter out = new ColumnWriter(channel, HEADER_BYTES);
+
+            out.beginColumn();
+            contacts.forEach(contact -> out.putString(contact.getUrl()));
+            out.endColumn();
+
+            out.beginColumn();
+            contacts.forEach(contact -> out.putString(contact.getTitle()));
+            out.endColumn();
+
+            out.beginColumn();
+            for (ContactInfo contact : contacts) {
+                out.putLong(contact.getTimestamp());
+                maxTimestamp = Math.max(maxTimestamp, contact.getTimestamp());
+            }
+            out.endColumn();
+
+            for (Function<ContactInfo, Set<String>> column : SET_COLUMNS) {
+                out.beginColumn();
+                for (ContactInfo contact : contacts) {
+                    Set<String> values = column.apply(contact);
+                    out.putInt(values.size());
+                    values.forEach(out::putString);
+                }
+                out.endColumn();
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                    .putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(contacts.size())
+                    .putInt(COLUMNS)
+                    .putLong(maxTimestamp)
+                    .putLong(createdAt);
+            header.putInt(checksum(header.array(), HEADER_BYTES - Integer.BYTES));
+            writeFully(channel, header.flip(), 0);
+            channel.force(true);
+            return new Info(contacts.size(), maxTimestamp, createdAt, channel.size());
+        } catch (UncheckedIOException e) {
+            Files.deleteIfExists(temporary);
+            throw e.getCause();
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    // Атомарно заменяет прежний снимок записанным
+    public void commit() throws IOException {
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void discard() throws IOException {
+        Files.deleteIfExists(temporary);
+    }
+
+    public void delete() throws IOException {
+        Files.deleteIfExists(temporary);
+        Files.deleteIfExists(file);
+    }
+
+    // Заголовок снимка без чтения колонок; null - снимка нет
+    public Info info() throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(channel);
+        }
+    }
+
+    // null - снимка нет. Повреждённый или чужой файл - IOException; при несовпадении контрольных сумм
+    // sink не вызывается ни разу
+    public Info read(Consumer<ContactInfo> sink) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Info info;
+        ByteBuffer[] columns = new ByteBuffer[COLUMNS];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            info = readHeader(channel);
+            long size = info.bytes();
+            long position = HEADER_BYTES;
+            for (int i = 0; i < COLUMNS; i++) {
+                if (position + COLUMN_HEADER_BYTES > size) {
+                    throw corrupt("file is truncated");
+                }
+                ByteBuffer columnHeader = readFully(channel, position, COLUMN_HEADER_BYTES);
+                long length = columnHeader.getLong(0);
+                position += COLUMN_HEADER_BYTES;
+                if (length < 0 || length > Integer.MAX_VALUE || position + length > size) {
+                    throw corrupt("column " + i + " is truncated");
+                }
+                // Отображение остаётся действительным и после закрытия канала
+                MappedByteBuffer column = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                CRC32C crc = new CRC32C();
+                crc.update(column.duplicate());
+                if ((int) crc.getValue() != columnHeader.getInt(Long.BYTES)) {
+                    throw corrupt("column " + i + " checksum mismatch");
+                }
+                columns[i] = column;
+                position += length;
+            }
+            if (position != size) {
+                throw corrupt("unexpected trailing bytes");
+            }
+        }
+
+        try {
+            for (int i = 0; i < info.count(); i++) {
+                String url = getString(columns[0]);
+                String title = getString(columns[1]);
+                long timestamp = columns[2].getLong();
+                sink.accept(ContactInfo.ofCompact(url, title, timestamp,
+                        getSet(columns[3], true), getSet(columns[4], true), getSet(columns[5], false)));
+            }
+        } catch (RuntimeException e) {
+            // Контрольные суммы сошлись, но колонки не согласуются с числом контактов
+            throw corrupt("malformed column data: " + e);
+        }
+        for (ByteBuffer column : columns) {
+            if (column.hasRemaining()) {
+                throw corrupt("column holds more values than contacts");
+            }
+        }
+        return info;
+    }
+
+    private Info readHeader(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_BYTES) {
+            throw corrupt("file is truncated");
+        }
+        ByteBuffer header = readFully(channel, 0, HEADER_BYTES);
+        if (header.getInt(0) != MAGIC) {
+            throw corrupt("not a contact snapshot");
+        }
+        if (header.getInt(4) != FORMAT_VERSION || header.getInt(12) != COLUMNS) {
+            throw corrupt("unsupported format version " + header.getInt(4));
+        }
+        if (header.getInt(HEADER_BYTES - Integer.BYTES) != checksum(header.array(), HEADER_BYTES - Integer.BYTES)) {
+            throw corrupt("header checksum mismatch");
+        }
+        return new Info(header.getInt(8), header.getLong(16), header.getLong(24), size);
+    }
+
+    private IOException corrupt(String reason) {
+        return new IOException("Invalid contact snapshot " + file + ": " + reason);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Как в ContactInfo.compact(): телефоны и email повторяются на страницах одного сайта и интернируются
+    private static Set<String> getSet(ByteBuffer buffer, boolean intern) {
+        int count = buffer.getInt();
+        if (count == 0) {
+            return Set.of();
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            String value = getString(buffer);
+            values[i] = intern ? value.intern() : value;
+        }
+        return Set.of(values);
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of " + channel);
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+
+    // Пишет колонки подряд через буфер. Длина и CRC колонки известны только в конце,
+    // поэтому место под них резервируется и заполняется позиционной записью
+    private static final class ColumnWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private final CRC32C crc;
+        private long position;
+        private long columnStart;
+        private long columnBytes;
+
+        private ColumnWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            this.crc = new CRC32C();
+            this.position = position;
+        }
+
+        void beginColumn() {
+            columnStart = position;
+            position += COLUMN_HEADER_BYTES;
+            columnBytes = 0;
+            crc.reset();
+        }
+
+        void endColumn() {
+            drain();
+            if (columnBytes > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Snapshot column exceeds 2 GB and cannot be mapped");
+            }
+            ByteBuffer header = ByteBuffer.allocate(COLUMN_HEADER_BYTES)
+                    .putLong(columnBytes)
+                    .putInt((int) crc.getValue());
+            write(header.flip(), columnStart);
+        }
+
+        void putInt(int value) {
+            ensure(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) {
+            ensure(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            if (bytes.length > buffer.capacity()) {
+                drain();
+                append(ByteBuffer.wrap(bytes));
+                return;
+            }
+            ensure(bytes.length);
+            buffer.put(bytes);
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                drain();
+            }
+        }
+
+        private void drain() {
+            append(buffer.flip());
+            buffer.clear();
+        }
+
+        private void append(ByteBuffer data) {
+            crc.update(data.duplicate());
+            columnBytes += data.remaining();
+            int length = data.remaining();
+            write(data, position);
+            position += length;
+        }
+
+        private void write(ByteBuffer data, long at) {
+            try {
+                writeFully(channel, data, at);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
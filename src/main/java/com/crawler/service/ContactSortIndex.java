@@ -0,0 +1,197 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+// Отсортированные представления кэша по каждому поддерживаемому полю. Ключи хранят только
+// значение поля и url, сам контакт берётся из кэша при чтении.
+public class ContactSortIndex {
+
+    public enum SortField {
+        URL(ContactInfo::getUrl, null),
+        TITLE(ContactInfo::getTitle, null),
+        PHONES(null, contact -> contact.getPhones().size()),
+        EMAILS(null, contact -> contact.getEmails().size()),
+        TIMESTAMP(null, ContactInfo::getTimestamp);
+
+        private final Function<ContactInfo, String> text;
+        private final ToLongFunction<ContactInfo> number;
+
+        SortField(Function<ContactInfo, String> text, ToLongFunction<ContactInfo> number) {
+            this.text = text;
+            this.number = number;
+        }
+
+        public boolean isText() {
+            return text != null;
+        }
+
+        // Неизвестное поле сортируется по url, как и раньше
+        public static SortField of(String field) {
+            for (SortField sortField : values()) {
+                if (sortField.name().equalsIgnoreCase(field)) {
+                    return sortField;
+                }
+            }
+            return URL;
+        }
+
+        private SortKey keyOf(ContactInfo contact) {
+            return text != null
+                    ? new SortKey(text.apply(contact), 0, contact.getUrl())
+                    : new SortKey(null, number.applyAsLong(contact), contact.getUrl());
+        }
+    }
+
+    public record CursorPosition(String text, long number, String url) {
+    }
+
+    private static final Comparator<SortKey> ORDER = Comparator
+            .comparing((SortKey key) -> key.text, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparingLong(key -> key.number)
+            .thenComparing(key -> key.url);
+
+    private final Function<String, ContactInfo> resolver;
+    private final Map<SortField, NavigableSet<SortKey>> indexes;
+
+    public ContactSortIndex(Function<String, ContactInfo> resolver) {
+        this.resolver = resolver;
+        this.indexes = new EnumMap<>(SortField.class);
+        for (SortField field : SortField.values()) {
+            indexes.put(field, new ConcurrentSkipListSet<>(ORDER));
+        }
+    }
+
+    public void update(ContactInfo previous, ContactInfo current) {
+        indexes.forEach((field, index) -> {
+            if (previous != null) {
+                index.remove(field.keyOf(previous));
+            }
+            if (current != null) {
+                index.add(field.keyOf(current));
+            }
+        });
+    }
+
+    public void addAll(Collection<ContactInfo> contacts) {
+        indexes.forEach((field, index) -> contacts.forEach(contact -> index.add(field.keyOf(contact))));
+    }
+
+    public void clear() {
+        indexes.values().forEach(NavigableSet::clear);
+    }
+
+    public List<ContactInfo> getSorted(SortField field, boolean ascending, int offset, int limit) {
+        Iterator<ContactInfo> iterator = iterator(field, ascending, null);
+
+        List<ContactInfo> result = new ArrayList<>(Math.min(limit, 1024));
+        int skipped = 0;
+        while (iterator.hasNext() && result.size() < limit) {
+            ContactInfo contact = iterator.next();
+            if (skipped < offset) {
+                skipped++;
+                continue;
+            }
+            result.add(contact);
+        }
+        return result;
+    }
+
+    // Ленивый проход по индексу, начиная сразу после позиции курсора (null - с начала).
+    // Курсор хранит сам ключ, поэтому продолжение не зависит от того, что случилось со строкой курсора
+    public Iterator<ContactInfo> iterator(SortField field, boolean ascending, String cursor) {
+        NavigableSet<SortKey> index = ascending ? indexes.get(field) : indexes.get(field).descendingSet();
+        if (cursor != null) {
+            index = index.tailSet(decodeCursor(field, cursor), false);
+        }
+        Iterator<SortKey> keys = index.iterator();
+
+        return new Iterator<>() {
+            private ContactInfo next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && keys.hasNext()) {
+                    SortKey key = keys.next();
+                    ContactInfo contact = resolver.apply(key.url);
+                    // Ключ мог устареть, если контакт изменили после сохранения
+                    if (contact != null && ORDER.compare(key, field.keyOf(contact)) == 0) {
+                        next = contact;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public ContactInfo next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ContactInfo contact = next;
+                next = null;
+                return contact;
+            }
+        };
+    }
+
+    public String cursorOf(SortField field, ContactInfo contact) {
+        SortKey key = field.keyOf(contact);
+        String value = field.text != null
+                ? (key.text == null ? "0" : "1" + key.text)
+                : Long.toString(key.number);
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((value + "\n" + key.url).getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String urlOf(SortField field, String cursor) {
+        return decodeCursor(field, cursor).url;
+    }
+
+    // Значение поля и url из курсора - для постраничного чтения из H2, пока кэш не прогрет
+    public CursorPosition positionOf(SortField field, String cursor) {
+        SortKey key = decodeCursor(field, cursor);
+        return new CursorPosition(key.text, key.number, key.url);
+    }
+
+    private SortKey decodeCursor(SortField field, String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // url не содержит перевода строки, а название может
+            int separator = decoded.lastIndexOf('\n');
+            String value = decoded.substring(0, separator);
+            String url = decoded.substring(separator + 1);
+            if (field.text != null) {
+                return new SortKey(value.startsWith("1") ? value.substring(1) : null, 0, url);
+            }
+            return new SortKey(null, Long.parseLong(value), url);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+
+    private static final class SortKey {
+        private final String text;
+        private final long number;
+        private final String url;
+
+        private SortKey(String text, long number, String url) {
+            this.text = text;
+            this.number = number;
+            this.url = url;
+        }
+    }
+}
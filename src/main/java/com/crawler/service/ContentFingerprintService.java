@@ -0,0 +1,285 @@
+package com.crawler.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Отпечатки содержимого страниц: точный хэш нормализованного текста и 64-битный SimHash
+// по шинглам из трёх слов. Страница, чей текст уже встречался на другом URL целиком или
+// с расстоянием Хэмминга SimHash не больше maxDistance, считается дубликатом: контакты
+// из неё не извлекаются и не сохраняются. Отпечатки пишутся в H2 и переживают перезапуск.
+@Service
+public class ContentFingerprintService {
+
+    public enum Verdict {
+        UNIQUE,
+        EXACT_DUPLICATE,
+        NEAR_DUPLICATE
+    }
+
+    private static final int SHINGLE_WORDS = 3;
+    // Слишком короткий текст (заглушки, страницы на одном JS) почти всегда совпадает - не сравниваем
+    private static final int MIN_SHINGLES = 8;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${crawler.dedup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${crawler.dedup.max-distance:3}")
+    private int maxDistance;
+
+    @Value("${storage.write-behind.queue-capacity:10000}")
+    private int writeQueueCapacity;
+
+    @Value("${storage.write-behind.batch-size:500}")
+    private int writeBatchSize;
+
+    @Value("${storage.write-behind.flush-interval-ms:200}")
+    private long writeFlushIntervalMs;
+
+    // Точный хэш текста -> отпечаток URL, на котором он впервые встретился
+    private final Map<Long, Long> exact;
+    // SimHash делится на maxDistance + 1 полос: у отпечатков на расстоянии не больше maxDistance
+    // хотя бы одна полоса совпадает целиком, поэтому кандидаты ищутся только по полосам
+    private final Map<Long, List<long[]>> bands;
+    private final AtomicLong exactDuplicates;
+    private final AtomicLong nearDuplicates;
+
+    private int bandCount;
+    private WriteBehindQueue<Fingerprint> writeQueue;
+
+    public ContentFingerprintService() {
+        this.exact = new HashMap<>();
+        this.bands = new HashMap<>();
+        this.exactDuplicates = new AtomicLong();
+        this.nearDuplicates = new AtomicLong();
+    }
+
+    @Autowired
+    public void initialize() {
+        bandCount = maxDistance + 1;
+        try {
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS content_fingerprint (
+                    content_hash BIGINT PRIMARY KEY,
+                    simhash BIGINT NOT NULL,
+                    url_hash BIGINT NOT NULL,
+                    url VARCHAR(1000)
+                )
+            """);
+            int[] loaded = {0};
+            jdbcTemplate.query("SELECT content_hash, simhash, url_hash FROM content_fingerprint", rs -> {
+                remember(rs.getLong(1), rs.getLong(2), rs.getLong(3));
+                loaded[0]++;
+            });
+            System.out.println("Loaded " + loaded[0] + " content fingerprints from H2 database");
+        } catch (Exception e) {
+            System.err.println("Error loading content fingerprints: " + e.getMessage());
+        }
+        writeQueue = new WriteBehindQueue<>("fingerprint", writeQueueCapacity, writeBatchSize,
+                writeFlushIntervalMs, this::writeBatch);
+        writeQueue.bindTo(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeQueue.close();
+    }
+
+    // Проверяет текст страницы и, если он новый, запоминает его отпечатки.
+    // Повторная загрузка того же URL дубликатом не считается
+    public Verdict check(String url, CharSequence text) {
+        if (!enabled) {
+            return Verdict.UNIQUE;
+        }
+        Fingerprint fingerprint = fingerprint(url, text);
+        if (fingerprint == null) {
+            return Verdict.UNIQUE;
+        }
+
+        synchronized (this) {
+            Long owner = exact.get(fingerprint.contentHash);
+            if (owner != null) {
+                if (owner == fingerprint.urlHash) {
+                    return Verdict.UNIQUE;
+                }
+                exactDuplicates.incrementAndGet();
+                return Verdict.EXACT_DUPLICATE;
+            }
+            long nearOwner = findNear(fingerprint.simhash);
+            if (nearOwner != 0 && nearOwner != fingerprint.urlHash) {
+                nearDuplicates.incrementAndGet();
+                return Verdict.NEAR_DUPLICATE;
+            }
+            remember(fingerprint.contentHash, fingerprint.simhash, fingerprint.urlHash);
+        }
+
+        try {
+            writeQueue.put(fingerprint);
+        } catch (Exception e) {
+            System.err.println("Error saving content fingerprint: " + e.getMessage());
+        }
+        return Verdict.UNIQUE;
+    }
+
+    public long getExactDuplicates() {
+        return exactDuplicates.get();
+    }
+
+    public long getNearDuplicates() {
+        return nearDuplicates.get();
+    }
+
+    public synchronized int size() {
+        return exact.size();
+    }
+
+    public void flush() {
+        writeQueue.flush();
+    }
+
+    // Вместе с контактами, иначе после очистки все уже виденные страницы пропускались бы
+    public void clear() {
+        synchronized (this) {
+            writeQueue.flush();
+            exact.clear();
+            bands.clear();
+        }
+        try {
+            jdbcTemplate.update("DELETE FROM content_fingerprint");
+        } catch (Exception e) {
+            System.err.println("Error clearing content fingerprints: " + e.getMessage());
+        }
+    }
+
+    // Слова - последовательности букв и цифр в нижнем регистре; всё остальное разделители.
+    // Так разметка, пробелы и пунктуация не влияют на отпечаток
+    static Fingerprint fingerprint(String url, CharSequence text) {
+        int[] weights = new int[64];
+        long[] window = new long[SHINGLE_WORDS];
+        int words = 0;
+        int shingles = 0;
+
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            long wordHash = 0xcbf29ce484222325L;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                wordHash = (wordHash ^ Character.toLowerCase(text.charAt(i++))) * 0x100000001b3L;
+            }
+
+            window[words++ % SHINGLE_WORDS] = UrlSeenStore.mix(wordHash);
+            if (words >= SHINGLE_WORDS) {
+                long shingle = 0;
+                for (int k = 0; k < SHINGLE_WORDS; k++) {
+                    // Порядок слов важен: k-е слово окна сдвигается на k позиций
+                    shingle ^= Long.rotateLeft(window[(words - SHINGLE_WORDS + k) % SHINGLE_WORDS], k);
+                }
+                shingle = UrlSeenStore.mix(shingle);
+                for (int bit = 0; bit < 64; bit++) {
+                    weights[bit] += ((shingle >>> bit) & 1) != 0 ? 1 : -1;
+                }
+                shingles++;
+            }
+        }
+        if (shingles < MIN_SHINGLES) {
+            return null;
+        }
+
+        long simhash = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                simhash |= 1L << bit;
+            }
+        }
+        return new Fingerprint(textHash(text), simhash, UrlSeenStore.fingerprint(url), url);
+    }
+
+    // Хэш нормализованного текста: те же слова в нижнем регистре через одиночный пробел
+    public static long textHash(CharSequence text) {
+        long hash = 0xcbf29ce484222325L;
+        int length = text.length();
+        boolean inWord = false;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * 0x100000001b3L;
+                inWord = true;
+            } else if (inWord) {
+                hash = (hash ^ ' ') * 0x100000001b3L;
+                inWord = false;
+            }
+        }
+        if (inWord) {
+            hash = (hash ^ ' ') * 0x100000001b3L;
+        }
+        return UrlSeenStore.mix(hash);
+    }
+
+    private long findNear(long simhash) {
+        for (int band = 0; band < bandCount; band++) {
+            List<long[]> candidates = bands.get(bandKey(band, simhash));
+            if (candidates == null) {
+                continue;
+            }
+            for (long[] candidate : candidates) {
+                if (Long.bitCount(candidate[0] ^ simhash) <= maxDistance) {
+                    return candidate[1];
+                }
+            }
+        }
+        return 0;
+    }
+
+    private void remember(long contentHash, long simhash, long urlHash) {
+        exact.putIfAbsent(contentHash, urlHash);
+        long[] entry = {simhash, urlHash};
+        for (int band = 0; band < bandCount; band++) {
+            bands.computeIfAbsent(bandKey(band, simhash), key -> new ArrayList<>(1)).add(entry);
+        }
+    }
+
+    // Номер полосы в старших битах ключа, её биты SimHash - в младших
+    private long bandKey(int band, long simhash) {
+        int from = band * 64 / bandCount;
+        int to = (band + 1) * 64 / bandCount;
+        long mask = to - from == 64 ? -1L : (1L << (to - from)) - 1;
+        return ((long) band << 56) ^ ((simhash >>> from) & mask);
+    }
+
+    private void writeBatch(List<Fingerprint> batch) {
+        jdbcTemplate.batchUpdate("""
+            MERGE INTO content_fingerprint (content_hash, simhash, url_hash, url)
+            KEY(content_hash)
+            VALUES (?, ?, ?, ?)
+        """, batch, batch.size(), (ps, fingerprint) -> {
+            ps.setLong(1, fingerprint.contentHash);
+            ps.setLong(2, fingerprint.simhash);
+            ps.setLong(3, fingerprint.urlHash);
+            ps.setString(4, fingerprint.url);
+        });
+    }
+
+    record Fingerprint(long contentHash, long simhash, long urlHash, String url) {
+    }
+}
@@ -0,0 +1,145 @@
+package com.crawler.service;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Один запуск обхода: свои стартовые URL, глубина, бюджет страниц и множество уже поставленных
+// в очередь URL. Задания разных обходов делят frontier и пулы, но не мешают друг другу.
+// Обход завершён, когда не осталось ни одной задачи в очереди или в работе: счётчик
+// увеличивается до постановки в frontier и уменьшается после обработки страницы.
+public class CrawlJob {
+
+    public enum Status {
+        RUNNING,
+        COMPLETED,
+        CANCELLED
+    }
+
+    private final String id;
+    private final Set<String> startUrls;
+    private final int maxDepth;
+    private final int maxPages;
+    // Хранилище задаёт crawler.seen.mode; у восстановленного обхода в нём и URL, встреченные до остановки
+    private final UrlSeenStore seen;
+    private final AtomicInteger pagesClaimed;
+    private final AtomicInteger pagesProcessed;
+    // Единица на время постановки стартовых URL, чтобы обход не завершился раньше времени
+    private final AtomicInteger outstanding;
+    private final CompletableFuture<CrawlJob> completion;
+    private final long startedAt;
+    private volatile boolean cancelled;
+    private volatile long finishedAt;
+
+    public CrawlJob(String id, Set<String> startUrls, int maxDepth, int maxPages) {
+        this(id, startUrls, maxDepth, maxPages, expectedUrls -> new FingerprintUrlSeenStore());
+    }
+
+    public CrawlJob(String id, Set<String> startUrls, int maxDepth, int maxPages, UrlSeenStore.Factory seenStores) {
+        this(id, startUrls, maxDepth, maxPages, System.currentTimeMillis(), 0, seenStores);
+    }
+
+    // Восстановление из контрольной точки: бюджет продолжается с сохранённого значения
+    public CrawlJob(String id, Set<String> startUrls, int maxDepth, int maxPages, long startedAt,
+                    int pagesClaimed, UrlSeenStore.Factory seenStores) {
+        this.id = id;
+        this.startUrls = Set.copyOf(startUrls);
+        this.maxDepth = maxDepth;
+        this.maxPages = maxPages;
+        // В множество попадают только URL в пределах бюджета страниц
+        this.seen = seenStores.create(maxPages);
+        this.pagesClaimed = new AtomicInteger(pagesClaimed);
+        this.pagesProcessed = new AtomicInteger();
+        this.outstanding = new AtomicInteger(1);
+        this.completion = new CompletableFuture<>();
+        this.startedAt = startedAt;
+    }
+
+    // Первое появление URL в этом обходе; ссылка занимает место в бюджете страниц
+    public boolean tryClaim(String key) {
+        if (cancelled || pagesClaimed.get() >= maxPages) {
+            return false;
+        }
+        if (!seen.add(key)) {
+            return false;
+        }
+        // Гонка между проверкой и увеличением допускает перерасход не больше числа потоков
+        return pagesClaimed.incrementAndGet() <= maxPages;
+    }
+
+    // Стартовые URL обходятся всегда, но тоже учитываются в бюджете
+    public boolean claimStart(String key) {
+        if (!seen.add(key)) {
+            return false;
+        }
+        pagesClaimed.incrementAndGet();
+        return true;
+    }
+
+    // URL из сохранённого frontier уже учтён в бюджете
+    public void restorePending(String key) {
+        seen.add(key);
+    }
+
+    // Отпечаток URL, встреченного до остановки
+    public void restoreSeen(long fingerprint) {
+        seen.addFingerprint(fingerprint);
+    }
+
+    public boolean isSeen(String key) {
+        return seen.contains(key);
+    }
+
+    public long getSeenBytes() {
+        return seen.memoryBytes();
+    }
+
+    public void taskStarted() {
+        outstanding.incrementAndGet();
+    }
+
+    public void taskFinished() {
+        if (outstanding.decrementAndGet() == 0) {
+            finishedAt = System.currentTimeMillis();
+            completion.complete(this);
+        }
+    }
+
+    // Вызывается после постановки всех стартовых URL
+    public void seedingFinished() {
+        taskFinished();
+    }
+
+    public void pageProcessed() {
+        pagesProcessed.incrementAndGet();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public Status getStatus() {
+        if (!completion.isDone()) {
+            return Status.RUNNING;
+        }
+        return cancelled ? Status.CANCELLED : Status.COMPLETED;
+    }
+
+    public CompletableFuture<CrawlJob> getCompletion() {
+        return completion;
+    }
+
+    public String getId() { return id; }
+    public Set<String> getStartUrls() { return startUrls; }
+    public int getMaxDepth() { return maxDepth; }
+    public int getMaxPages() { return maxPages; }
+    public int getPagesClaimed() { return pagesClaimed.get(); }
+    public int getPagesProcessed() { return pagesProcessed.get(); }
+    public int getOutstanding() { return outstanding.get(); }
+    public long getStartedAt() { return startedAt; }
+    public long getFinishedAt() { return finishedAt; }
+}
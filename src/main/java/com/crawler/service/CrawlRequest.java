@@ -0,0 +1,8 @@
+package com.crawler.service;
+
+public record CrawlRequest(String url, int depth, CrawlJob job) {
+
+    public CrawlRequest next(String link) {
+        return new CrawlRequest(link, depth + 1, job);
+    }
+}
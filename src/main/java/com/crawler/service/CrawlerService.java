@@ -1,6 +1,11 @@
 package com.crawler.service;
 
 import com.crawler.model.ContactInfo;
+import com.crawler.model.PageState;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -8,18 +13,25 @@ import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class CrawlerService {
@@ -31,26 +43,140 @@ public class CrawlerService {
     @Autowired
     private H2StorageService storageService;
 
-    private final RestTemplate restTemplate;
-    private final Set<String> visitedUrls;
-    private final Set<String> processingUrls;
+    @Autowired
+    private FetchEngine fetchEngine;
+
+    @Autowired
+    private UrlCanonicalizer urlCanonicalizer;
+
+    @Autowired
+    private ContentFingerprintService contentFingerprintService;
+
+    @Autowired
+    private PageStateService pageStateService;
+
+    @Autowired
+    private FrontierCheckpointService checkpointService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private static final int MAX_FINISHED_JOBS = 100;
+    // Сколько отложенных запросов диспетчер возвращает в frontier за раз
+    private static final int OVERFLOW_BATCH = 500;
+
+    // Повторы отсекает множество каждого обхода, созданное фабрикой; здесь только их общее число
+    private final UrlSeenStore.Factory seenStores;
+    private final AtomicLong visitedUrls;
+    private final Map<String, CrawlJob> jobs;
     private final AtomicInteger activeTasks;
-    private final ReentrantLock lock;
+    // Ссылки, которые без канонизации ушли бы на повторную загрузку
+    private final AtomicLong duplicatesAvoided;
+    // Ссылки, отложенные в H2 из-за заполненного frontier, и сколько из них ещё не вернулось
+    private final AtomicLong spilledLinks;
+    private final AtomicLong overflow;
+    private final UrlFrontier frontier;
+    private final int workerSlotCount;
+    private final Semaphore workerSlots;
+    private final Thread dispatcherThread;
+    // Разбор страниц: извлечение контактов и ссылок
+    private final PipelineStage parseStage;
 
-    private ForkJoinPool crawlerForkJoinPool;
     private ExecutorService ioExecutor;
+    private Timer parseTimer;
+    private Timer extractionTimer;
 
+    // Конвейер: frontier -> загрузка (не больше workerSlots страниц в работе) -> разбор -> запись в H2.
+    // Все очереди между стадиями ограничены: заполненная стадия останавливает предыдущую
     @Autowired
-    public CrawlerService(ForkJoinPool crawlerForkJoinPool, ExecutorService ioExecutorService) {
-        this.restTemplate = new RestTemplate();
-        this.visitedUrls = ConcurrentHashMap.newKeySet();
-        this.processingUrls = ConcurrentHashMap.newKeySet();
+    public CrawlerService(ExecutorService ioExecutorService, UrlFrontier frontier, UrlSeenStore.Factory seenStores,
+                          @Value("${crawler.frontier.worker-slots:64}") int workerSlots,
+                          @Value("${crawler.pipeline.parse.parallelism:0}") int parseParallelism,
+                          @Value("${crawler.pipeline.parse.queue-capacity:64}") int parseQueueCapacity) {
+        this.seenStores = seenStores;
+        this.visitedUrls = new AtomicLong();
+        this.jobs = new ConcurrentHashMap<>();
         this.activeTasks = new AtomicInteger(0);
-        this.lock = new ReentrantLock();
-        this.crawlerForkJoinPool = crawlerForkJoinPool;
+        this.duplicatesAvoided = new AtomicLong();
+        this.spilledLinks = new AtomicLong();
+        this.overflow = new AtomicLong();
         this.ioExecutor = ioExecutorService;
+        this.frontier = frontier;
+        this.workerSlotCount = workerSlots;
+        this.workerSlots = new Semaphore(workerSlots);
+        // Разбор занимает процессор, поэтому по умолчанию обработчиков по числу ядер
+        this.parseStage = new PipelineStage("parse",
+                parseParallelism > 0 ? parseParallelism : Runtime.getRuntime().availableProcessors(),
+                parseQueueCapacity);
 
         startLoggingDaemon();
+        this.dispatcherThread = startDispatcher();
+    }
+
+    // Продолжает обходы, прерванные остановкой: запросы из контрольной точки снова ставятся в frontier
+    @Autowired
+    public void initialize() {
+        bindMetrics();
+        if (!checkpointService.isEnabled()) {
+            return;
+        }
+        int resumed = 0;
+        long seen = 0;
+        for (FrontierCheckpointService.SavedJob saved : checkpointService.loadJobs()) {
+            CrawlJob job = new CrawlJob(saved.id(), saved.startUrls(), saved.maxDepth(), saved.maxPages(),
+                    saved.startedAt(), saved.pagesClaimed(), seenStores);
+            // Каждый обход продолжается со своими URL: встреченное другими обходами его не касается
+            long[] restored = new long[1];
+            checkpointService.loadSeen(saved.id(), fingerprint -> {
+                job.restoreSeen(fingerprint);
+                restored[0]++;
+            });
+            seen += restored[0];
+            register(job);
+            saved.pending().forEach(pending -> {
+                job.restorePending(urlCanonicalizer.dedupKey(pending.url()));
+                // Строка уже есть в контрольной точке, повторно не пишем
+                job.taskStarted();
+                frontier.offer(new CrawlRequest(pending.url(), pending.depth(), job));
+            });
+            job.seedingFinished();
+            resumed += saved.pending().size();
+        }
+        if (resumed > 0 || seen > 0) {
+            logger.info("Resumed {} queued URLs from checkpoint, {} URLs already seen", resumed, seen);
+        }
+    }
+
+    private void bindMetrics() {
+        parseStage.bindTo(meterRegistry);
+        parseTimer = Timer.builder("crawler.page.parse")
+                .description("HTML parsing into a DOM")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        extractionTimer = Timer.builder("crawler.extraction")
+                .description("Contact extraction per page")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("crawler.pipeline.queue.depth", frontier, UrlFrontier::size)
+                .tag("stage", "frontier")
+                .register(meterRegistry);
+        Gauge.builder("crawler.pipeline.queue.capacity", frontier, UrlFrontier::getCapacity)
+                .tag("stage", "frontier")
+                .register(meterRegistry);
+        Gauge.builder("crawler.pipeline.active", workerSlots, slots -> workerSlotCount - slots.availablePermits())
+                .tag("stage", "fetch")
+                .register(meterRegistry);
+        Gauge.builder("crawler.pipeline.queue.capacity", () -> workerSlotCount)
+                .tag("stage", "fetch")
+                .register(meterRegistry);
+        FunctionCounter.builder("crawler.visited.urls", visitedUrls, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("crawler.jobs.running", this, CrawlerService::getRunningJobs).register(meterRegistry);
+        Gauge.builder("crawler.pipeline.queue.depth", overflow, AtomicLong::get)
+                .tag("stage", "overflow")
+                .register(meterRegistry);
+        FunctionCounter.builder("crawler.links.spilled", spilledLinks, AtomicLong::get).register(meterRegistry);
+        FunctionCounter.builder("crawler.links.duplicates_avoided", duplicatesAvoided, AtomicLong::get)
+                .register(meterRegistry);
     }
 
     private void startLoggingDaemon() {
@@ -58,8 +184,11 @@ public class CrawlerService {
             while (!Thread.currentThread().isInterrupted()) {
                 try {
                     Thread.sleep(30000); // Каждые 30 секунд
-                    logger.info("Crawler Status - Active tasks: {}, Visited URLs: {}, Processing URLs: {}",
-                            activeTasks.get(), visitedUrls.size(), processingUrls.size());
+                    logger.info("Crawler Status - Active tasks: {}, Visited URLs: {}, Running jobs: {}, Frontier: {}, "
+                                    + "Parse queue: {}, Store queue: {}, Duplicates avoided: {}, Overflow: {}",
+                            activeTasks.get(), visitedUrls.get(), getRunningJobs(), frontier.size(),
+                            parseStage.getQueueDepth(), storageService.getPendingWrites(),
+                            duplicatesAvoided.get(), overflow.get());
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     break;
@@ -72,76 +201,202 @@ public class CrawlerService {
         logger.info("Logging daemon started");
     }
 
-    @Async
-    public void startCrawling(Set<String> startUrls, int maxDepth, int maxPages) {
-        logger.info("Starting crawling with {} start URLs, max depth: {}, max pages: {}",
-                startUrls.size(), maxDepth, maxPages);
-
-        startUrls.forEach(url -> {
-            if (visitedUrls.size() < maxPages && !visitedUrls.contains(url)) {
-                crawlerForkJoinPool.submit(() -> crawlUrl(url, 0, maxDepth, maxPages));
+    // Диспетчер выдаёт URL из frontier только при наличии свободного слота обработчика,
+    // поэтому один большой сайт не может занять все слоты: хосты чередуются по времени доступа.
+    // Освободившееся в frontier место он заполняет отложенными запросами раньше, чем ждёт следующий URL
+    private Thread startDispatcher() {
+        Thread thread = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    refillFromOverflow();
+                    workerSlots.acquire();
+                    CrawlRequest request;
+                    try {
+                        request = frontier.take();
+                    } catch (InterruptedException e) {
+                        workerSlots.release();
+                        throw e;
+                    }
+                    crawlUrl(request).whenComplete((ignored, error) -> workerSlots.release());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    logger.error("Error dispatching URL: {}", e.getMessage());
+                }
             }
-        });
+        }, "frontier-dispatcher");
+
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
     }
 
-    private void crawlUrl(String url, int currentDepth, int maxDepth, int maxPages) {
-        if (currentDepth > maxDepth || visitedUrls.size() >= maxPages || !processingUrls.add(url)) {
-            return;
-        }
+    // Создаёт обход и ставит стартовые URL в очередь; завершение - через job.getCompletion().
+    // Стартовые URL ставятся при каждом запуске: неизменённые страницы обходятся без извлечения
+    // и записи, а условные запросы идут только к страницам на последнем уровне глубины
+    public CrawlJob startCrawling(Set<String> startUrls, int maxDepth, int maxPages) {
+        CrawlJob job = new CrawlJob(UUID.randomUUID().toString(), startUrls, maxDepth, maxPages, seenStores);
+        register(job);
+        checkpointService.jobStarted(job);
 
-        activeTasks.incrementAndGet();
+        logger.info("Starting crawl job {} with {} start URLs, max depth: {}, max pages: {}",
+                job.getId(), startUrls.size(), maxDepth, maxPages);
 
         try {
-            // Используем ExecutorService для асинхронных запросов вместо WebFlux
-            ioExecutor.submit(() -> {
-                try {
-                    String htmlContent = fetchHtmlContent(url);
-                    if (htmlContent != null) {
-                        // Обрабатываем страницу в ForkJoinPool
-                        crawlerForkJoinPool.submit(() -> {
-                            processPage(url, htmlContent, currentDepth, maxDepth, maxPages);
-                            activeTasks.decrementAndGet();
-                            processingUrls.remove(url);
-                        });
-                    } else {
-                        activeTasks.decrementAndGet();
-                        processingUrls.remove(url);
-                    }
-                } catch (Exception e) {
-                    logger.error("Error fetching URL: {} - {}", url, e.getMessage());
-                    activeTasks.decrementAndGet();
-                    processingUrls.remove(url);
+            startUrls.forEach(url -> {
+                String canonical = urlCanonicalizer.canonicalize(url);
+                if (canonical != null && job.claimStart(urlCanonicalizer.dedupKey(canonical))) {
+                    markSeen(job, urlCanonicalizer.dedupKey(canonical));
+                    enqueue(new CrawlRequest(canonical, 0, job));
                 }
             });
-
-        } catch (Exception e) {
-            logger.error("Error processing URL: {} - {}", url, e.getMessage());
-            activeTasks.decrementAndGet();
-            processingUrls.remove(url);
+        } finally {
+            job.seedingFinished();
         }
+        return job;
     }
 
-    private String fetchHtmlContent(String url) {
-        try {
-            // Устанавливаем таймаут для запроса
-            return restTemplate.getForObject(url, String.class);
-        } catch (Exception e) {
-            logger.error("Failed to fetch URL: {} - {}", url, e.getMessage());
+    public CrawlJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    public Collection<CrawlJob> getJobs() {
+        return jobs.values();
+    }
+
+    // Запросы задания убираются из frontier сразу, страницы в работе дообрабатываются
+    public CrawlJob cancelJob(String id) {
+        CrawlJob job = jobs.get(id);
+        if (job == null) {
             return null;
         }
+        job.cancel();
+        frontier.removeIf(request -> request.job() == job).forEach(this::finish);
+        logger.info("Crawl job {} cancelled", id);
+        return job;
+    }
+
+    public long getRunningJobs() {
+        return jobs.values().stream().filter(job -> job.getStatus() == CrawlJob.Status.RUNNING).count();
+    }
+
+    private void register(CrawlJob job) {
+        jobs.put(job.getId(), job);
+        job.getCompletion().whenComplete((finished, error) -> {
+            checkpointService.jobFinished(job);
+            evictFinishedJobs();
+        });
+    }
+
+    private void enqueue(CrawlRequest request) {
+        request.job().taskStarted();
+        checkpointService.queued(request);
+        frontier.offer(request);
+    }
+
+    // Ссылки сверх ёмкости frontier ждут в H2. Задачи учтены в заданиях сразу, поэтому обход
+    // не завершится, пока отложенное не вернётся и не будет обработано
+    private void spill(List<CrawlRequest> requests) {
+        requests.forEach(request -> {
+            request.job().taskStarted();
+            checkpointService.queued(request);
+        });
+        if (checkpointService.spill(requests)) {
+            overflow.addAndGet(requests.size());
+            spilledLinks.addAndGet(requests.size());
+        } else {
+            // Записать не удалось - лучше превысить ёмкость, чем потерять ссылки
+            requests.forEach(frontier::offer);
+        }
+    }
+
+    private void refillFromOverflow() {
+        long pending = overflow.get();
+        int free = frontier.getCapacity() - frontier.size();
+        if (pending == 0 || free < Math.min(OVERFLOW_BATCH, pending)) {
+            return;
+        }
+        for (FrontierCheckpointService.SpilledRequest spilled : checkpointService.unspill(Math.min(free, OVERFLOW_BATCH))) {
+            overflow.decrementAndGet();
+            CrawlJob job = jobs.get(spilled.jobId());
+            if (job == null) {
+                logger.warn("Dropping overflow request of unknown job {}: {}", spilled.jobId(), spilled.url());
+                continue;
+            }
+            frontier.offer(new CrawlRequest(spilled.url(), spilled.depth(), job));
+        }
+    }
+
+    // Запись о завершении запроса ставится в очередь контрольной точки раньше записи о завершении задания
+    private void finish(CrawlRequest request) {
+        checkpointService.done(request);
+        request.job().taskFinished();
+    }
+
+    // Отпечаток пишется для каждого обхода, встретившего URL: при восстановлении обход получает только свои
+    private void markSeen(CrawlJob job, String key) {
+        visitedUrls.incrementAndGet();
+        checkpointService.seen(job, key);
+    }
+
+    // Храним только последние завершённые задания, чтобы карта не росла бесконечно
+    private void evictFinishedJobs() {
+        List<CrawlJob> finished = jobs.values().stream()
+                .filter(job -> job.getStatus() != CrawlJob.Status.RUNNING)
+                .sorted(Comparator.comparingLong(CrawlJob::getFinishedAt))
+                .toList();
+        for (int i = 0; i < finished.size() - MAX_FINISHED_JOBS; i++) {
+            jobs.remove(finished.get(i).getId());
+        }
+    }
+
+    private CompletableFuture<Void> crawlUrl(CrawlRequest request) {
+        String url = request.url();
+        CrawlJob job = request.job();
+        if (job.isCancelled() || request.depth() > job.getMaxDepth()) {
+            finish(request);
+            return CompletableFuture.completedFuture(null);
+        }
+
+        activeTasks.incrementAndGet();
+
+        // Условный запрос только для страниц, ссылки которых не обходятся: в ответе 304 нет тела,
+        // и ссылки неизменённой страницы в этом обходе были бы потеряны
+        PageState previous = request.depth() < job.getMaxDepth() ? null : pageStateService.get(url);
+
+        // Запрос выполняется асинхронно в FetchEngine, слот освобождается после обработки страницы
+        return fetchEngine.fetch(url, previous)
+                .thenAcceptAsync(result -> {
+                    if (result.isNotModified()) {
+                        pageStateService.recordNotModified(url);
+                        logger.debug("Not modified: {}", url);
+                    } else if (result.body() != null) {
+                        processPage(request, result);
+                    }
+                }, parseStage)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        logger.error("Error processing URL: {} - {}", url, error.getMessage());
+                    }
+                    activeTasks.decrementAndGet();
+                    job.pageProcessed();
+                    // Дочерние ссылки уже учтены в processPage, поэтому счётчик не обнулится раньше времени
+                    finish(request);
+                });
     }
 
-    private Set<String> extractLinks(String htmlContent, String baseUrl) {
-        Set<String> links = new HashSet<>();
+    // Ключ - канонический адрес, значение - был ли он получен переписыванием исходной ссылки
+    private Map<String, Boolean> extractLinks(Document doc) {
+        Map<String, Boolean> links = new HashMap<>();
 
         try {
-            Document doc = Jsoup.parse(htmlContent, baseUrl);
             Elements linkElements = doc.select("a[href]");
 
             for (Element link : linkElements) {
                 String href = link.attr("abs:href");
-                if (isValidUrl(href)) {
-                    links.add(href);
+                String canonical = urlCanonicalizer.canonicalize(href);
+                if (canonical != null) {
+                    links.merge(canonical, !canonical.equals(href), Boolean::logicalOr);
                 }
             }
         } catch (Exception e) {
@@ -151,39 +406,67 @@ public class CrawlerService {
         return links;
     }
 
-    private boolean isValidUrl(String url) {
-        return url != null &&
-                !url.isEmpty() &&
-                (url.startsWith("http://") || url.startsWith("https://")) &&
-                !url.contains("#") &&
-                !url.contains("mailto:") &&
-                !url.contains("tel:") &&
-                !url.contains("javascript:");
-    }
-
-    private void processPage(String url, String htmlContent, int currentDepth, int maxDepth, int maxPages) {
+    private void processPage(CrawlRequest request, FetchResult result) {
+        String url = request.url();
         try {
-            // Извлечение контактной информации
-            ContactInfo contactInfo = contactExtractorService.extractContactInfo(url, htmlContent);
-
-            // Сохранение данных в H2
-            storageService.saveContactInfo(contactInfo);
-
-            logger.info("Processed: {} - Phones: {}, Emails: {}, Addresses: {}",
-                    url, contactInfo.getPhones().size(),
-                    contactInfo.getEmails().size(), contactInfo.getAddresses().size());
-
-            // Извлечение ссылок для дальнейшего обхода
-            if (currentDepth < maxDepth && visitedUrls.size() < maxPages) {
-                Set<String> links = extractLinks(htmlContent, url);
-
-                links.parallelStream()
-                        .filter(link -> visitedUrls.size() < maxPages)
-                        .filter(link -> visitedUrls.add(link))
-                        .forEach(link -> {
-                            crawlerForkJoinPool.submit(() ->
-                                    crawlUrl(link, currentDepth + 1, maxDepth, maxPages));
-                        });
+            // Страница разбирается один раз: из одного DOM берутся и контакты, и ссылки
+            Document doc = parseTimer.record(() -> Jsoup.parse(result.body(), url));
+
+            String bodyText = ContactExtractorService.bodyText(doc);
+
+            // Текст тот же, что в прошлый раз: контакты уже сохранены, но ссылки обходятся -
+            // этот обход мог начаться с другой глубиной
+            long textHash = ContentFingerprintService.textHash(bodyText);
+            boolean changed = pageStateService.recordFetch(url, result, textHash);
+
+            // Зеркала и варианты пагинации с тем же текстом не извлекаются и не сохраняются,
+            // но ссылки из них обходятся: на следующей странице списка текст уже другой
+            if (!changed) {
+                logger.debug("Unchanged: {}", url);
+            } else {
+                ContentFingerprintService.Verdict verdict = contentFingerprintService.check(url, bodyText);
+                if (verdict == ContentFingerprintService.Verdict.UNIQUE) {
+                    // Извлечение контактной информации
+                    ContactInfo contactInfo = extractionTimer.record(
+                            () -> contactExtractorService.extractFromDocument(url, doc, bodyText));
+
+                    // Сохранение данных в H2; хэш текста запоминается только для принятого к записи контакта
+                    if (storageService.saveContactInfo(contactInfo)) {
+                        pageStateService.recordContent(url, textHash);
+                    }
+
+                    logger.info("Processed: {} - Phones: {}, Emails: {}, Addresses: {}",
+                            url, contactInfo.getPhones().size(),
+                            contactInfo.getEmails().size(), contactInfo.getAddresses().size());
+                } else {
+                    pageStateService.recordContent(url, textHash);
+                    logger.debug("Skipped {} content: {}", verdict, url);
+                }
+            }
+
+            // Найденные ссылки ставим в очередь frontier, а не сразу в пул
+            CrawlJob job = request.job();
+            if (request.depth() < job.getMaxDepth() && !job.isCancelled()) {
+                List<CrawlRequest> overflowed = new ArrayList<>();
+                extractLinks(doc).forEach((link, rewritten) -> {
+                    String key = urlCanonicalizer.dedupKey(link);
+                    if (job.tryClaim(key)) {
+                        markSeen(job, key);
+                        // Ждать места в frontier нельзя: его освобождает диспетчер, которому нужны слоты,
+                        // занятые в том числе этим обработчиком. Лишние ссылки откладываются в H2
+                        if (frontier.isFull()) {
+                            overflowed.add(request.next(link));
+                        } else {
+                            enqueue(request.next(link));
+                        }
+                    } else if (rewritten && job.isSeen(key)) {
+                        // Ссылка была переписана и совпала с уже известным адресом - в исходном виде она прошла бы проверку
+                        duplicatesAvoided.incrementAndGet();
+                    }
+                });
+                if (!overflowed.isEmpty()) {
+                    spill(overflowed);
+                }
             }
 
         } catch (Exception e) {
@@ -191,31 +474,87 @@ public class CrawlerService {
         }
     }
 
-    public Set<String> getVisitedUrls() {
-        return Collections.unmodifiableSet(visitedUrls);
+    // URL, поставленные в очередь всеми обходами с момента запуска
+    public long getVisitedUrls() {
+        return visitedUrls.get();
+    }
+
+    // Память множеств встреченных URL у обходов, которые ещё хранятся
+    public long getSeenStoreBytes() {
+        return jobs.values().stream().mapToLong(CrawlJob::getSeenBytes).sum();
+    }
+
+    public long getDuplicatesAvoided() {
+        return duplicatesAvoided.get();
     }
 
     public int getActiveTasks() {
         return activeTasks.get();
     }
 
+    public int getFrontierSize() {
+        return frontier.size();
+    }
+
+    public long getSpilledLinks() {
+        return spilledLinks.get();
+    }
+
+    public long getOverflowSize() {
+        return overflow.get();
+    }
+
+    // Глубина очереди и загрузка каждой стадии конвейера
+    public Map<String, Map<String, Object>> getPipelineStats() {
+        Map<String, Map<String, Object>> stages = new LinkedHashMap<>();
+
+        Map<String, Object> frontierStats = new LinkedHashMap<>();
+        frontierStats.put("queueDepth", frontier.size());
+        frontierStats.put("capacity", frontier.getCapacity());
+        frontierStats.put("readyHosts", frontier.getReadyHosts());
+        frontierStats.put("spilledLinks", spilledLinks.get());
+        frontierStats.put("overflow", overflow.get());
+        stages.put("frontier", frontierStats);
+
+        Map<String, Object> fetchStats = new LinkedHashMap<>();
+        fetchStats.put("inFlight", workerSlotCount - workerSlots.availablePermits());
+        fetchStats.put("capacity", workerSlotCount);
+        fetchStats.put("activeFetches", activeTasks.get());
+        stages.put("fetch", fetchStats);
+
+        Map<String, Object> parseStats = new LinkedHashMap<>();
+        parseStats.put("queueDepth", parseStage.getQueueDepth());
+        parseStats.put("capacity", parseStage.getCapacity());
+        parseStats.put("parallelism", parseStage.getParallelism());
+        parseStats.put("active", parseStage.getActive());
+        parseStats.put("processed", parseStage.getProcessed());
+        parseStats.put("blockedSubmits", parseStage.getBlockedSubmits());
+        parseStats.put("blockedMillis", parseStage.getBlockedMillis());
+        stages.put("parse", parseStats);
+
+        Map<String, Object> storeStats = new LinkedHashMap<>();
+        storeStats.put("queueDepth", storageService.getPendingWrites());
+        storeStats.put("pageStateQueueDepth", pageStateService.getPendingWrites());
+        stages.put("store", storeStats);
+        return stages;
+    }
+
     public void shutdown() {
-        crawlerForkJoinPool.shutdown();
+        dispatcherThread.interrupt();
+        parseStage.shutdown();
         ioExecutor.shutdown();
 
         try {
-            // Используем миллисекунды без TimeUnit
-            Thread.sleep(60000); // Ждем 60 секунд
-
-            // Проверяем, завершились ли пулы
-            if (!crawlerForkJoinPool.isTerminated()) {
-                crawlerForkJoinPool.shutdownNow();
+            // Страницы в работе дообрабатываются, но не дольше минуты на обе стадии
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+            if (!parseStage.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                parseStage.shutdownNow();
             }
-            if (!ioExecutor.isTerminated()) {
+            if (!ioExecutor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
                 ioExecutor.shutdownNow();
             }
         } catch (InterruptedException e) {
-            crawlerForkJoinPool.shutdownNow();
+            parseStage.shutdownNow();
             ioExecutor.shutdownNow();
             Thread.currentThread().interrupt();
         }
@@ -0,0 +1,289 @@
+package com.crawler.service;
+
+import com.crawler.model.PageState;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+@Service
+public class FetchEngine implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(FetchEngine.class);
+    // Тег host для всех хостов сверх лимита
+    static final String OTHER_HOST = "other";
+
+    private final HttpClient httpClient;
+    private final HtmlBodyHandler bodyHandler;
+    private final AsyncLimiter globalLimiter;
+    private final Map<String, AsyncLimiter> hostLimiters;
+    private final int maxPerHost;
+    private final Duration requestTimeout;
+    private final AtomicInteger inFlight;
+    private final AtomicLong notModified;
+    // Spring привязывает движок к реестру сам; без этого метрики уходят в пустой глобальный реестр
+    private volatile MeterRegistry meterRegistry = Metrics.globalRegistry;
+    private volatile DistributionSummary responseSizes;
+    // Таймеры по (host, outcome): builder и поиск в реестре на каждой загрузке не нужны
+    private final Map<TimerKey, Timer> fetchTimers = new ConcurrentHashMap<>();
+    private final Set<String> taggedHosts = ConcurrentHashMap.newKeySet();
+
+    // Хосты сверх лимита пишутся в общую серию host=other, иначе обход миллионов сайтов раздул бы реестр
+    @Value("${crawler.metrics.max-hosts:200}")
+    private int maxMetricHosts = 200;
+
+    @Autowired
+    public FetchEngine(ExecutorService ioExecutorService,
+                       @Value("${crawler.fetch.max-concurrency:1000}") int maxConcurrency,
+                       @Value("${crawler.fetch.max-per-host:8}") int maxPerHost,
+                       @Value("${crawler.fetch.connect-timeout-ms:5000}") long connectTimeoutMs,
+                       @Value("${crawler.fetch.request-timeout-ms:15000}") long requestTimeoutMs,
+                       @Value("${crawler.fetch.read-timeout-ms:30000}") long readTimeoutMs,
+                       @Value("${crawler.fetch.max-body-bytes:2097152}") long maxBodyBytes,
+                       @Value("${crawler.fetch.accepted-content-types:text/html,application/xhtml+xml}")
+                       String acceptedContentTypes) {
+        this.httpClient = HttpClient.newBuilder()
+                .executor(ioExecutorService)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        this.bodyHandler = new HtmlBodyHandler(maxBodyBytes, Duration.ofMillis(readTimeoutMs),
+                Arrays.stream(acceptedContentTypes.split(","))
+                        .map(type -> type.trim().toLowerCase())
+                        .collect(Collectors.toSet()));
+        this.globalLimiter = new AsyncLimiter(maxConcurrency);
+        this.hostLimiters = new ConcurrentHashMap<>();
+        this.maxPerHost = maxPerHost;
+        this.requestTimeout = Duration.ofMillis(requestTimeoutMs);
+        this.inFlight = new AtomicInteger(0);
+        this.notModified = new AtomicLong();
+    }
+
+    // Асинхронная загрузка страницы: ни один поток не ждёт ответа, лимиты выдаются неблокирующими
+    // семафорами. Future завершается значением null, если страницу получить не удалось
+    // или тело отброшено по типу содержимого, размеру или таймауту чтения.
+    public CompletableFuture<String> fetch(String url) {
+        return fetch(url, null).thenApply(FetchResult::body);
+    }
+
+    // Условная загрузка: при известном состоянии страницы отправляются If-None-Match и
+    // If-Modified-Since, и неизменённая страница приходит ответом 304 без тела
+    public CompletableFuture<FetchResult> fetch(String url, PageState previous) {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid URL: {} - {}", url, e.getMessage());
+            return CompletableFuture.completedFuture(FetchResult.FAILED);
+        }
+
+        // Сначала ждём слот хоста, затем глобальный: иначе медленный хост занимал бы глобальные слоты
+        String host = String.valueOf(uri.getHost());
+        AsyncLimiter hostLimiter = hostLimiters.compute(host, (key, limiter) -> {
+            AsyncLimiter current = limiter != null ? limiter : new AsyncLimiter(maxPerHost);
+            current.users++;
+            return current;
+        });
+
+        return hostLimiter.acquire()
+                .thenCompose(ignored -> globalLimiter.acquire())
+                .thenCompose(ignored -> send(uri, previous))
+                .whenComplete((result, error) -> {
+                    globalLimiter.release();
+                    hostLimiter.release();
+                    // Лимитер хоста без запросов удаляется: иначе карта росла бы с каждым новым хостом
+                    hostLimiters.computeIfPresent(host, (key, limiter) -> --limiter.users == 0 ? null : limiter);
+                });
+    }
+
+    private CompletableFuture<FetchResult> send(URI uri, PageState previous) {
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                    .timeout(requestTimeout)
+                    .header("Accept", "text/html,application/xhtml+xml;q=0.9,*/*;q=0.1")
+                    .GET();
+            if (previous != null && previous.getEtag() != null) {
+                builder.header("If-None-Match", previous.getEtag());
+            }
+            if (previous != null && previous.getLastModified() != null) {
+                builder.header("If-Modified-Since", previous.getLastModified());
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            logger.error("Unsupported URL: {} - {}", uri, e.getMessage());
+            return CompletableFuture.completedFuture(FetchResult.FAILED);
+        }
+
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, bodyHandler)
+                .handle((response, error) -> {
+                    inFlight.decrementAndGet();
+                    if (error != null) {
+                        recordFetch(uri, "error", start, null);
+                        logger.error("Failed to fetch URL: {} - {}", uri, error.getMessage());
+                        return FetchResult.FAILED;
+                    }
+                    int status = response.statusCode();
+                    recordFetch(uri, status == 304 ? "not_modified" : (status / 100) + "xx", start, response.body());
+                    if (status == 304) {
+                        notModified.incrementAndGet();
+                    } else if (status < 200 || status >= 300) {
+                        logger.warn("Failed to fetch URL: {} - HTTP {}", uri, status);
+                    }
+                    return new FetchResult(status, response.body(),
+                            response.headers().firstValue("ETag").orElse(null),
+                            response.headers().firstValue("Last-Modified").orElse(null));
+                });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        meterRegistry = registry;
+        fetchTimers.clear();
+        responseSizes = DistributionSummary.builder("crawler.fetch.response.size")
+                .description("Decoded HTML body size")
+                .baseUnit("chars")
+                .publishPercentileHistogram()
+                .register(registry);
+        Gauge.builder("crawler.fetch.in_flight", inFlight, AtomicInteger::get).register(registry);
+        Gauge.builder("crawler.fetch.queued", this, FetchEngine::getQueued)
+                .description("Requests waiting for a host or global slot")
+                .register(registry);
+        FunctionCounter.builder("crawler.fetch.skipped", bodyHandler, HtmlBodyHandler::getSkippedByContentType)
+                .tag("reason", "content_type")
+                .register(registry);
+        FunctionCounter.builder("crawler.fetch.skipped", bodyHandler, HtmlBodyHandler::getAbortedBySize)
+                .tag("reason", "size")
+                .register(registry);
+    }
+
+    // Гистограмма задержки по хосту; первые max-hosts хостов получают свою серию, остальные - общую
+    private void recordFetch(URI uri, String outcome, long start, String body) {
+        fetchTimers.computeIfAbsent(new TimerKey(hostTag(String.valueOf(uri.getHost())), outcome),
+                        key -> Timer.builder("crawler.fetch")
+                                .tag("host", key.host())
+                                .tag("outcome", key.outcome())
+                                .publishPercentileHistogram()
+                                .register(meterRegistry))
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        DistributionSummary sizes = responseSizes;
+        if (sizes != null && body != null) {
+            sizes.record(body.length());
+        }
+    }
+
+    private String hostTag(String host) {
+        if (taggedHosts.contains(host)) {
+            return host;
+        }
+        if (taggedHosts.size() >= maxMetricHosts) {
+            return OTHER_HOST;
+        }
+        synchronized (taggedHosts) {
+            if (taggedHosts.size() < maxMetricHosts) {
+                taggedHosts.add(host);
+                return host;
+            }
+        }
+        return OTHER_HOST;
+    }
+
+    private record TimerKey(String host, String outcome) {
+    }
+
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getSkippedByContentType() {
+        return bodyHandler.getSkippedByContentType();
+    }
+
+    public long getAbortedBySize() {
+        return bodyHandler.getAbortedBySize();
+    }
+
+    public int getTrackedHosts() {
+        return hostLimiters.size();
+    }
+
+    public int getQueued() {
+        int queued = globalLimiter.getWaiting();
+        for (AsyncLimiter limiter : hostLimiters.values()) {
+            queued += limiter.getWaiting();
+        }
+        return queued;
+    }
+
+    // Семафор, который вместо блокировки потока возвращает future, завершаемое при освобождении слота
+    static final class AsyncLimiter {
+        private final int limit;
+        private final Queue<CompletableFuture<Void>> waiters;
+        private int inUse;
+        // Запросы, которые держат или ждут слот; меняется только под блокировкой ключа в hostLimiters
+        private int users;
+
+        AsyncLimiter(int limit) {
+            this.limit = limit;
+            this.waiters = new ArrayDeque<>();
+        }
+
+        synchronized CompletableFuture<Void> acquire() {
+            if (inUse < limit) {
+                inUse++;
+                return CompletableFuture.completedFuture(null);
+            }
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            waiters.add(waiter);
+            return waiter;
+        }
+
+        void release() {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiters.poll();
+                if (next == null) {
+                    inUse--;
+                    return;
+                }
+            }
+            // Слот переходит следующему ожидающему без освобождения
+            next.complete(null);
+        }
+
+        synchronized int getWaiting() {
+            return waiters.size();
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.crawler.service;
+
+// Результат загрузки: код ответа (0 - запрос не выполнен), тело и валидаторы для условного запроса.
+// Тело null, если ответ не 2xx или тело отброшено по типу, размеру или таймауту
+public record FetchResult(int statusCode, String body, String etag, String lastModified) {
+
+    public static final FetchResult FAILED = new FetchResult(0, null, null, null);
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+}
@@ -0,0 +1,132 @@
+package com.crawler.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Точное множество отпечатков: таблицы с открытой адресацией на примитивных long, разбитые на
+// сегменты со своей блокировкой. Около 16 байт на URL вместо сотни с лишним у строки в ConcurrentHashMap.
+// Ложные совпадения возможны только при коллизии 64-битных отпечатков.
+public class FingerprintUrlSeenStore implements UrlSeenStore {
+
+    private static final int STRIPES = 64;
+    private static final int STRIPE_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(STRIPES);
+    private static final int INITIAL_STRIPE_CAPACITY = 1024;
+
+    private final Stripe[] stripes;
+    private final AtomicLong size;
+
+    public FingerprintUrlSeenStore() {
+        this.stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.size = new AtomicLong();
+    }
+
+    @Override
+    public boolean add(String url) {
+        return addFingerprint(UrlSeenStore.fingerprint(url));
+    }
+
+    @Override
+    public boolean addFingerprint(long fingerprint) {
+        if (stripeOf(fingerprint).add(fingerprint)) {
+            size.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(String url) {
+        long fingerprint = UrlSeenStore.fingerprint(url);
+        return stripeOf(fingerprint).contains(fingerprint);
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+        size.set(0);
+    }
+
+    @Override
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Stripe stripe : stripes) {
+            bytes += stripe.capacity() * (long) Long.BYTES;
+        }
+        return bytes;
+    }
+
+    private Stripe stripeOf(long fingerprint) {
+        return stripes[(int) (fingerprint >>> STRIPE_SHIFT)];
+    }
+
+    private static final class Stripe {
+        // 0 означает пустую ячейку, поэтому нулевой отпечаток хранится как 1
+        private long[] table = new long[INITIAL_STRIPE_CAPACITY];
+        private int count;
+
+        synchronized boolean add(long fingerprint) {
+            long key = fingerprint == 0 ? 1 : fingerprint;
+            int mask = table.length - 1;
+            int slot = (int) key & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = key;
+            // Заполнение не выше 3/4, иначе цепочки линейного пробирования растут
+            if (++count > table.length / 4 * 3) {
+                resize();
+            }
+            return true;
+        }
+
+        synchronized boolean contains(long fingerprint) {
+            long key = fingerprint == 0 ? 1 : fingerprint;
+            int mask = table.length - 1;
+            int slot = (int) key & mask;
+            while (table[slot] != 0) {
+                if (table[slot] == key) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        synchronized void clear() {
+            table = new long[INITIAL_STRIPE_CAPACITY];
+            count = 0;
+        }
+
+        synchronized int capacity() {
+            return table.length;
+        }
+
+        private void resize() {
+            long[] old = table;
+            long[] resized = new long[old.length * 2];
+            int mask = resized.length - 1;
+            for (long key : old) {
+                if (key != 0) {
+                    int slot = (int) key & mask;
+                    while (resized[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    resized[slot] = key;
+                }
+            }
+            table = resized;
+        }
+    }
+}
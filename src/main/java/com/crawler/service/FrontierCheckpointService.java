@@ -0,0 +1,374 @@
+package com.crawler.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+// Контрольная точка обхода в H2: незавершённые задания, их запросы из frontier и отпечатки
+// URL, уже встреченных каждым из них. После перезапуска CrawlerService продолжает обходы
+// с места остановки; строки задания удаляются, когда оно завершается.
+// События пишутся одной очередью отложенной записи, поэтому порядок "поставлен - обработан"
+// сохраняется, а пачка схлопывается до итогового состояния каждого запроса.
+// Отдельно хранятся ссылки, не поместившиеся в заполненный frontier: они пишутся сразу и
+// возвращаются в frontier по мере освобождения места.
+@Service
+public class FrontierCheckpointService {
+
+    // Длина колонки crawl_frontier.url: более длинные запросы после перезапуска не восстанавливаются
+    private static final int MAX_URL_LENGTH = 1000;
+
+    enum Kind {
+        JOB_STARTED,
+        JOB_FINISHED,
+        QUEUED,
+        DONE,
+        SEEN
+    }
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${crawler.frontier.checkpoint.enabled:true}")
+    private boolean enabled;
+
+    @Value("${storage.write-behind.queue-capacity:10000}")
+    private int writeQueueCapacity;
+
+    @Value("${storage.write-behind.batch-size:500}")
+    private int writeBatchSize;
+
+    @Value("${storage.write-behind.flush-interval-ms:200}")
+    private long writeFlushIntervalMs;
+
+    private WriteBehindQueue<Event> writeQueue;
+
+    @Autowired
+    public void initialize() {
+        try {
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS crawl_job (
+                    id VARCHAR(64) PRIMARY KEY,
+                    start_urls VARCHAR(100000),
+                    max_depth INT,
+                    max_pages INT,
+                    pages_claimed INT,
+                    started_at BIGINT
+                )
+            """);
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS crawl_frontier (
+                    job_id VARCHAR(64),
+                    url VARCHAR(1000),
+                    depth INT,
+                    PRIMARY KEY (job_id, url)
+                )
+            """);
+            migrateUrlSeen();
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS url_seen (
+                    job_id VARCHAR(64),
+                    fingerprint BIGINT,
+                    PRIMARY KEY (job_id, fingerprint)
+                )
+            """);
+        } catch (Exception e) {
+            System.err.println("Error creating frontier checkpoint tables: " + e.getMessage());
+        }
+        try {
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS crawl_overflow (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    job_id VARCHAR(64),
+                    url VARCHAR(1000000),
+                    depth INT
+                )
+            """);
+            // Обходы прошлого запуска восстанавливаются из crawl_frontier, где есть и эти запросы
+            jdbcTemplate.update("DELETE FROM crawl_overflow");
+        } catch (Exception e) {
+            System.err.println("Error creating frontier overflow table: " + e.getMessage());
+        }
+        writeQueue = new WriteBehindQueue<>("frontier-checkpoint", writeQueueCapacity, writeBatchSize,
+                writeFlushIntervalMs, this::writeBatch);
+        writeQueue.bindTo(meterRegistry);
+    }
+
+    // Прежняя таблица хранила отпечатки без задания: отнести их к обходу нельзя, и они
+    // никогда не удалялись. Восстановленные обходы без них могут повторить часть страниц
+    private void migrateUrlSeen() {
+        Integer tables = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME = 'URL_SEEN'", Integer.class);
+        Integer columns = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+                WHERE TABLE_NAME = 'URL_SEEN' AND COLUMN_NAME = 'JOB_ID'
+            """, Integer.class);
+        if (tables != null && tables > 0 && columns != null && columns == 0) {
+            jdbcTemplate.execute("DROP TABLE url_seen");
+            System.out.println("Dropped url_seen without job ids");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeQueue.close();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void jobStarted(CrawlJob job) {
+        enqueue(new Event(Kind.JOB_STARTED, job, null, 0, 0));
+    }
+
+    public void jobFinished(CrawlJob job) {
+        enqueue(new Event(Kind.JOB_FINISHED, job, null, 0, 0));
+    }
+
+    public void queued(CrawlRequest request) {
+        if (request.url().length() > MAX_URL_LENGTH) {
+            return;
+        }
+        enqueue(new Event(Kind.QUEUED, request.job(), request.url(), request.depth(), 0));
+    }
+
+    public void done(CrawlRequest request) {
+        if (request.url().length() > MAX_URL_LENGTH) {
+            return;
+        }
+        enqueue(new Event(Kind.DONE, request.job(), request.url(), request.depth(), 0));
+    }
+
+    public void seen(CrawlJob job, String key) {
+        enqueue(new Event(Kind.SEEN, job, null, 0, UrlSeenStore.fingerprint(key)));
+    }
+
+    // Отпечатки URL, встреченных одним заданием
+    public void loadSeen(String jobId, LongConsumer action) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.query("SELECT fingerprint FROM url_seen WHERE job_id = ?", rs -> {
+                action.accept(rs.getLong(1));
+            }, jobId);
+        } catch (Exception e) {
+            System.err.println("Error loading seen URLs: " + e.getMessage());
+        }
+    }
+
+    // Незавершённые задания вместе с запросами, которые оставались в frontier
+    public List<SavedJob> loadJobs() {
+        if (!enabled) {
+            return List.of();
+        }
+        Map<String, SavedJob> jobs = new LinkedHashMap<>();
+        try {
+            jdbcTemplate.query("""
+                SELECT id, start_urls, max_depth, max_pages, pages_claimed, started_at
+                FROM crawl_job
+                ORDER BY started_at
+            """, rs -> {
+                String startUrls = rs.getString(2);
+                Set<String> urls = startUrls == null || startUrls.isEmpty()
+                        ? Set.of()
+                        : new LinkedHashSet<>(Arrays.asList(startUrls.split("\n")));
+                jobs.put(rs.getString(1), new SavedJob(rs.getString(1), urls, rs.getInt(3), rs.getInt(4),
+                        rs.getInt(5), rs.getLong(6), new ArrayList<>()));
+            });
+            jdbcTemplate.query("SELECT job_id, url, depth FROM crawl_frontier", rs -> {
+                SavedJob job = jobs.get(rs.getString(1));
+                if (job != null) {
+                    job.pending().add(new SavedRequest(rs.getString(2), rs.getInt(3)));
+                }
+            });
+            // Запросы заданий, строка которых уже удалена, восстанавливать некуда
+            jdbcTemplate.update("DELETE FROM crawl_frontier WHERE job_id NOT IN (SELECT id FROM crawl_job)");
+            jdbcTemplate.update("DELETE FROM url_seen WHERE job_id NOT IN (SELECT id FROM crawl_job)");
+        } catch (Exception e) {
+            System.err.println("Error loading frontier checkpoint: " + e.getMessage());
+        }
+        return new ArrayList<>(jobs.values());
+    }
+
+    public void flush() {
+        writeQueue.flush();
+    }
+
+    // Запросы, не поместившиеся в frontier. Пишутся сразу, в обход очереди контрольной точки:
+    // диспетчер может забрать их обратно в любой момент. false - запросы не записаны
+    public boolean spill(List<CrawlRequest> requests) {
+        if (requests.isEmpty()) {
+            return true;
+        }
+        try {
+            jdbcTemplate.batchUpdate("INSERT INTO crawl_overflow (job_id, url, depth) VALUES (?, ?, ?)",
+                    requests, requests.size(), (ps, request) -> {
+                        ps.setString(1, request.job().getId());
+                        ps.setString(2, request.url());
+                        ps.setInt(3, request.depth());
+                    });
+            return true;
+        } catch (Exception e) {
+            System.err.println("Error spilling frontier overflow: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Забирает до limit самых старых отложенных запросов
+    public List<SpilledRequest> unspill(int limit) {
+        List<Long> ids = new ArrayList<>();
+        List<SpilledRequest> requests = new ArrayList<>();
+        try {
+            jdbcTemplate.query("SELECT id, job_id, url, depth FROM crawl_overflow ORDER BY id LIMIT ?", rs -> {
+                ids.add(rs.getLong(1));
+                requests.add(new SpilledRequest(rs.getString(2), rs.getString(3), rs.getInt(4)));
+            }, limit);
+            jdbcTemplate.batchUpdate("DELETE FROM crawl_overflow WHERE id = ?", ids, ids.size(),
+                    (ps, id) -> ps.setLong(1, id));
+        } catch (Exception e) {
+            System.err.println("Error loading frontier overflow: " + e.getMessage());
+            return List.of();
+        }
+        return requests;
+    }
+
+    private void enqueue(Event event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            writeQueue.put(event);
+        } catch (Exception e) {
+            System.err.println("Error saving frontier checkpoint: " + e.getMessage());
+        }
+    }
+
+    // Запрос, поставленный и обработанный в пределах одной пачки, в H2 не попадает вовсе
+    private void writeBatch(List<Event> batch) {
+        Map<String, CrawlJob> startedJobs = new LinkedHashMap<>();
+        Set<String> finishedJobs = new HashSet<>();
+        Map<List<String>, Event> frontier = new HashMap<>();
+        Set<List<String>> queuedInBatch = new HashSet<>();
+        Set<Event> seen = new HashSet<>();
+
+        for (Event event : batch) {
+            switch (event.kind) {
+                case JOB_STARTED -> startedJobs.put(event.job.getId(), event.job);
+                case JOB_FINISHED -> finishedJobs.add(event.job.getId());
+                case SEEN -> seen.add(event);
+                case QUEUED, DONE -> {
+                    List<String> key = List.of(event.job.getId(), event.url);
+                    if (event.kind == Kind.QUEUED) {
+                        queuedInBatch.add(key);
+                    }
+                    if (event.kind == Kind.DONE && queuedInBatch.contains(key)) {
+                        frontier.remove(key);
+                    } else {
+                        frontier.put(key, event);
+                    }
+                    // Бюджет задания сохраняется вместе с его запросами
+                    startedJobs.putIfAbsent(event.job.getId(), event.job);
+                }
+            }
+        }
+        finishedJobs.forEach(startedJobs::remove);
+
+        List<CrawlJob> jobs = new ArrayList<>(startedJobs.values());
+        if (!jobs.isEmpty()) {
+            jdbcTemplate.batchUpdate("""
+                MERGE INTO crawl_job (id, start_urls, max_depth, max_pages, pages_claimed, started_at)
+                KEY(id)
+                VALUES (?, ?, ?, ?, ?, ?)
+            """, jobs, jobs.size(), (ps, job) -> {
+                ps.setString(1, job.getId());
+                ps.setString(2, String.join("\n", job.getStartUrls()));
+                ps.setInt(3, job.getMaxDepth());
+                ps.setInt(4, job.getMaxPages());
+                ps.setInt(5, job.getPagesClaimed());
+                ps.setLong(6, job.getStartedAt());
+            });
+        }
+
+        List<Event> queued = new ArrayList<>();
+        List<Event> done = new ArrayList<>();
+        for (Event event : frontier.values()) {
+            if (!finishedJobs.contains(event.job.getId())) {
+                (event.kind == Kind.QUEUED ? queued : done).add(event);
+            }
+        }
+        if (!queued.isEmpty()) {
+            jdbcTemplate.batchUpdate("""
+                MERGE INTO crawl_frontier (job_id, url, depth)
+                KEY(job_id, url)
+                VALUES (?, ?, ?)
+            """, queued, queued.size(), (ps, event) -> {
+                ps.setString(1, event.job.getId());
+                ps.setString(2, event.url);
+                ps.setInt(3, event.depth);
+            });
+        }
+        if (!done.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM crawl_frontier WHERE job_id = ? AND url = ?",
+                    done, done.size(), (ps, event) -> {
+                        ps.setString(1, event.job.getId());
+                        ps.setString(2, event.url);
+                    });
+        }
+
+        if (!finishedJobs.isEmpty()) {
+            List<String> ids = new ArrayList<>(finishedJobs);
+            jdbcTemplate.batchUpdate("DELETE FROM crawl_frontier WHERE job_id = ?", ids, ids.size(),
+                    (ps, id) -> ps.setString(1, id));
+            jdbcTemplate.batchUpdate("DELETE FROM url_seen WHERE job_id = ?", ids, ids.size(),
+                    (ps, id) -> ps.setString(1, id));
+            jdbcTemplate.batchUpdate("DELETE FROM crawl_job WHERE id = ?", ids, ids.size(),
+                    (ps, id) -> ps.setString(1, id));
+        }
+
+        // Отпечатки завершённого в этой же пачке задания уже не нужны
+        List<Event> fingerprints = seen.stream()
+                .filter(event -> !finishedJobs.contains(event.job.getId()))
+                .toList();
+        if (!fingerprints.isEmpty()) {
+            jdbcTemplate.batchUpdate("""
+                MERGE INTO url_seen (job_id, fingerprint)
+                KEY(job_id, fingerprint)
+                VALUES (?, ?)
+            """, fingerprints, fingerprints.size(), (ps, event) -> {
+                ps.setString(1, event.job.getId());
+                ps.setLong(2, event.fingerprint);
+            });
+        }
+    }
+
+    record SavedJob(String id, Set<String> startUrls, int maxDepth, int maxPages, int pagesClaimed,
+                    long startedAt, List<SavedRequest> pending) {
+    }
+
+    record SavedRequest(String url, int depth) {
+    }
+
+    record SpilledRequest(String jobId, String url, int depth) {
+    }
+
+    private record Event(Kind kind, CrawlJob job, String url, int depth, long fingerprint) {
+    }
+}
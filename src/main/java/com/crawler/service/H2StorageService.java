@@ -1,36 +1,190 @@
 package com.crawler.service;
 
 import com.crawler.model.ContactInfo;
+import com.crawler.model.ContactPage;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Array;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class H2StorageService {
 
-    private final ReadWriteLock lock;
-    private final Set<ContactInfo> memoryCache;
+    // Наборы телефонов, email и адресов хранятся в дочерних таблицах, по строке на значение
+    // Длинное значение обрезается (адрес), а телефон или email такой длины - мусор разбора, и он отбрасывается
+    private static final List<ChildTable> CHILD_TABLES = List.of(
+            new ChildTable("contact_phone", "phone", 64, false, "phones", ContactInfo::getPhones),
+            new ChildTable("contact_email", "email", 500, false, "emails", ContactInfo::getEmails),
+            new ChildTable("contact_address", "address", 2000, true, "addresses", ContactInfo::getAddresses)
+    );
+
+    // Длины колонок contact_info
+    private static final int MAX_URL_LENGTH = 1000;
+    private static final int MAX_TITLE_LENGTH = 500;
+
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+    private static final int LOAD_BATCH_SIZE = 1000;
+    // Контакт вместе с наборами одной строкой: ARRAY_AGG по каждой дочерней таблице
+    private static final String CONTACT_QUERY = contactQuery();
+
+    // Сохранения идут параллельно и разделяют блокировку, очистка берёт её монопольно.
+    // Чтение кэша её не берёт: снимки и индексы обходятся без блокировок
+    private final ReadWriteLock clearLock;
+    private final ContactSearchIndex searchIndex;
+    private final ContactSortIndex sortIndex;
 
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // Вне контекста Spring (бенчмарки) - кэш в куче
+    @Autowired(required = false)
+    private ContactCache memoryCache = new VersionedContactStore();
+
+    // Несохранённая строка сбрасывает хэш текста страницы, чтобы следующая загрузка извлекла контакты заново.
+    // Вне контекста Spring (бенчмарки) не нужен
+    @Autowired(required = false)
+    private PageStateService pageStateService;
+
+    // Вне контекста Spring (бенчмарки) - глобальный реестр без подключённых хранилищ
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry = Metrics.globalRegistry;
+
+    @Value("${storage.write-behind.queue-capacity:10000}")
+    private int writeQueueCapacity;
+
+    @Value("${storage.write-behind.batch-size:500}")
+    private int writeBatchSize;
+
+    @Value("${storage.write-behind.flush-interval-ms:200}")
+    private long writeFlushIntervalMs;
+
+    // Прогрев в фоне: порт открывается сразу, а до окончания загрузки чтение идёт из H2
+    @Value("${storage.cache.warm-start.enabled:false}")
+    private boolean warmStartEnabled;
+
+    @Value("${storage.cache.warm-start.chunks:64}")
+    private int warmStartChunks = 64;
+
+    @Value("${storage.cache.warm-start.parallelism:4}")
+    private int warmStartParallelism = 4;
+
+    // Снимок кэша на диске: при старте читаются он и строки H2 новее него, а не вся таблица
+    @Value("${storage.cache.snapshot.enabled:false}")
+    private boolean snapshotEnabled;
+
+    @Value("${storage.cache.snapshot.path:./data/contact-snapshot.bin}")
+    private String snapshotPath = "./data/contact-snapshot.bin";
+
+    // Метка времени ставится при обходе, а не при записи в H2: контакт, сохранённый вскоре после снимка,
+    // может оказаться старше его наибольшей метки, поэтому повторяются и строки за этот запас до неё
+    @Value("${storage.cache.snapshot.replay-overlap-ms:600000}")
+    private long snapshotReplayOverlapMs = 600000;
+
+    private WriteBehindQueue<ContactInfo> writeQueue;
+    private Timer filterTimer;
+    private Timer sortTimer;
+
+    // Очистка меняет поколение: строки, прочитанные загрузчиком до неё, в кэш не попадают
+    private final AtomicLong cacheGeneration = new AtomicLong();
+    private final AtomicLong loadedRows = new AtomicLong();
+    private final AtomicInteger warmUpChunksLoaded = new AtomicInteger();
+    private volatile CompletableFuture<Void> warmUp;
+    private volatile boolean cacheWarm;
+    private volatile boolean warmUpFailed;
+    private volatile long totalRows;
+    private volatile int warmUpChunks;
+    private volatile long warmUpStartedAt;
+    private volatile long warmUpFinishedAt;
+
+    private ContactSnapshotFile snapshotFile;
+    private volatile String cacheSource = "h2";
+    private volatile long lastSnapshotVersion = -1;
+    private volatile long snapshotWrittenAt;
+    private volatile int snapshotRows;
+
     public H2StorageService() {
-        this.lock = new ReentrantReadWriteLock();
-        this.memoryCache = ConcurrentHashMap.newKeySet();
+        this.clearLock = new ReentrantReadWriteLock();
+        // Кэш внедряется после конструктора, поэтому индексы обращаются к полю при каждом чтении
+        this.searchIndex = new ContactSearchIndex(url -> memoryCache.get(url));
+        this.sortIndex = new ContactSortIndex(url -> memoryCache.get(url));
     }
 
     // Инициализация после создания бина
     @Autowired
     public void initialize() {
         initializeDatabase();
+        writeQueue = new WriteBehindQueue<>("h2", writeQueueCapacity, writeBatchSize,
+                writeFlushIntervalMs, this::writeBatch, this::writeFailed);
+        bindMetrics();
+
+        snapshotFile = new ContactSnapshotFile(Path.of(snapshotPath));
+        warmUp = warmUpCache();
+        if (!warmStartEnabled) {
+            try {
+                warmUp.join();
+            } catch (CompletionException e) {
+                // Ошибка уже записана в журнал, чтение пойдёт в H2
+            }
+        }
+    }
+
+    private void bindMetrics() {
+        writeQueue.bindTo(meterRegistry);
+        Gauge.builder("crawler.cache.size", memoryCache, ContactCache::size)
+                .description("Contacts held in the in-memory cache")
+                .register(meterRegistry);
+        Gauge.builder("crawler.cache.warmup.progress", this, H2StorageService::getWarmUpProgress)
+                .description("Share of contact_info rows loaded into the cache")
+                .register(meterRegistry);
+        filterTimer = Timer.builder("crawler.query")
+                .tag("type", "filter")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        sortTimer = Timer.builder("crawler.query")
+                .tag("type", "sort")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Дописываем накопленные изменения перед остановкой
+        writeQueue.close();
+        // Следующий запуск загрузит кэш со снимка, а из H2 - только то, что изменится после него
+        if (snapshotEnabled) {
+            writeCacheSnapshot();
+        }
     }
 
     private void initializeDatabase() {
@@ -39,14 +193,23 @@ public class H2StorageService {
                 CREATE TABLE IF NOT EXISTS contact_info (
                     url VARCHAR(1000) PRIMARY KEY,
                     title VARCHAR(500),
-                    timestamp BIGINT,
-                    phones CLOB,
-                    emails CLOB,
-                    addresses CLOB
+                    timestamp BIGINT
                 )
             """);
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_timestamp ON contact_info(timestamp)");
+            jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_title ON contact_info(title)");
+
+            for (ChildTable child : CHILD_TABLES) {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + child.table + " ("
+                        + "url VARCHAR(1000) NOT NULL, "
+                        + child.column + " VARCHAR(" + child.maxLength + ") NOT NULL, "
+                        + "PRIMARY KEY (url, " + child.column + "), "
+                        + "FOREIGN KEY (url) REFERENCES contact_info(url) ON DELETE CASCADE)");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + child.table + "_" + child.column
+                        + " ON " + child.table + "(" + child.column + ")");
+            }
 
-            loadDataToCache();
+            migrateLegacyColumns();
             System.out.println("Database initialized successfully");
         } catch (Exception e) {
             System.err.println("Error initializing database: " + e.getMessage());
@@ -54,132 +217,681 @@ public class H2StorageService {
         }
     }
 
-    private void loadDataToCache() {
+    // Переносит наборы из старых CLOB-колонок, склеенных через ";;", в дочерние таблицы
+    private void migrateLegacyColumns() {
+        Integer legacyColumns = jdbcTemplate.queryForObject("""
+                SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS
+                WHERE TABLE_NAME = 'CONTACT_INFO' AND COLUMN_NAME IN ('PHONES', 'EMAILS', 'ADDRESSES')
+            """, Integer.class);
+        if (legacyColumns == null || legacyColumns < CHILD_TABLES.size()) {
+            return;
+        }
+
+        Map<ChildTable, List<Object[]>> rows = new HashMap<>();
+        CHILD_TABLES.forEach(child -> rows.put(child, new ArrayList<>()));
+        int[] migrated = {0};
+        int[] truncated = {0};
+        int[] skipped = {0};
+
+        jdbcTemplate.query("SELECT url, phones, emails, addresses FROM contact_info", rs -> {
+            String url = rs.getString("url");
+            for (ChildTable child : CHILD_TABLES) {
+                // Обрезка может склеить два значения в одно - дубликат ключа сорвал бы MERGE пачки
+                Set<String> values = new LinkedHashSet<>();
+                for (String value : stringToSet(rs.getString(child.legacyColumn))) {
+                    String fitted = child.fit(value);
+                    if (fitted == null) {
+                        skipped[0]++;
+                    } else {
+                        if (fitted != value) {
+                            truncated[0]++;
+                        }
+                        values.add(fitted);
+                    }
+                }
+                for (String value : values) {
+                    rows.get(child).add(new Object[]{url, value});
+                }
+            }
+            if (++migrated[0] % MIGRATION_BATCH_SIZE == 0) {
+                insertChildRows(rows);
+            }
+        });
+        insertChildRows(rows);
+
+        for (ChildTable child : CHILD_TABLES) {
+            jdbcTemplate.execute("ALTER TABLE contact_info DROP COLUMN " + child.legacyColumn);
+        }
+        System.out.println("Migrated " + migrated[0] + " contacts to normalized tables");
+        if (truncated[0] > 0 || skipped[0] > 0) {
+            System.out.println("Legacy values longer than their columns: " + truncated[0] + " truncated, "
+                    + skipped[0] + " skipped");
+        }
+    }
+
+    private void insertChildRows(Map<ChildTable, List<Object[]>> rows) {
+        rows.forEach((child, values) -> {
+            if (!values.isEmpty()) {
+                jdbcTemplate.batchUpdate("MERGE INTO " + child.table + " (url, " + child.column + ") "
+                        + "KEY(url, " + child.column + ") VALUES (?, ?)", values);
+                values.clear();
+            }
+        });
+    }
+
+    // Загрузка кэша диапазонами url, по диапазону на задачу. Пока загрузка идёт, чтение обслуживает H2,
+    // записи попадают в кэш сразу, а загрузчик не заменяет уже сохранённые версии
+    private CompletableFuture<Void> warmUpCache() {
+        long generation = cacheGeneration.get();
+        warmUpStartedAt = System.currentTimeMillis();
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, warmStartParallelism), task -> {
+            Thread thread = new Thread(task, "cache-warmup-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        return CompletableFuture.supplyAsync(() -> loadSnapshot(generation) ? List.<KeyRange>of() : readKeyRanges(),
+                        executor)
+                .thenCompose(ranges -> {
+                    warmUpChunks = ranges.size();
+                    return CompletableFuture.allOf(ranges.stream()
+                            .map(range -> CompletableFuture.runAsync(() -> loadKeyRange(range, generation), executor))
+                            .toArray(CompletableFuture[]::new));
+                })
+                .whenComplete((ignored, error) -> {
+                    executor.shutdown();
+                    warmUpFinishedAt = System.currentTimeMillis();
+                    if (error != null) {
+                        // Кэш остаётся холодным, чтение продолжает идти в H2
+                        warmUpFailed = true;
+                        System.err.println("Error loading data from database: " + error.getMessage());
+                    } else if (cacheGeneration.get() == generation) {
+                        cacheWarm = true;
+                        System.out.println("Loaded " + loadedRows.get() + " contacts from "
+                                + ("snapshot".equals(cacheSource) ? "snapshot and H2 database" : "H2 database")
+                                + " in " + (warmUpFinishedAt - warmUpStartedAt) + " ms");
+                    }
+                });
+    }
+
+    // true - кэш заполнен снимком и строками H2, изменёнными после него; false - кэш пуст и загружается
+    // из H2 целиком: снимка нет, он повреждён или разошёлся с таблицей
+    private boolean loadSnapshot(long generation) {
+        if (!snapshotEnabled) {
+            return false;
+        }
         try {
-            List<ContactInfo> contacts = jdbcTemplate.query(
-                    "SELECT url, title, timestamp, phones, emails, addresses FROM contact_info",
-                    getContactInfoRowMapper()
-            );
-            memoryCache.addAll(contacts);
-            System.out.println("Loaded " + contacts.size() + " contacts from H2 database");
-        } catch (Exception e) {
-            System.err.println("Error loading data from database: " + e.getMessage());
+            ContactSnapshotFile.Info info = snapshotFile.info();
+            if (info == null) {
+                return false;
+            }
+            totalRows = countRows();
+            List<ContactInfo> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+            Consumer<ContactInfo> loader = contactInfo -> {
+                batch.add(contactInfo);
+                if (batch.size() == LOAD_BATCH_SIZE) {
+                    addLoaded(batch, generation);
+                    batch.clear();
+                }
+            };
+
+            // Сначала строки H2 новее снимка: putIfAbsent не даст устаревшим копиям из снимка их заменить
+            jdbcTemplate.query(CONTACT_QUERY + " WHERE c.timestamp >= ?",
+                    rs -> {
+                        loader.accept(readContact(rs).compact());
+                    }, info.maxTimestamp() - snapshotReplayOverlapMs);
+            snapshotFile.read(loader);
+            addLoaded(batch, generation);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error loading contact snapshot: " + e.getMessage());
+            resetLoadedCache(generation);
+            return false;
         }
+        return matchesH2(generation);
     }
 
-    public void saveContactInfo(ContactInfo contactInfo) {
-        lock.writeLock().lock();
+    // Снимок отстаёт от H2, если после него строки удаляли или записывали с меткой старше запаса,
+    // либо если записи из кэша не дошли до H2 перед остановкой. Тогда число контактов расходится с таблицей
+    private boolean matchesH2(long generation) {
+        clearLock.writeLock().lock();
         try {
-            memoryCache.remove(contactInfo);
-            memoryCache.add(contactInfo);
+            if (cacheGeneration.get() != generation) {
+                return true;
+            }
+            writeQueue.flush();
+            long rows = countRows();
+            if (memoryCache.size() == rows) {
+                cacheSource = "snapshot";
+                return true;
+            }
+            System.err.println("Contact snapshot does not match H2 (" + memoryCache.size() + " cached, "
+                    + rows + " rows), loading from H2");
+        } finally {
+            clearLock.writeLock().unlock();
+        }
+        resetLoadedCache(generation);
+        return false;
+    }
 
-            jdbcTemplate.update("""
-                MERGE INTO contact_info (url, title, timestamp, phones, emails, addresses) 
-                KEY(url) 
-                VALUES (?, ?, ?, ?, ?, ?)
-            """,
-                    contactInfo.getUrl(),
-                    contactInfo.getTitle(),
-                    contactInfo.getTimestamp(),
-                    setToString(contactInfo.getPhones()),
-                    setToString(contactInfo.getEmails()),
-                    setToString(contactInfo.getAddresses()));
+    // Убирает частично загруженный кэш перед загрузкой из H2. Записи, попавшие в кэш тем временем,
+    // сначала дописываются в H2, чтобы загрузчик их прочитал
+    private void resetLoadedCache(long generation) {
+        clearLock.writeLock().lock();
+        try {
+            if (cacheGeneration.get() == generation) {
+                writeQueue.flush();
+                memoryCache.clear();
+                searchIndex.clear();
+                sortIndex.clear();
+                loadedRows.set(0);
+            }
+        } finally {
+            clearLock.writeLock().unlock();
+        }
+    }
+
+    private long countRows() {
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM contact_info", Long.class);
+        return rows != null ? rows : 0;
+    }
+
+    // Границы диапазонов с примерно равным числом строк
+    private List<KeyRange> readKeyRanges() {
+        totalRows = countRows();
+        if (totalRows == 0) {
+            return List.of();
+        }
+        int chunks = (int) Math.min(Math.max(1, warmStartChunks), totalRows);
+        return jdbcTemplate.query("""
+                SELECT MIN(url), MAX(url)
+                FROM (SELECT url, NTILE(?) OVER (ORDER BY url) AS chunk FROM contact_info) t
+                GROUP BY chunk
+                ORDER BY chunk
+            """, (rs, rowNum) -> new KeyRange(rs.getString(1), rs.getString(2)), chunks);
+    }
+
+    private void loadKeyRange(KeyRange range, long generation) {
+        List<ContactInfo> batch = new ArrayList<>(LOAD_BATCH_SIZE);
+        jdbcTemplate.query(CONTACT_QUERY + " WHERE c.url BETWEEN ? AND ?", rs -> {
+            batch.add(readContact(rs).compact());
+            if (batch.size() == LOAD_BATCH_SIZE) {
+                addLoaded(batch, generation);
+                batch.clear();
+            }
+        }, range.from(), range.to());
+        addLoaded(batch, generation);
+        warmUpChunksLoaded.incrementAndGet();
+    }
+
+    private void addLoaded(List<ContactInfo> batch, long generation) {
+        clearLock.readLock().lock();
+        try {
+            // После очистки прочитанные строки уже удалены из H2
+            if (cacheGeneration.get() != generation) {
+                return;
+            }
+            for (ContactInfo contactInfo : batch) {
+                memoryCache.putIfAbsent(contactInfo, this::updateIndexes);
+            }
+            loadedRows.addAndGet(batch.size());
+        } finally {
+            clearLock.readLock().unlock();
+        }
+    }
+
+    private void updateIndexes(ContactInfo previous, ContactInfo current) {
+        searchIndex.update(previous, current);
+        sortIndex.update(previous, current);
+    }
+
+    public boolean isCacheWarm() {
+        return cacheWarm;
+    }
+
+    // Ждёт окончания загрузки кэша; false - не успела за отведённое время или завершилась ошибкой
+    public boolean awaitCacheWarm(long timeout, TimeUnit unit) {
+        try {
+            warmUp.get(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+        return cacheWarm;
+    }
+
+    public Map<String, Object> getCacheStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("warm", cacheWarm);
+        status.put("cache", memoryCache.getClass().getSimpleName());
+        status.put("size", memoryCache.size());
+        if (memoryCache instanceof MappedContactCache mapped) {
+            status.put("mappedBytes", mapped.getMappedBytes());
+            status.put("deadBytes", mapped.getDeadBytes());
+            status.put("compactions", mapped.getCompactions());
+        }
+        status.put("loadedRows", loadedRows.get());
+        status.put("totalRows", totalRows);
+        status.put("chunks", warmUpChunks);
+        status.put("chunksLoaded", warmUpChunksLoaded.get());
+        status.put("progress", getWarmUpProgress());
+        long finishedAt = warmUpFinishedAt;
+        status.put("elapsedMs", (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - warmUpStartedAt);
+        status.put("failed", warmUpFailed);
+        status.put("source", cacheSource);
+        status.put("snapshotRows", snapshotRows);
+        status.put("snapshotWrittenAt", snapshotWrittenAt);
+        return status;
+    }
+
+    private double getWarmUpProgress() {
+        if (cacheWarm) {
+            return 1.0;
+        }
+        return totalRows > 0 ? Math.min(1.0, (double) loadedRows.get() / totalRows) : 0.0;
+    }
+
+    @Scheduled(initialDelayString = "${storage.cache.snapshot.interval-ms:600000}",
+            fixedDelayString = "${storage.cache.snapshot.interval-ms:600000}")
+    public void scheduledSnapshot() {
+        if (snapshotEnabled) {
+            writeCacheSnapshot();
+        }
+    }
+
+    // Записывает снимок прогретого кэша, если он изменился с прошлой записи; false - снимок не записан
+    public synchronized boolean writeCacheSnapshot() {
+        if (!cacheWarm) {
+            return false;
+        }
+        long generation = cacheGeneration.get();
+        ContactCache.Snapshot snapshot = memoryCache.snapshot();
+        if (snapshot.version() == lastSnapshotVersion || snapshot.contacts().isEmpty()) {
+            return false;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        try {
+            ContactSnapshotFile.Info info = snapshotFile.write(snapshot.contacts());
+            clearLock.readLock().lock();
+            try {
+                // Очистка во время записи уже удалила прежний снимок, а в этом остались удалённые контакты
+                if (cacheGeneration.get() != generation) {
+                    snapshotFile.discard();
+                    return false;
+                }
+                snapshotFile.commit();
+            } finally {
+                clearLock.readLock().unlock();
+            }
+            lastSnapshotVersion = snapshot.version();
+            snapshotWrittenAt = info.createdAt();
+            snapshotRows = info.count();
+            System.out.println("Wrote contact snapshot of " + info.count() + " contacts (" + info.bytes()
+                    + " bytes) in " + (System.currentTimeMillis() - startedAt) + " ms");
+            return true;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error writing contact snapshot: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // false - контакт не принят к записи
+    public boolean saveContactInfo(ContactInfo source) {
+        // В кэше и очереди записи - неизменяемая копия: вызывающий может продолжать менять свой экземпляр
+        ContactInfo contactInfo = fitToSchema(source.compact());
+        if (contactInfo == null) {
+            return false;
+        }
+        clearLock.readLock().lock();
+        try {
+            memoryCache.put(contactInfo, this::updateIndexes);
 
+            // Запись в H2 выполняется пачками в отдельном потоке; при заполненной очереди ждём здесь
+            writeQueue.put(contactInfo);
+            return true;
         } catch (Exception e) {
             System.err.println("Error saving contact info: " + e.getMessage());
+            return false;
         } finally {
-            lock.writeLock().unlock();
+            clearLock.readLock().unlock();
+        }
+    }
+
+    private void writeFailed(ContactInfo contactInfo) {
+        if (pageStateService != null) {
+            pageStateService.forgetContent(contactInfo.getUrl());
+        }
+    }
+
+    // Значения, которые не поместились бы в колонки H2, меняются до кэша и очереди записи: иначе строка
+    // не записалась бы, а кэш разошёлся бы с таблицей. null - url длиннее ключа, контакт не сохраняется
+    private ContactInfo fitToSchema(ContactInfo contactInfo) {
+        if (contactInfo.getUrl().length() > MAX_URL_LENGTH) {
+            System.err.println("Skipping contact info with URL longer than " + MAX_URL_LENGTH + " characters: "
+                    + contactInfo.getUrl().substring(0, 100) + "...");
+            return null;
+        }
+        String title = contactInfo.getTitle();
+        boolean changed = title != null && title.length() > MAX_TITLE_LENGTH;
+        List<Set<String>> values = new ArrayList<>(CHILD_TABLES.size());
+        for (ChildTable child : CHILD_TABLES) {
+            Set<String> fitted = child.fit(child.values.apply(contactInfo));
+            changed |= fitted != child.values.apply(contactInfo);
+            values.add(fitted);
+        }
+        if (!changed) {
+            return contactInfo;
+        }
+        System.err.println("Truncated oversize values of contact info " + contactInfo.getUrl());
+        return ContactInfo.ofCompact(contactInfo.getUrl(), truncate(title, MAX_TITLE_LENGTH),
+                contactInfo.getTimestamp(), values.get(0), values.get(1), values.get(2));
+    }
+
+    private static String truncate(String value, int maxLength) {
+        return value != null && value.length() > maxLength ? value.substring(0, maxLength) : value;
+    }
+
+    // Ждёт, пока все ранее сохранённые контакты будут записаны в H2
+    public void flush() {
+        writeQueue.flush();
+    }
+
+    public int getPendingWrites() {
+        return writeQueue.size();
+    }
+
+    private void writeBatch(List<ContactInfo> batch) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate("""
+                MERGE INTO contact_info (url, title, timestamp) 
+                KEY(url) 
+                VALUES (?, ?, ?)
+            """, batch, batch.size(), (ps, contactInfo) -> {
+                ps.setString(1, contactInfo.getUrl());
+                ps.setString(2, contactInfo.getTitle());
+                ps.setLong(3, contactInfo.getTimestamp());
+            });
+
+            Map<ChildTable, List<Object[]>> rows = new HashMap<>();
+            for (ChildTable child : CHILD_TABLES) {
+                jdbcTemplate.batchUpdate("DELETE FROM " + child.table + " WHERE url = ?", batch, batch.size(),
+                        (ps, contactInfo) -> ps.setString(1, contactInfo.getUrl()));
+
+                List<Object[]> values = new ArrayList<>();
+                for (ContactInfo contactInfo : batch) {
+                    for (String value : child.values.apply(contactInfo)) {
+                        values.add(new Object[]{contactInfo.getUrl(), value});
+                    }
+                }
+                rows.put(child, values);
+            }
+            insertChildRows(rows);
+        });
+    }
+
+    // Поиск по телефону и email идёт по индексам дочерних таблиц
+    public List<ContactInfo> findByPhone(String phone) {
+        return queryContacts("SELECT url FROM contact_phone WHERE phone = ?", phone);
+    }
+
+    public List<ContactInfo> findByEmail(String email) {
+        return queryContacts("SELECT url FROM contact_email WHERE email = ?", email.toLowerCase());
+    }
+
+    private List<ContactInfo> queryContacts(String urlQuery, Object... args) {
+        Map<String, ContactInfo> contacts = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT url, title, timestamp FROM contact_info WHERE url IN (" + urlQuery + ")",
+                rs -> {
+                    ContactInfo contactInfo = getContactInfoRowMapper().mapRow(rs, 0);
+                    contacts.put(contactInfo.getUrl(), contactInfo);
+                }, args);
+        for (ChildTable child : CHILD_TABLES) {
+            jdbcTemplate.query("SELECT url, " + child.column + " FROM " + child.table
+                    + " WHERE url IN (" + urlQuery + ")", rs -> {
+                ContactInfo contactInfo = contacts.get(rs.getString(1));
+                if (contactInfo != null) {
+                    child.values.apply(contactInfo).add(rs.getString(2));
+                }
+            }, args);
         }
+        return new ArrayList<>(contacts.values());
     }
 
+    // Неизменяемый снимок кэша на один момент времени; пока записей не было, отдаётся прежний
     public List<ContactInfo> getAllContacts() {
-        lock.readLock().lock();
-        try {
-            return new ArrayList<>(memoryCache);
-        } finally {
-            lock.readLock().unlock();
+        if (!cacheWarm) {
+            List<ContactInfo> contacts = new ArrayList<>();
+            queryFromH2("", List.of(), contacts::add);
+            return contacts;
         }
+        return memoryCache.snapshot().contacts();
     }
 
     public List<ContactInfo> getContactsSortedBy(String field, boolean ascending) {
-        List<ContactInfo> contacts = getAllContacts();
-
-        return contacts.parallelStream()
-                .sorted((c1, c2) -> {
-                    int result = 0;
-                    switch (field.toLowerCase()) {
-                        case "url":
-                            result = c1.getUrl().compareTo(c2.getUrl());
-                            break;
-                        case "title":
-                            result = c1.getTitle().compareTo(c2.getTitle());
-                            break;
-                        case "phones":
-                            result = Integer.compare(c1.getPhones().size(), c2.getPhones().size());
-                            break;
-                        case "emails":
-                            result = Integer.compare(c1.getEmails().size(), c2.getEmails().size());
-                            break;
-                        case "timestamp":
-                            result = Long.compare(c1.getTimestamp(), c2.getTimestamp());
-                            break;
-                        default:
-                            result = c1.getUrl().compareTo(c2.getUrl());
-                    }
-                    return ascending ? result : -result;
-                })
-                .toList();
+        return getContactsSortedBy(field, ascending, 0, Integer.MAX_VALUE);
+    }
+
+    // Индексы поддерживаются при каждой записи, поэтому чтение - это проход по skip-list без сортировки
+    public List<ContactInfo> getContactsSortedBy(String field, boolean ascending, int offset, int limit) {
+        ContactSortIndex.SortField sortField = ContactSortIndex.SortField.of(field);
+        if (!cacheWarm) {
+            List<ContactInfo> contacts = new ArrayList<>();
+            sortTimer.record(() -> querySortedFromH2(sortField, ascending, null, offset, limit, contacts::add));
+            return contacts;
+        }
+        return sortTimer.record(() -> sortIndex.getSorted(sortField, ascending, offset, limit));
+    }
+
+    // Постраничное чтение по курсору: следующая страница начинается сразу после ключа последнего контакта,
+    // поэтому страница стоит O(limit) независимо от глубины и размера таблицы
+    public ContactPage getContactsPage(String field, boolean ascending, String cursor, int limit) {
+        return sortTimer.record(() -> readContactsPage(field, ascending, cursor, limit));
+    }
+
+    private ContactPage readContactsPage(String field, boolean ascending, String cursor, int limit) {
+        ContactSortIndex.SortField sortField = ContactSortIndex.SortField.of(field);
+        Iterator<ContactInfo> iterator;
+        if (cacheWarm) {
+            iterator = sortIndex.iterator(sortField, ascending, cursor);
+        } else {
+            // Лишняя строка показывает, есть ли следующая страница
+            List<ContactInfo> rows = new ArrayList<>();
+            querySortedFromH2(sortField, ascending, cursor, 0, limit + 1, rows::add);
+            iterator = rows.iterator();
+        }
+
+        List<ContactInfo> items = new ArrayList<>(Math.min(limit, 1024));
+        while (items.size() < limit && iterator.hasNext()) {
+            items.add(iterator.next());
+        }
+        String nextCursor = !items.isEmpty() && iterator.hasNext()
+                ? sortIndex.cursorOf(sortField, items.get(items.size() - 1))
+                : null;
+        return new ContactPage(items, nextCursor);
+    }
+
+    // Отдаёт контакты по одному без промежуточного списка - для потоковых ответов
+    public void streamContacts(String field, boolean ascending, String cursor, int limit,
+                               Consumer<ContactInfo> sink) {
+        if (!cacheWarm) {
+            querySortedFromH2(ContactSortIndex.SortField.of(field), ascending, cursor, 0, limit, sink);
+            return;
+        }
+        Iterator<ContactInfo> iterator = sortIndex.iterator(ContactSortIndex.SortField.of(field), ascending, cursor);
+        for (int count = 0; count < limit && iterator.hasNext(); count++) {
+            sink.accept(iterator.next());
+        }
+    }
+
+    // Страница результатов поиска в порядке url. Держим только limit + 1 лучших совпадений в куче,
+    // а не весь результат
+    public ContactPage filterContactsPage(String searchTerm, String cursor, int limit) {
+        return filterTimer.record(() -> readFilteredPage(searchTerm, cursor, limit));
+    }
+
+    private ContactPage readFilteredPage(String searchTerm, String cursor, int limit) {
+        String afterUrl = cursor != null ? sortIndex.urlOf(ContactSortIndex.SortField.URL, cursor) : null;
+        Comparator<ContactInfo> byUrl = Comparator.comparing(ContactInfo::getUrl);
+        PriorityQueue<ContactInfo> best = new PriorityQueue<>(byUrl.reversed());
+
+        streamFilteredContacts(searchTerm, contact -> {
+            if (afterUrl != null && contact.getUrl().compareTo(afterUrl) <= 0) {
+                return;
+            }
+            best.add(contact);
+            if (best.size() > limit + 1) {
+                best.poll();
+            }
+        });
+
+        List<ContactInfo> items = new ArrayList<>(best);
+        items.sort(byUrl);
+        String nextCursor = null;
+        if (items.size() > limit) {
+            items = items.subList(0, limit);
+            nextCursor = limit > 0 ? sortIndex.cursorOf(ContactSortIndex.SortField.URL, items.get(limit - 1)) : null;
+        }
+        return new ContactPage(items, nextCursor);
+    }
+
+    public void streamFilteredContacts(String searchTerm, Consumer<ContactInfo> sink) {
+        if (!cacheWarm) {
+            String term = searchTerm.toLowerCase();
+            queryFromH2("", List.of(), contact -> {
+                if (ContactSearchIndex.matches(contact, term)) {
+                    sink.accept(contact);
+                }
+            });
+            return;
+        }
+        if (!searchIndex.search(searchTerm, sink)) {
+            String term = searchTerm.toLowerCase();
+            memoryCache.snapshot().contacts().forEach(contact -> {
+                if (ContactSearchIndex.matches(contact, term)) {
+                    sink.accept(contact);
+                }
+            });
+        }
     }
 
     public List<ContactInfo> filterContacts(String searchTerm) {
-        List<ContactInfo> contacts = getAllContacts();
-        final String term = searchTerm.toLowerCase();
+        return filterTimer.record(() -> findMatching(searchTerm));
+    }
 
-        return contacts.parallelStream()
-                .filter(contact ->
-                        contact.getUrl().toLowerCase().contains(term) ||
-                                (contact.getTitle() != null && contact.getTitle().toLowerCase().contains(term)) ||
-                                contact.getPhones().stream().anyMatch(phone -> phone.contains(term)) ||
-                                contact.getEmails().stream().anyMatch(email -> email.contains(term)) ||
-                                contact.getAddresses().stream().anyMatch(address -> address.toLowerCase().contains(term))
-                )
+    private List<ContactInfo> findMatching(String searchTerm) {
+        if (!cacheWarm) {
+            List<ContactInfo> contacts = new ArrayList<>();
+            streamFilteredContacts(searchTerm, contacts::add);
+            return contacts;
+        }
+
+        // Запросы от трёх символов отвечаются индексом, короткие - полным просмотром
+        List<ContactInfo> indexed = searchIndex.search(searchTerm);
+        if (indexed != null) {
+            return indexed;
+        }
+
+        final String term = searchTerm.toLowerCase();
+        return memoryCache.snapshot().contacts().parallelStream()
+                .filter(contact -> ContactSearchIndex.matches(contact, term))
                 .toList();
     }
 
     public int getDataCount() {
-        lock.readLock().lock();
-        try {
-            return memoryCache.size();
-        } finally {
-            lock.readLock().unlock();
+        if (!cacheWarm) {
+            writeQueue.flush();
+            Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM contact_info", Integer.class);
+            return count != null ? count : 0;
         }
+        return memoryCache.size();
+    }
+
+    // Чтение в обход холодного кэша. Отложенные записи сначала дописываются, чтобы H2 видел все сохранённые контакты
+    private void queryFromH2(String clause, List<Object> args, Consumer<ContactInfo> sink) {
+        writeQueue.flush();
+        jdbcTemplate.query(CONTACT_QUERY + clause, rs -> {
+            sink.accept(readContact(rs));
+        }, args.toArray());
+    }
+
+    // Тот же порядок, что у ContactSortIndex: null-названия первыми по возрастанию, при равенстве - по url
+    private void querySortedFromH2(ContactSortIndex.SortField field, boolean ascending, String cursor,
+                                   int offset, int limit, Consumer<ContactInfo> sink) {
+        String value = switch (field) {
+            case URL -> "c.url";
+            case TITLE -> "c.title";
+            case PHONES -> "(SELECT COUNT(*) FROM contact_phone p WHERE p.url = c.url)";
+            case EMAILS -> "(SELECT COUNT(*) FROM contact_email e WHERE e.url = c.url)";
+            case TIMESTAMP -> "c.timestamp";
+        };
+        String after = ascending ? ">" : "<";
+
+        StringBuilder clause = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        if (cursor != null) {
+            ContactSortIndex.CursorPosition position = sortIndex.positionOf(field, cursor);
+            Object key = field.isText() ? position.text() : position.number();
+            if (key == null) {
+                clause.append(ascending
+                        ? " WHERE (" + value + " IS NULL AND c.url > ? OR " + value + " IS NOT NULL)"
+                        : " WHERE " + value + " IS NULL AND c.url < ?");
+                args.add(position.url());
+            } else {
+                clause.append(" WHERE (").append(value).append(' ').append(after).append(" ? OR ")
+                        .append(value).append(" = ? AND c.url ").append(after).append(" ?")
+                        .append(ascending ? "" : " OR " + value + " IS NULL").append(')');
+                args.add(key);
+                args.add(key);
+                args.add(position.url());
+            }
+        }
+        clause.append(" ORDER BY ").append(value).append(ascending ? " ASC NULLS FIRST" : " DESC NULLS LAST")
+                .append(", c.url ").append(ascending ? "ASC" : "DESC")
+                .append(" LIMIT ? OFFSET ?");
+        args.add(limit);
+        args.add(offset);
+        queryFromH2(clause.toString(), args, sink);
     }
 
     public void clearData() {
-        lock.writeLock().lock();
+        clearLock.writeLock().lock();
         try {
+            // Иначе отложенные записи вернули бы удалённые строки
+            writeQueue.flush();
+            deleteSnapshot();
             jdbcTemplate.update("DELETE FROM contact_info");
+            cacheGeneration.incrementAndGet();
             memoryCache.clear();
+            searchIndex.clear();
+            sortIndex.clear();
+            // Таблица пуста, а все новые записи попадут в кэш: незаконченный прогрев больше не нужен
+            cacheWarm = true;
             System.out.println("All data cleared");
         } catch (Exception e) {
             System.err.println("Error clearing data: " + e.getMessage());
         } finally {
-            lock.writeLock().unlock();
+            clearLock.writeLock().unlock();
         }
     }
 
-    private String setToString(Set<String> set) {
-        if (set == null || set.isEmpty()) {
-            return "";
+    // Снимок удаляется до строк: иначе после сбоя между ними следующий запуск загрузил бы удалённые контакты
+    private void deleteSnapshot() {
+        lastSnapshotVersion = -1;
+        snapshotRows = 0;
+        try {
+            snapshotFile.delete();
+        } catch (IOException e) {
+            System.err.println("Error deleting contact snapshot: " + e.getMessage());
         }
-        return String.join(";;", set);
     }
 
     private Set<String> stringToSet(String str) {
         if (str == null || str.trim().isEmpty()) {
-            return ConcurrentHashMap.newKeySet();
+            return Set.of();
         }
-        Set<String> result = ConcurrentHashMap.newKeySet();
+        Set<String> result = new LinkedHashSet<>();
         String[] parts = str.split(";;");
         for (String part : parts) {
             if (!part.trim().isEmpty()) {
@@ -189,6 +901,28 @@ public class H2StorageService {
         return result;
     }
 
+    private static String contactQuery() {
+        StringBuilder query = new StringBuilder("SELECT c.url, c.title, c.timestamp");
+        for (ChildTable child : CHILD_TABLES) {
+            query.append(", (SELECT ARRAY_AGG(").append(child.column).append(") FROM ").append(child.table)
+                    .append(" t WHERE t.url = c.url)");
+        }
+        return query.append(" FROM contact_info c").toString();
+    }
+
+    private ContactInfo readContact(ResultSet rs) throws SQLException {
+        ContactInfo contactInfo = getContactInfoRowMapper().mapRow(rs, 0);
+        for (int i = 0; i < CHILD_TABLES.size(); i++) {
+            Array values = rs.getArray(4 + i);
+            if (values != null) {
+                for (Object value : (Object[]) values.getArray()) {
+                    CHILD_TABLES.get(i).values.apply(contactInfo).add((String) value);
+                }
+            }
+        }
+        return contactInfo;
+    }
+
     private RowMapper<ContactInfo> getContactInfoRowMapper() {
         return new RowMapper<ContactInfo>() {
             @Override
@@ -196,11 +930,53 @@ public class H2StorageService {
                 ContactInfo contactInfo = new ContactInfo(rs.getString("url"));
                 contactInfo.setTitle(rs.getString("title"));
                 contactInfo.setTimestamp(rs.getLong("timestamp"));
-                contactInfo.setPhones(stringToSet(rs.getString("phones")));
-                contactInfo.setEmails(stringToSet(rs.getString("emails")));
-                contactInfo.setAddresses(stringToSet(rs.getString("addresses")));
                 return contactInfo;
             }
         };
     }
+
+    private record KeyRange(String from, String to) {
+    }
+
+    private static final class ChildTable {
+        private final String table;
+        private final String column;
+        private final int maxLength;
+        private final boolean truncatable;
+        private final String legacyColumn;
+        private final Function<ContactInfo, Set<String>> values;
+
+        private ChildTable(String table, String column, int maxLength, boolean truncatable, String legacyColumn,
+                           Function<ContactInfo, Set<String>> values) {
+            this.table = table;
+            this.column = column;
+            this.maxLength = maxLength;
+            this.truncatable = truncatable;
+            this.legacyColumn = legacyColumn;
+            this.values = values;
+        }
+
+        // Значение, подогнанное под колонку, или null, если его нужно отбросить
+        private String fit(String value) {
+            if (value.length() <= maxLength) {
+                return value;
+            }
+            return truncatable ? value.substring(0, maxLength) : null;
+        }
+
+        // Тот же набор, если все значения помещаются
+        private Set<String> fit(Set<String> values) {
+            if (values.stream().allMatch(value -> value.length() <= maxLength)) {
+                return values;
+            }
+            Set<String> fitted = new LinkedHashSet<>();
+            for (String value : values) {
+                String result = fit(value);
+                if (result != null) {
+                    fitted.add(result);
+                }
+            }
+            return Set.copyOf(fitted);
+        }
+    }
 }
\ No newline at end of file
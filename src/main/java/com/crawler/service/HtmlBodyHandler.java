@@ -0,0 +1,368 @@
+package com.crawler.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Потоковое чтение тела ответа. Тип содержимого и Content-Length проверяются до чтения,
+// байты декодируются по мере поступления в буфер символов из общего пула, а при превышении
+// лимита или таймаута подписка отменяется и соединение закрывается. Вместо тела - null.
+// Если кодировки нет в Content-Type, начало тела копится сырым, пока по BOM или <meta> не станет
+// ясна кодировка страницы; без объявления - UTF-8.
+public class HtmlBodyHandler implements HttpResponse.BodyHandler<String> {
+    private static final Logger logger = LoggerFactory.getLogger(HtmlBodyHandler.class);
+
+    private static final int INITIAL_BUFFER_CHARS = 64 * 1024;
+    private static final int MAX_POOLED_BUFFER_CHARS = 1024 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    // Сколько байт начала страницы просматривается в поисках <meta charset>
+    private static final int SNIFF_BYTES = 4096;
+    // <meta charset="..."> и <meta http-equiv="Content-Type" content="text/html; charset=...">
+    private static final Pattern META_CHARSET = Pattern.compile(
+            "<meta\\s[^>]*?charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+
+    private final long maxBodyBytes;
+    private final Duration readTimeout;
+    private final Set<String> acceptedTypes;
+    private final Queue<CharBuffer> bufferPool;
+    private final AtomicInteger pooledBuffers;
+    private final AtomicLong skippedByContentType;
+    private final AtomicLong abortedBySize;
+
+    public HtmlBodyHandler(long maxBodyBytes, Duration readTimeout, Set<String> acceptedTypes) {
+        this.maxBodyBytes = maxBodyBytes;
+        this.readTimeout = readTimeout;
+        this.acceptedTypes = acceptedTypes;
+        this.bufferPool = new ConcurrentLinkedQueue<>();
+        this.pooledBuffers = new AtomicInteger();
+        this.skippedByContentType = new AtomicLong();
+        this.abortedBySize = new AtomicLong();
+    }
+
+    @Override
+    public HttpResponse.BodySubscriber<String> apply(HttpResponse.ResponseInfo responseInfo) {
+        // Тело ошибки никому не нужно
+        if (responseInfo.statusCode() < 200 || responseInfo.statusCode() >= 300) {
+            return new DiscardingSubscriber();
+        }
+
+        HttpHeaders headers = responseInfo.headers();
+        String contentType = headers.firstValue("Content-Type").orElse(null);
+        if (contentType != null && !acceptedTypes.contains(mediaType(contentType))) {
+            skippedByContentType.incrementAndGet();
+            logger.debug("Skipping body with Content-Type {}", contentType);
+            return new DiscardingSubscriber();
+        }
+
+        long contentLength = headers.firstValueAsLong("Content-Length").orElse(-1L);
+        if (contentLength > maxBodyBytes) {
+            abortedBySize.incrementAndGet();
+            logger.debug("Skipping body of {} bytes", contentLength);
+            return new DiscardingSubscriber();
+        }
+
+        return new DecodingSubscriber(charsetOf(contentType));
+    }
+
+    public long getSkippedByContentType() {
+        return skippedByContentType.get();
+    }
+
+    public long getAbortedBySize() {
+        return abortedBySize.get();
+    }
+
+    private static String mediaType(String contentType) {
+        int separator = contentType.indexOf(';');
+        String type = separator >= 0 ? contentType.substring(0, separator) : contentType;
+        return type.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Кодировка из заголовка; null - её нет или она неизвестна, определяется по началу тела
+    private static Charset charsetOf(String contentType) {
+        if (contentType != null) {
+            for (String parameter : contentType.split(";")) {
+                String trimmed = parameter.trim();
+                if (trimmed.regionMatches(true, 0, "charset=", 0, 8)) {
+                    return charsetForName(trimmed.substring(8).replace("\"", "").trim());
+                }
+            }
+        }
+        return null;
+    }
+
+    // Кодировка по BOM или <meta> в первых байтах тела, иначе UTF-8
+    static Charset sniffCharset(byte[] head, int length) {
+        if (length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+        // Разметка до объявления кодировки - ASCII, поэтому байты можно читать как ISO-8859-1
+        Matcher matcher = META_CHARSET.matcher(new String(head, 0, length, StandardCharsets.ISO_8859_1));
+        if (matcher.find()) {
+            Charset charset = charsetForName(matcher.group(1));
+            // Страница, уже прочитанная как ASCII, не может быть в UTF-16 - так же решает и браузер
+            if (charset != null && !charset.name().startsWith("UTF-16")) {
+                return charset;
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Charset charsetForName(String name) {
+        try {
+            return Charset.forName(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private CharBuffer borrowBuffer() {
+        CharBuffer buffer = bufferPool.poll();
+        if (buffer == null) {
+            return CharBuffer.allocate(INITIAL_BUFFER_CHARS);
+        }
+        pooledBuffers.decrementAndGet();
+        return buffer;
+    }
+
+    private void returnBuffer(CharBuffer buffer) {
+        // Слишком большие буферы не держим, чтобы редкие огромные страницы не раздували пул
+        if (buffer.capacity() > MAX_POOLED_BUFFER_CHARS) {
+            return;
+        }
+        if (pooledBuffers.incrementAndGet() > MAX_POOLED_BUFFERS) {
+            pooledBuffers.decrementAndGet();
+            return;
+        }
+        buffer.clear();
+        bufferPool.offer(buffer);
+    }
+
+    private static CharsetDecoder newDecoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    // Отменяет подписку сразу: соединение закрывается, тело не скачивается
+    private static final class DiscardingSubscriber implements HttpResponse.BodySubscriber<String> {
+        private final CompletableFuture<String> result = CompletableFuture.completedFuture(null);
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.cancel();
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private final class DecodingSubscriber implements HttpResponse.BodySubscriber<String> {
+        private CharsetDecoder decoder;
+        // Начало тела, пока кодировка не определена; после этого null
+        private ByteBuffer head;
+        private final CompletableFuture<String> result;
+        // Хвост многобайтового символа, разрезанного между пакетами
+        private final ByteBuffer carry;
+        private volatile Flow.Subscription subscription;
+        private CharBuffer chars;
+        private long received;
+
+        // charset == null - кодировка определяется по первым SNIFF_BYTES байтам тела
+        private DecodingSubscriber(Charset charset) {
+            if (charset != null) {
+                this.decoder = newDecoder(charset);
+            } else {
+                this.head = ByteBuffer.allocate(SNIFF_BYTES);
+            }
+            this.carry = ByteBuffer.allocate(16);
+            this.result = new CompletableFuture<>();
+            // Таймаут чтения тела: request-timeout клиента покрывает только ожидание заголовков
+            result.orTimeout(readTimeout.toMillis(), TimeUnit.MILLISECONDS)
+                    .whenComplete((body, error) -> {
+                        if (error != null) {
+                            cancel();
+                        }
+                    });
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (result.isDone()) {
+                subscription.cancel();
+                return;
+            }
+            synchronized (this) {
+                chars = borrowBuffer();
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                for (ByteBuffer item : items) {
+                    received += item.remaining();
+                    if (received > maxBodyBytes) {
+                        abortedBySize.incrementAndGet();
+                        logger.debug("Aborting body after {} bytes", received);
+                        result.complete(null);
+                        cancel();
+                        return;
+                    }
+                    if (decoder == null) {
+                        collectHead(item);
+                    }
+                    if (decoder != null) {
+                        decode(item, false);
+                    }
+                }
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            synchronized (this) {
+                release();
+            }
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            String body;
+            synchronized (this) {
+                if (result.isDone()) {
+                    return;
+                }
+                if (decoder == null) {
+                    startDecoding();
+                }
+                carry.flip();
+                decodeInto(carry, true);
+                while (decoder.flush(chars) == CoderResult.OVERFLOW) {
+                    grow();
+                }
+                chars.flip();
+                body = chars.toString();
+                release();
+            }
+            result.complete(body);
+        }
+
+        private void collectHead(ByteBuffer item) {
+            int length = Math.min(item.remaining(), head.remaining());
+            head.put(item.slice().limit(length));
+            item.position(item.position() + length);
+            if (!head.hasRemaining()) {
+                startDecoding();
+            }
+        }
+
+        // Кодировка определена: накопленное начало декодируется как обычный пакет
+        private void startDecoding() {
+            decoder = newDecoder(sniffCharset(head.array(), head.position()));
+            ByteBuffer collected = head.flip();
+            head = null;
+            decode(collected, false);
+        }
+
+        private void decode(ByteBuffer input, boolean endOfInput) {
+            // Сначала дописываем начатый в прошлом пакете символ
+            while (carry.position() > 0 && input.hasRemaining()) {
+                carry.put(input.get());
+                carry.flip();
+                decodeInto(carry, false);
+                carry.compact();
+            }
+            decodeInto(input, endOfInput);
+            if (input.hasRemaining()) {
+                carry.put(input);
+            }
+        }
+
+        private void decodeInto(ByteBuffer input, boolean endOfInput) {
+            while (decoder.decode(input, chars, endOfInput) == CoderResult.OVERFLOW) {
+                grow();
+            }
+        }
+
+        private void grow() {
+            CharBuffer larger = CharBuffer.allocate(chars.capacity() * 2);
+            chars.flip();
+            larger.put(chars);
+            returnBuffer(chars);
+            chars = larger;
+        }
+
+        private void cancel() {
+            Flow.Subscription current = subscription;
+            if (current != null) {
+                current.cancel();
+            }
+            synchronized (this) {
+                release();
+            }
+        }
+
+        private void release() {
+            if (chars != null) {
+                returnBuffer(chars);
+                chars = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+// Кэш контактов вне кучи: сериализованные записи дописываются в отображённые в память файлы-сегменты,
+// в куче остаётся только индекс url -> смещение. Объём данных ограничен диском и page cache, а не -Xmx.
+// Запись не меняется после добавления и хранит смещение предыдущей версии того же url, поэтому
+// снимок берёт текущую позицию журнала и по каждому url находит последнюю запись до неё -
+// то же состояние на один момент времени, что и у VersionedContactStore, без блокировок читателей.
+// Сегменты не переживают перезапуск: кэш заполняется из H2 при старте.
+// Устаревшие версии остаются в журнале; когда они занимают больше половины журнала и не меньше
+// сегмента, последние версии переписываются в журнал нового поколения, а старый удаляется.
+public class MappedContactCache implements ContactCache {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+    private static final long NO_PREVIOUS = -1;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final AtomicLong generations;
+    // Начатые и завершённые записи: равенство значит, что незавершённых записей нет
+    private final AtomicLong writes;
+    private final AtomicLong completed;
+    private final AtomicLong compactions;
+    // Записи идут параллельно под общей блокировкой, сжатие и очистка - под исключительной.
+    // Читатели блокировку не берут: прежний журнал остаётся отображённым и после замены
+    private final ReadWriteLock generationLock;
+    private volatile State state;
+    private volatile Snapshot lastSnapshot;
+
+    public MappedContactCache(Path directory, int segmentSize) {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("segmentSize must be at least 1024 bytes");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.generations = new AtomicLong();
+        this.writes = new AtomicLong();
+        this.completed = new AtomicLong();
+        this.compactions = new AtomicLong();
+        this.generationLock = new ReentrantReadWriteLock();
+        try {
+            Files.createDirectories(directory);
+            deleteSegments(null);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare contact cache directory " + directory, e);
+        }
+        this.state = new State(new ConcurrentHashMap<>(), new Log(generations.incrementAndGet()));
+    }
+
+    @Override
+    public ContactInfo get(String url) {
+        State current = state;
+        Long offset = current.index.get(url);
+        return offset != null ? current.log.read(offset) : null;
+    }
+
+    @Override
+    public ContactInfo put(ContactInfo contact, BiConsumer<ContactInfo, ContactInfo> onChange) {
+        byte[] payload = encode(contact);
+        ContactInfo[] previous = new ContactInfo[1];
+        generationLock.readLock().lock();
+        State current = state;
+        writes.incrementAndGet();
+        try {
+            // Место выделяется под блокировкой ключа: версии одного url идут в журнале по возрастанию смещений
+            current.index.compute(contact.getUrl(), (url, head) -> {
+                long offset = current.log.append(payload, head != null ? head : NO_PREVIOUS);
+                if (head != null) {
+                    previous[0] = current.log.read(head);
+                    current.log.deadBytes.addAndGet(current.log.lengthOf(head));
+                }
+                onChange.accept(previous[0], contact);
+                return offset;
+            });
+        } finally {
+            completed.incrementAndGet();
+            generationLock.readLock().unlock();
+        }
+        if (current.log.needsCompaction()) {
+            compact();
+        }
+        return previous[0];
+    }
+
+    @Override
+    public boolean putIfAbsent(ContactInfo contact, BiConsumer<ContactInfo, ContactInfo> onChange) {
+        generationLock.readLock().lock();
+        State current = state;
+        boolean[] added = new boolean[1];
+        writes.incrementAndGet();
+        try {
+            current.index.computeIfAbsent(contact.getUrl(), url -> {
+                long offset = current.log.append(encode(contact), NO_PREVIOUS);
+                onChange.accept(null, contact);
+                added[0] = true;
+                return offset;
+            });
+        } finally {
+            completed.incrementAndGet();
+            generationLock.readLock().unlock();
+        }
+        return added[0];
+    }
+
+    @Override
+    public void putAll(Collection<ContactInfo> contacts) {
+        contacts.forEach(this::put);
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        Snapshot cached = lastSnapshot;
+        if (cached != null && cached.version() == writes.get()) {
+            return cached;
+        }
+
+        long version = writes.get();
+        boolean settled = completed.get() == version;
+        State current = state;
+        // Записи с большим смещением сделаны после начала снимка
+        long position = current.log.position.get();
+
+        long[] offsets = new long[Math.max(16, current.index.size())];
+        int count = 0;
+        for (Long head : current.index.values()) {
+            long offset = head;
+            while (offset >= position) {
+                offset = current.log.previousOf(offset);
+            }
+            if (offset != NO_PREVIOUS) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = offset;
+            }
+        }
+
+        Snapshot snapshot = new Snapshot(version, new RecordList(current.log, offsets, count));
+        if (settled) {
+            lastSnapshot = snapshot;
+        }
+        return snapshot;
+    }
+
+    @Override
+    public int size() {
+        return state.index.size();
+    }
+
+    // Байт журнала занято, включая устаревшие версии
+    public long getMappedBytes() {
+        return state.log.position.get();
+    }
+
+    public int getSegmentCount() {
+        return state.log.segments.length;
+    }
+
+    // Байт журнала под версиями, которые заменены более новыми
+    public long getDeadBytes() {
+        return state.log.deadBytes.get();
+    }
+
+    public long getCompactions() {
+        return compactions.get();
+    }
+
+    // Снимки, начатые до очистки, дочитывают прежние сегменты: отображение остаётся действительным
+    // и после удаления файлов. Одновременные записи вызывающий должен исключить сам
+    @Override
+    public void clear() {
+        generationLock.writeLock().lock();
+        try {
+            writes.incrementAndGet();
+            State previous = state;
+            state = new State(new ConcurrentHashMap<>(), new Log(generations.incrementAndGet()));
+            lastSnapshot = null;
+            completed.incrementAndGet();
+            deleteGeneration(previous.log);
+        } finally {
+            generationLock.writeLock().unlock();
+        }
+    }
+
+    // Переписывает последние версии в журнал нового поколения. Содержимое кэша не меняется,
+    // поэтому версия снимков остаётся прежней, а уже выданные снимки дочитывают старый журнал
+    private void compact() {
+        generationLock.writeLock().lock();
+        try {
+            State current = state;
+            // Пока ждали блокировку, журнал мог сжать другой поток
+            if (!current.log.needsCompaction()) {
+                return;
+            }
+            Log log = new Log(generations.incrementAndGet());
+            ConcurrentHashMap<String, Long> index = new ConcurrentHashMap<>(current.index.size());
+            current.index.forEach((url, head) -> index.put(url, log.append(current.log.payloadOf(head), NO_PREVIOUS)));
+            state = new State(index, log);
+            compactions.incrementAndGet();
+            deleteGeneration(current.log);
+        } finally {
+            generationLock.writeLock().unlock();
+        }
+    }
+
+    private void deleteGeneration(Log log) {
+        try {
+            deleteSegments(log.generation);
+        } catch (IOException e) {
+            System.err.println("Error deleting contact cache segments: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            deleteSegments(null);
+        } catch (IOException e) {
+            System.err.println("Error deleting contact cache segments: " + e.getMessage());
+        }
+    }
+
+    // generation == null - все сегменты, в том числе оставшиеся от прошлого запуска
+    private void deleteSegments(Long generation) throws IOException {
+        String pattern = SEGMENT_PREFIX + (generation != null ? generation + "-" : "") + "*.dat";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, pattern)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static byte[] encode(ContactInfo contact) {
+        List<byte[]> strings = new ArrayList<>();
+        strings.add(utf8(contact.getUrl()));
+        strings.add(utf8(contact.getTitle()));
+        List<Set<String>> sets = List.of(contact.getPhones(), contact.getEmails(), contact.getAddresses());
+        int[] counts = new int[sets.size()];
+        for (int i = 0; i < sets.size(); i++) {
+            // Размер берётся по фактически записанным значениям: набор может меняться у вызывающего
+            for (String value : sets.get(i)) {
+                strings.add(utf8(value));
+                counts[i]++;
+            }
+        }
+
+        int size = Long.BYTES + counts.length * Integer.BYTES;
+        for (byte[] string : strings) {
+            size += Integer.BYTES + (string != null ? string.length : 0);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        putString(buffer, strings.get(0));
+        putString(buffer, strings.get(1));
+        buffer.putLong(contact.getTimestamp());
+        int next = 2;
+        for (int count : counts) {
+            buffer.putInt(count);
+            for (int i = 0; i < count; i++) {
+                putString(buffer, strings.get(next++));
+            }
+        }
+        return buffer.array();
+    }
+
+    private static ContactInfo decode(ByteBuffer buffer) {
+        String url = getString(buffer);
+        String title = getString(buffer);
+        long timestamp = buffer.getLong();
+        return ContactInfo.ofCompact(url, title, timestamp, getSet(buffer), getSet(buffer), getSet(buffer));
+    }
+
+    private static byte[] utf8(String value) {
+        return value != null ? value.getBytes(StandardCharsets.UTF_8) : null;
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(value.length);
+        buffer.put(value);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static Set<String> getSet(ByteBuffer buffer) {
+        int count = buffer.getInt();
+        if (count == 0) {
+            return Set.of();
+        }
+        String[] values = new String[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = getString(buffer);
+        }
+        return Set.of(values);
+    }
+
+    private record State(ConcurrentHashMap<String, Long> index, Log log) {
+    }
+
+    // Журнал одного поколения кэша: сегменты фиксированного размера, запись не пересекает границу сегмента
+    private final class Log {
+        private final long generation;
+        private final AtomicLong position;
+        private final AtomicLong deadBytes;
+        private volatile MappedByteBuffer[] segments;
+
+        private Log(long generation) {
+            this.generation = generation;
+            this.position = new AtomicLong();
+            this.deadBytes = new AtomicLong();
+            this.segments = new MappedByteBuffer[0];
+        }
+
+        boolean needsCompaction() {
+            long dead = deadBytes.get();
+            return dead >= segmentSize && dead * 2 >= position.get();
+        }
+
+        long append(byte[] payload, long previous) {
+            int length = HEADER_BYTES + payload.length;
+            if (length > segmentSize) {
+                throw new IllegalArgumentException("Contact record of " + length
+                        + " bytes does not fit a " + segmentSize + "-byte segment");
+            }
+
+            long offset;
+            while (true) {
+                long current = position.get();
+                long segmentEnd = (current / segmentSize + 1) * segmentSize;
+                offset = current + length <= segmentEnd ? current : segmentEnd;
+                if (position.compareAndSet(current, offset + length)) {
+                    break;
+                }
+            }
+
+            ByteBuffer segment = segment((int) (offset / segmentSize));
+            int at = (int) (offset % segmentSize);
+            segment.putInt(at, payload.length);
+            segment.putLong(at + Integer.BYTES, previous);
+            segment.put(at + HEADER_BYTES, payload);
+            return offset;
+        }
+
+        ContactInfo read(long offset) {
+            return decode(ByteBuffer.wrap(payloadOf(offset)));
+        }
+
+        byte[] payloadOf(long offset) {
+            ByteBuffer segment = segment((int) (offset / segmentSize));
+            int at = (int) (offset % segmentSize);
+            byte[] payload = new byte[segment.getInt(at)];
+            segment.get(at + HEADER_BYTES, payload);
+            return payload;
+        }
+
+        int lengthOf(long offset) {
+            return HEADER_BYTES + segment((int) (offset / segmentSize)).getInt((int) (offset % segmentSize));
+        }
+
+        long previousOf(long offset) {
+            return segment((int) (offset / segmentSize)).getLong((int) (offset % segmentSize) + Integer.BYTES);
+        }
+
+        private ByteBuffer segment(int number) {
+            MappedByteBuffer[] current = segments;
+            return number < current.length ? current[number] : grow(number);
+        }
+
+        // Сегменты добавляются редко, поэтому массив заменяется целиком под монитором журнала
+        private synchronized ByteBuffer grow(int number) {
+            MappedByteBuffer[] current = segments;
+            if (number >= current.length) {
+                MappedByteBuffer[] grown = Arrays.copyOf(current, number + 1);
+                for (int i = current.length; i <= number; i++) {
+                    grown[i] = map(i);
+                }
+                segments = grown;
+                current = grown;
+            }
+            return current[number];
+        }
+
+        private MappedByteBuffer map(int number) {
+            Path file = directory.resolve(SEGMENT_PREFIX + generation + "-" + number + ".dat");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot map contact cache segment " + file, e);
+            }
+        }
+    }
+
+    // Неизменяемый список записей снимка: контакты декодируются из сегментов при обращении
+    private static final class RecordList extends AbstractList<ContactInfo> implements RandomAccess {
+        private final Log log;
+        private final long[] offsets;
+        private final int size;
+
+        private RecordList(Log log, long[] offsets, int size) {
+            this.log = log;
+            this.offsets = offsets;
+            this.size = size;
+        }
+
+        @Override
+        public ContactInfo get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return log.read(offsets[index]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,289 @@
+package com.crawler.service;
+
+import com.crawler.model.PageState;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Состояние страниц для инкрементального обхода. Хранится в таблице page_state рядом с contact_info,
+// в памяти держится копия для выбора заголовков условного запроса без обращения к H2.
+// Запись - через отдельную очередь отложенной записи, как и у контактов.
+@Service
+public class PageStateService {
+
+    // Длины колонок page_state
+    private static final int MAX_URL_LENGTH = 1000;
+    private static final int MAX_ETAG_LENGTH = 500;
+    private static final int MAX_LAST_MODIFIED_LENGTH = 100;
+    // Хэш текста не сохранён: следующая загрузка обрабатывает страницу как новую
+    private static final long NO_CONTENT = 0;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${storage.write-behind.queue-capacity:10000}")
+    private int writeQueueCapacity;
+
+    @Value("${storage.write-behind.batch-size:500}")
+    private int writeBatchSize;
+
+    @Value("${storage.write-behind.flush-interval-ms:200}")
+    private long writeFlushIntervalMs;
+
+    private final Map<String, PageState> states;
+    // Впервые загруженные страницы, которые ещё не забрал планировщик повторного обхода
+    private final Queue<String> newPages;
+    private final AtomicLong notModifiedPages;
+    private final AtomicLong unchangedPages;
+    private final AtomicLong changedPages;
+
+    private WriteBehindQueue<PageState> writeQueue;
+
+    public PageStateService() {
+        this.states = new ConcurrentHashMap<>();
+        this.newPages = new ConcurrentLinkedQueue<>();
+        this.notModifiedPages = new AtomicLong();
+        this.unchangedPages = new AtomicLong();
+        this.changedPages = new AtomicLong();
+    }
+
+    @Autowired
+    public void initialize() {
+        try {
+            jdbcTemplate.execute("""
+                CREATE TABLE IF NOT EXISTS page_state (
+                    url VARCHAR(1000) PRIMARY KEY,
+                    etag VARCHAR(500),
+                    last_modified VARCHAR(100),
+                    content_hash BIGINT,
+                    first_crawled BIGINT,
+                    last_crawled BIGINT,
+                    last_changed BIGINT,
+                    fetch_count INT,
+                    change_count INT
+                )
+            """);
+            // Таблицы, созданные до появления first_crawled
+            jdbcTemplate.execute("ALTER TABLE page_state ADD COLUMN IF NOT EXISTS first_crawled BIGINT");
+            jdbcTemplate.query("""
+                SELECT url, etag, last_modified, content_hash, last_crawled, last_changed, fetch_count, change_count,
+                       first_crawled
+                FROM page_state
+            """, rs -> {
+                PageState state = new PageState(rs.getString(1));
+                state.setEtag(rs.getString(2));
+                state.setLastModified(rs.getString(3));
+                state.setContentHash(rs.getLong(4));
+                state.setLastCrawled(rs.getLong(5));
+                state.setLastChanged(rs.getLong(6));
+                state.setFetchCount(rs.getInt(7));
+                state.setChangeCount(rs.getInt(8));
+                // Для старых строк начало истории неизвестно - считаем его последним обходом
+                long firstCrawled = rs.getLong(9);
+                state.setFirstCrawled(rs.wasNull() ? state.getLastCrawled() : firstCrawled);
+                states.put(state.getUrl(), state);
+            });
+            System.out.println("Loaded " + states.size() + " page states from H2 database");
+        } catch (Exception e) {
+            System.err.println("Error loading page states: " + e.getMessage());
+        }
+        writeQueue = new WriteBehindQueue<>("page-state", writeQueueCapacity, writeBatchSize,
+                writeFlushIntervalMs, this::writeBatch);
+        writeQueue.bindTo(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeQueue.close();
+    }
+
+    public PageState get(String url) {
+        return states.get(url);
+    }
+
+    // Ответ 304: страница не менялась, обновляется только время обхода
+    public void recordNotModified(String url) {
+        notModifiedPages.incrementAndGet();
+        PageState state = states.computeIfPresent(url, (key, previous) -> {
+            PageState next = copyOf(previous);
+            next.setLastCrawled(System.currentTimeMillis());
+            next.setFetchCount(previous.getFetchCount() + 1);
+            return next;
+        });
+        if (state != null) {
+            enqueue(state);
+        }
+    }
+
+    // Тело получено: сохраняет валидаторы. Возвращает false, если текст совпал с прошлым обходом -
+    // тогда извлекать и сохранять контакты заново не нужно. Новый хэш текста запоминает recordContent,
+    // когда контакты страницы сохранены: при сбое следующая загрузка извлечёт их снова
+    public boolean recordFetch(String url, FetchResult result, long contentHash) {
+        long now = System.currentTimeMillis();
+        boolean[] changed = {true};
+        PageState state = states.compute(url, (key, previous) -> {
+            PageState next;
+            if (previous != null) {
+                next = copyOf(previous);
+            } else {
+                next = new PageState(url);
+                next.setFirstCrawled(now);
+                newPages.add(url);
+            }
+            // Валидатор длиннее колонки не записался бы, а обрезанный сервер не узнает - такой не храним
+            next.setEtag(fitOrNull(result.etag(), MAX_ETAG_LENGTH));
+            next.setLastModified(fitOrNull(result.lastModified(), MAX_LAST_MODIFIED_LENGTH));
+            next.setLastCrawled(now);
+            next.setFetchCount(next.getFetchCount() + 1);
+            if (previous != null && previous.getContentHash() == contentHash) {
+                changed[0] = false;
+            } else {
+                next.setLastChanged(now);
+                // Первая загрузка и повтор после несохранённых контактов изменением не считаются
+                if (previous != null && previous.getContentHash() != NO_CONTENT) {
+                    next.setChangeCount(previous.getChangeCount() + 1);
+                }
+            }
+            return next;
+        });
+
+        (changed[0] ? changedPages : unchangedPages).incrementAndGet();
+        enqueue(state);
+        return changed[0];
+    }
+
+    // Контакты страницы сохранены (или страница - дубликат и сохранять нечего)
+    public void recordContent(String url, long contentHash) {
+        updateContentHash(url, contentHash);
+    }
+
+    // Строка контактов не записалась в H2: текст страницы снова считается новым
+    public void forgetContent(String url) {
+        updateContentHash(url, NO_CONTENT);
+    }
+
+    private void updateContentHash(String url, long contentHash) {
+        PageState[] updated = new PageState[1];
+        states.computeIfPresent(url, (key, previous) -> {
+            if (previous.getContentHash() == contentHash) {
+                return previous;
+            }
+            updated[0] = copyOf(previous);
+            updated[0].setContentHash(contentHash);
+            return updated[0];
+        });
+        if (updated[0] != null) {
+            enqueue(updated[0]);
+        }
+    }
+
+    public void forEach(Consumer<PageState> action) {
+        states.values().forEach(action);
+    }
+
+    public void drainNewPages(Consumer<String> action) {
+        String url;
+        while ((url = newPages.poll()) != null) {
+            action.accept(url);
+        }
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    public int getPendingWrites() {
+        return writeQueue.size();
+    }
+
+    public long getNotModifiedPages() {
+        return notModifiedPages.get();
+    }
+
+    public long getUnchangedPages() {
+        return unchangedPages.get();
+    }
+
+    public long getChangedPages() {
+        return changedPages.get();
+    }
+
+    public void flush() {
+        writeQueue.flush();
+    }
+
+    // Вместе с контактами: иначе неизменённые страницы после очистки больше не сохранились бы
+    public void clear() {
+        writeQueue.flush();
+        states.clear();
+        newPages.clear();
+        try {
+            jdbcTemplate.update("DELETE FROM page_state");
+        } catch (Exception e) {
+            System.err.println("Error clearing page states: " + e.getMessage());
+        }
+    }
+
+    private void enqueue(PageState state) {
+        // Состояние такой страницы остаётся только в памяти: ключ не поместился бы в колонку url
+        if (state.getUrl().length() > MAX_URL_LENGTH) {
+            return;
+        }
+        try {
+            writeQueue.put(state);
+        } catch (Exception e) {
+            System.err.println("Error saving page state: " + e.getMessage());
+        }
+    }
+
+    private static String fitOrNull(String value, int maxLength) {
+        return value != null && value.length() <= maxLength ? value : null;
+    }
+
+    // Состояния в карте не изменяются на месте: очередь записи может держать ссылку на прежнее
+    private static PageState copyOf(PageState state) {
+        PageState copy = new PageState(state.getUrl());
+        copy.setEtag(state.getEtag());
+        copy.setLastModified(state.getLastModified());
+        copy.setContentHash(state.getContentHash());
+        copy.setFirstCrawled(state.getFirstCrawled());
+        copy.setLastCrawled(state.getLastCrawled());
+        copy.setLastChanged(state.getLastChanged());
+        copy.setFetchCount(state.getFetchCount());
+        copy.setChangeCount(state.getChangeCount());
+        return copy;
+    }
+
+    private void writeBatch(List<PageState> batch) {
+        jdbcTemplate.batchUpdate("""
+            MERGE INTO page_state (url, etag, last_modified, content_hash, last_crawled, last_changed,
+                                   fetch_count, change_count, first_crawled)
+            KEY(url)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)
+        """, batch, batch.size(), (ps, state) -> {
+            ps.setString(1, state.getUrl());
+            ps.setString(2, state.getEtag());
+            ps.setString(3, state.getLastModified());
+            ps.setLong(4, state.getContentHash());
+            ps.setLong(5, state.getLastCrawled());
+            ps.setLong(6, state.getLastChanged());
+            ps.setInt(7, state.getFetchCount());
+            ps.setInt(8, state.getChangeCount());
+            ps.setLong(9, state.getFirstCrawled());
+        });
+    }
+}
@@ -0,0 +1,186 @@
+package com.crawler.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Стадия конвейера: ограниченная очередь задач и фиксированное число обработчиков.
+// Когда очередь заполнена, execute блокирует предыдущую стадию, а не наращивает очередь.
+// Счётчики показывают, какая стадия стала узким местом.
+public class PipelineStage implements Executor, MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineStage.class);
+
+    private final String name;
+    private final BlockingQueue<Runnable> queue;
+    private final int capacity;
+    private final Thread[] workers;
+    private final AtomicInteger active;
+    private final AtomicLong processed;
+    private final AtomicLong blockedSubmits;
+    private final AtomicLong blockedNanos;
+    private volatile boolean shutdown;
+
+    public PipelineStage(String name, int parallelism, int capacity) {
+        if (parallelism <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("parallelism and capacity must be positive");
+        }
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.capacity = capacity;
+        this.active = new AtomicInteger();
+        this.processed = new AtomicLong();
+        this.blockedSubmits = new AtomicLong();
+        this.blockedNanos = new AtomicLong();
+
+        this.workers = new Thread[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Thread(this::runWorker, name + "-worker-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException(name + " stage is shut down");
+        }
+        if (queue.offer(task)) {
+            return;
+        }
+        blockedSubmits.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for space in " + name + " stage");
+        } finally {
+            blockedNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    // Новые задачи не принимаются, уже поставленные дорабатываются
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    public void shutdownNow() {
+        shutdown = true;
+        queue.clear();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+
+    // Ждёт завершения обработчиков; false - за отведённое время не все завершились
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Thread worker : workers) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+            }
+        }
+        return isTerminated();
+    }
+
+    public boolean isTerminated() {
+        for (Thread worker : workers) {
+            if (worker.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getParallelism() {
+        return workers.length;
+    }
+
+    public int getActive() {
+        return active.get();
+    }
+
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    // Сколько раз и как долго предыдущая стадия ждала места в очереди
+    public long getBlockedSubmits() {
+        return blockedSubmits.get();
+    }
+
+    public long getBlockedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(blockedNanos.get());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("crawler.pipeline.queue.depth", queue, BlockingQueue::size)
+                .tag("stage", name)
+                .register(registry);
+        Gauge.builder("crawler.pipeline.queue.capacity", () -> capacity)
+                .tag("stage", name)
+                .register(registry);
+        Gauge.builder("crawler.pipeline.active", active, AtomicInteger::get)
+                .tag("stage", name)
+                .register(registry);
+        FunctionCounter.builder("crawler.pipeline.processed", processed, AtomicLong::get)
+                .tag("stage", name)
+                .register(registry);
+        FunctionCounter.builder("crawler.pipeline.blocked.submits", blockedSubmits, AtomicLong::get)
+                .tag("stage", name)
+                .register(registry);
+        FunctionCounter.builder("crawler.pipeline.blocked.time", blockedNanos, nanos -> nanos.get() / 1e9)
+                .tag("stage", name)
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    private void runWorker() {
+        while (!shutdown || !queue.isEmpty()) {
+            Runnable task;
+            try {
+                task = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == null) {
+                continue;
+            }
+            active.incrementAndGet();
+            try {
+                task.run();
+            } catch (Exception e) {
+                logger.error("Error in {} stage: {}", name, e.getMessage());
+            } finally {
+                active.decrementAndGet();
+                processed.incrementAndGet();
+            }
+        }
+    }
+}
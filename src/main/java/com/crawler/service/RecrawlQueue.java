@@ -0,0 +1,100 @@
+package com.crawler.service;
+
+import com.crawler.model.PageState;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+// Очередь повторного обхода: URL упорядочены по времени, когда их пора загрузить снова.
+// Интервал берётся из оценки частоты изменений страницы по истории обходов:
+// часто меняющиеся страницы возвращаются в очередь раньше, стабильные - реже.
+public class RecrawlQueue {
+
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final long defaultIntervalMs;
+    private final PriorityQueue<Entry> queue;
+    // Актуальная запись URL; устаревшие записи в куче пропускаются при извлечении
+    private final Map<String, Entry> entries;
+
+    public RecrawlQueue(long minIntervalMs, long maxIntervalMs, long defaultIntervalMs) {
+        this.minIntervalMs = minIntervalMs;
+        this.maxIntervalMs = maxIntervalMs;
+        this.defaultIntervalMs = defaultIntervalMs;
+        this.queue = new PriorityQueue<>((a, b) -> Long.compare(a.dueAt, b.dueAt));
+        this.entries = new HashMap<>();
+    }
+
+    public synchronized void schedule(String url, long dueAt) {
+        Entry entry = new Entry(url, dueAt);
+        entries.put(url, entry);
+        queue.add(entry);
+    }
+
+    // Следующий обход - через интервал от последней загрузки
+    public void reschedule(String url, PageState state, long now) {
+        long lastCrawled = state != null && state.getLastCrawled() > 0 ? state.getLastCrawled() : now;
+        schedule(url, Math.max(now, lastCrawled + intervalFor(state)));
+    }
+
+    public synchronized boolean contains(String url) {
+        return entries.containsKey(url);
+    }
+
+    // До limit URL, срок которых наступил, в порядке срока
+    public synchronized List<String> pollDue(long now, int limit) {
+        List<String> due = new ArrayList<>();
+        while (due.size() < limit && !queue.isEmpty() && queue.peek().dueAt <= now) {
+            Entry entry = queue.poll();
+            if (entries.get(entry.url) == entry) {
+                entries.remove(entry.url);
+                due.add(entry.url);
+            }
+        }
+        return due;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long intervalFor(PageState state) {
+        if (state == null || state.getFetchCount() < 2 || state.getLastCrawled() <= state.getFirstCrawled()) {
+            return clamp(defaultIntervalMs);
+        }
+        int revisits = state.getFetchCount() - 1;
+        double meanInterval = (double) (state.getLastCrawled() - state.getFirstCrawled()) / revisits;
+
+        // Изменений не замечено: интервал растёт вместе с подтверждённой стабильностью
+        if (state.getChangeCount() == 0) {
+            return clamp((long) (meanInterval * (revisits + 1)));
+        }
+        double rate = changeRate(revisits, state.getChangeCount(), meanInterval);
+        return clamp((long) (1 / rate));
+    }
+
+    // Оценка интенсивности изменений (Cho, Garcia-Molina) по n повторным загрузкам с интервалом I,
+    // из которых в changes обнаружено изменение: -ln((n - X + 0.5) / (n + 0.5)) / I.
+    // Поправка 0.5 учитывает, что между двумя загрузками страница могла измениться несколько раз
+    static double changeRate(int revisits, int changes, double meanIntervalMs) {
+        int observed = Math.min(changes, revisits);
+        return -Math.log((revisits - observed + 0.5) / (revisits + 0.5)) / meanIntervalMs;
+    }
+
+    private long clamp(long interval) {
+        return Math.max(minIntervalMs, Math.min(maxIntervalMs, interval));
+    }
+
+    private static final class Entry {
+        private final String url;
+        private final long dueAt;
+
+        private Entry(String url, long dueAt) {
+            this.url = url;
+            this.dueAt = dueAt;
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package com.crawler.service;
 
+import com.crawler.model.PageState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -19,9 +23,36 @@ public class SchedulerService {
     @Autowired
     private H2StorageService storageService;
 
+    @Autowired
+    private PageStateService pageStateService;
+
+    @Autowired
+    private UrlCanonicalizer urlCanonicalizer;
+
+    @Value("${crawler.recrawl.max-depth:2}")
+    private int maxDepth;
+
+    @Value("${crawler.recrawl.max-pages:50}")
+    private int maxPages;
+
+    @Value("${crawler.recrawl.fetch-budget-per-hour:3000}")
+    private int fetchBudgetPerHour;
+
     private final Set<String> defaultStartUrls = ConcurrentHashMap.newKeySet();
+    // Канонические формы стартовых URL - ключи очереди повторного обхода
+    private final Set<String> startUrls = ConcurrentHashMap.newKeySet();
+    private final RecrawlQueue recrawlQueue;
+    private boolean initialized;
+    private double budget;
+    private long lastTick;
+
+    @Autowired
+    public SchedulerService(@Value("${crawler.recrawl.min-interval-ms:900000}") long minIntervalMs,
+                            @Value("${crawler.recrawl.max-interval-ms:604800000}") long maxIntervalMs,
+                            @Value("${crawler.recrawl.default-interval-ms:3600000}") long defaultIntervalMs) {
+        this.recrawlQueue = new RecrawlQueue(minIntervalMs, maxIntervalMs, defaultIntervalMs);
+        this.lastTick = System.currentTimeMillis();
 
-    public SchedulerService() {
         // Стартовые URLs для реальных сайтов
         // 2GIS
         defaultStartUrls.add("https://2gis.ru");
@@ -55,25 +86,92 @@ public class SchedulerService {
         defaultStartUrls.add("https://www.mvideo.ru");
     }
 
-    @Scheduled(fixedRate = 3600000) // Запуск каждый час
-    public void scheduledCrawling() {
-        logger.info("Scheduled crawling started at: {}", new java.util.Date());
+    @Autowired
+    public void initialize() {
+        defaultStartUrls.forEach(this::addCanonicalStartUrl);
+        // Первый тик сразу обходит стартовые URL, как прежний запуск по расписанию
+        budget = Math.max(budget, defaultStartUrls.size());
+    }
 
+    // Повторный обход по очереди сроков: каждый тик пополняет бюджет загрузок пропорционально
+    // прошедшему времени и отдаёт краулеру столько URL с наступившим сроком, сколько позволяет бюджет
+    @Scheduled(fixedDelayString = "${crawler.recrawl.tick-ms:60000}")
+    public void scheduledCrawling() {
         try {
-            crawlerService.startCrawling(defaultStartUrls, 2, 50);
-
-            logger.info("Scheduled crawling completed. Total records: {}",
-                    storageService.getDataCount());
-
+            long now = System.currentTimeMillis();
+            synchronized (this) {
+                if (!initialized) {
+                    pageStateService.forEach(state -> recrawlQueue.reschedule(state.getUrl(), state, now));
+                    initialized = true;
+                }
+                // Стартовые URL без истории обходятся сразу
+                startUrls.forEach(url -> {
+                    if (!recrawlQueue.contains(url) && pageStateService.get(url) == null) {
+                        recrawlQueue.schedule(url, now);
+                    }
+                });
+                pageStateService.drainNewPages(url -> {
+                    if (!recrawlQueue.contains(url)) {
+                        recrawlQueue.reschedule(url, pageStateService.get(url), now);
+                    }
+                });
+
+                // Запас не больше пяти минут бюджета, чтобы после простоя не было всплеска
+                double perMs = fetchBudgetPerHour / 3_600_000.0;
+                budget = Math.min(budget + (now - lastTick) * perMs, perMs * 300_000);
+                lastTick = now;
+            }
+
+            List<String> due = recrawlQueue.pollDue(now, (int) budget);
+            if (due.isEmpty()) {
+                return;
+            }
+            synchronized (this) {
+                budget -= due.size();
+            }
+
+            Set<String> seeds = new HashSet<>();
+            Set<String> pages = new HashSet<>();
+            for (String url : due) {
+                (startUrls.contains(url) ? seeds : pages).add(url);
+                // Срок до завершения обхода: состояние ещё прежнее, и reschedule вернул бы URL
+                // на следующий же тик. Неудачная загрузка так и останется со сроком через интервал
+                recrawlQueue.schedule(url, now + recrawlQueue.intervalFor(pageStateService.get(url)));
+            }
+
+            logger.info("Recrawl: {} start URLs, {} pages due, {} queued, budget left {}",
+                    seeds.size(), pages.size(), recrawlQueue.size(), (long) budget);
+            if (!seeds.isEmpty()) {
+                onCompletion(crawlerService.startCrawling(seeds, maxDepth, maxPages), seeds);
+            }
+            // Остальные страницы - без перехода по ссылкам: новые ссылки находятся со стартовых URL
+            if (!pages.isEmpty()) {
+                onCompletion(crawlerService.startCrawling(pages, 0, maxPages), pages);
+            }
         } catch (Exception e) {
             logger.error("Error in scheduled crawling: {}", e.getMessage());
         }
     }
 
+    // Загруженные в этом обходе URL получают срок по обновлённому состоянию страницы
+    private void onCompletion(CrawlJob job, Set<String> urls) {
+        job.getCompletion().thenAccept(finished -> {
+            urls.forEach(url -> {
+                PageState state = pageStateService.get(url);
+                if (state != null && state.getLastCrawled() >= finished.getStartedAt()) {
+                    recrawlQueue.reschedule(url, state, finished.getFinishedAt());
+                }
+            });
+            logger.info("Crawl job {} {}: {} pages in {} ms, data records: {}",
+                    finished.getId(), finished.getStatus(), finished.getPagesProcessed(),
+                    finished.getFinishedAt() - finished.getStartedAt(), storageService.getDataCount());
+        });
+    }
+
     @Scheduled(fixedRate = 300000) // Каждые 5 минут
     public void statusReport() {
         int dataCount = storageService.getDataCount();
-        int visitedUrls = crawlerService.getVisitedUrls().size();
+        long visitedUrls = crawlerService.getVisitedUrls();
         int activeTasks = crawlerService.getActiveTasks();
 
         logger.info("Status Report - Data records: {}, Visited URLs: {}, Active tasks: {}",
@@ -82,9 +180,21 @@ public class SchedulerService {
 
     public void addStartUrl(String url) {
         defaultStartUrls.add(url);
+        addCanonicalStartUrl(url);
         logger.info("Added URL to scheduler: {}", url);
     }
 
+    public int getRecrawlQueueSize() {
+        return recrawlQueue.size();
+    }
+
+    private void addCanonicalStartUrl(String url) {
+        String canonical = urlCanonicalizer.canonicalize(url);
+        if (canonical != null) {
+            startUrls.add(canonical);
+        }
+    }
+
     public Set<String> getStartUrls() {
         return Set.copyOf(defaultStartUrls);
     }
@@ -0,0 +1,229 @@
+package com.crawler.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Приведение URL к каноническому виду до проверки на повтор и постановки в очередь.
+// canonicalize() даёт адрес, который реально запрашивается: схема и хост в нижнем регистре,
+// без порта по умолчанию, фрагмента, служебных параметров, с нормализованным путём и
+// отсортированными параметрами. dedupKey() дополнительно отбрасывает то, что почти всегда
+// указывает на ту же страницу: схему, префикс www. и завершающий слэш.
+@Component
+public class UrlCanonicalizer {
+
+    private final Set<String> ignoredParams;
+    private final List<String> ignoredPrefixes;
+
+    public UrlCanonicalizer(@Value("${crawler.canonical.ignored-params:utm_*,gclid,fbclid,yclid,_openstat}")
+                            String ignoredParams) {
+        this.ignoredParams = new HashSet<>();
+        this.ignoredPrefixes = new ArrayList<>();
+        for (String param : ignoredParams.split(",")) {
+            String name = param.trim().toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                ignoredPrefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                this.ignoredParams.add(name);
+            }
+        }
+    }
+
+    // null - адрес не для обхода: не http(s), без хоста или не разбирается
+    public String canonicalize(String url) {
+        if (url == null) {
+            return null;
+        }
+        String trimmed = url.trim();
+
+        int schemeEnd = trimmed.indexOf("://");
+        if (schemeEnd <= 0) {
+            return null;
+        }
+        String scheme = trimmed.substring(0, schemeEnd).toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            return null;
+        }
+
+        int fragment = trimmed.indexOf('#', schemeEnd + 3);
+        if (fragment >= 0) {
+            trimmed = trimmed.substring(0, fragment);
+        }
+
+        int authorityStart = schemeEnd + 3;
+        int authorityEnd = authorityStart;
+        while (authorityEnd < trimmed.length() && "/?".indexOf(trimmed.charAt(authorityEnd)) < 0) {
+            authorityEnd++;
+        }
+        String authority = canonicalAuthority(scheme, trimmed.substring(authorityStart, authorityEnd));
+        if (authority == null) {
+            return null;
+        }
+
+        int queryStart = trimmed.indexOf('?', authorityEnd);
+        String path = queryStart >= 0 ? trimmed.substring(authorityEnd, queryStart) : trimmed.substring(authorityEnd);
+        String query = queryStart >= 0 ? canonicalQuery(trimmed.substring(queryStart + 1)) : "";
+
+        StringBuilder result = new StringBuilder(trimmed.length());
+        result.append(scheme).append("://").append(authority).append(canonicalPath(path));
+        if (!query.isEmpty()) {
+            result.append('?').append(query);
+        }
+        return result.toString();
+    }
+
+    // Ключ для хранилища просмотренных URL; принимает уже канонический адрес
+    public String dedupKey(String canonicalUrl) {
+        int authorityStart = canonicalUrl.indexOf("://") + 3;
+        int start = authorityStart;
+        int hostEnd = canonicalUrl.indexOf('/', authorityStart);
+        // www.ru - сам домен, а не префикс
+        if (canonicalUrl.startsWith("www.", authorityStart) && canonicalUrl.lastIndexOf('.', hostEnd) > authorityStart + 3) {
+            start = authorityStart + 4;
+        }
+
+        int queryStart = canonicalUrl.indexOf('?', start);
+        int pathEnd = queryStart >= 0 ? queryStart : canonicalUrl.length();
+        // Корневой слэш тоже отбрасывается: example.ru и example.ru/ - одна страница
+        if (canonicalUrl.charAt(pathEnd - 1) == '/') {
+            return canonicalUrl.substring(start, pathEnd - 1) + canonicalUrl.substring(pathEnd);
+        }
+        return canonicalUrl.substring(start);
+    }
+
+    private String canonicalAuthority(String scheme, String authority) {
+        // Учётные данные в адресе не нужны для обхода и не должны попадать в ключ
+        int userInfo = authority.lastIndexOf('@');
+        String hostPort = userInfo >= 0 ? authority.substring(userInfo + 1) : authority;
+
+        String host = hostPort;
+        String port = "";
+        int portSeparator = hostPort.lastIndexOf(':');
+        // IPv6-адрес в скобках сам содержит двоеточия
+        if (portSeparator >= 0 && portSeparator > hostPort.lastIndexOf(']')) {
+            host = hostPort.substring(0, portSeparator);
+            port = hostPort.substring(portSeparator + 1);
+            for (int i = 0; i < port.length(); i++) {
+                if (port.charAt(i) < '0' || port.charAt(i) > '9') {
+                    return null;
+                }
+            }
+            port = port.replaceFirst("^0+(?=\\d)", "");
+            if (scheme.equals("http") && port.equals("80") || scheme.equals("https") && port.equals("443")) {
+                port = "";
+            }
+        }
+
+        host = host.toLowerCase(Locale.ROOT);
+        if (host.endsWith(".")) {
+            host = host.substring(0, host.length() - 1);
+        }
+        if (host.isEmpty()) {
+            return null;
+        }
+        return port.isEmpty() ? host : host + ":" + port;
+    }
+
+    private static String canonicalPath(String path) {
+        // ;jsessionid=... в пути - идентификатор сессии, а не часть адреса страницы
+        int session = path.toLowerCase(Locale.ROOT).indexOf(";jsessionid=");
+        if (session >= 0) {
+            path = path.substring(0, session);
+        }
+        if (path.isEmpty()) {
+            return "/";
+        }
+
+        // Удаление сегментов "." и ".." (RFC 3986, 5.2.4)
+        String[] segments = normalizeEscapes(path).split("/", -1);
+        List<String> output = new ArrayList<>(segments.length);
+        for (int i = 1; i < segments.length; i++) {
+            String segment = segments[i];
+            boolean last = i == segments.length - 1;
+            if (segment.equals(".") || segment.equals("..")) {
+                if (segment.equals("..") && !output.isEmpty()) {
+                    output.remove(output.size() - 1);
+                }
+                if (last) {
+                    output.add("");
+                }
+                continue;
+            }
+            output.add(segment);
+        }
+
+        StringBuilder result = new StringBuilder(path.length());
+        for (String segment : output) {
+            result.append('/').append(segment);
+        }
+        return result.length() == 0 ? "/" : result.toString();
+    }
+
+    private String canonicalQuery(String query) {
+        List<String> params = new ArrayList<>();
+        for (String param : query.split("&")) {
+            if (param.isEmpty()) {
+                continue;
+            }
+            int equals = param.indexOf('=');
+            String name = (equals >= 0 ? param.substring(0, equals) : param).toLowerCase(Locale.ROOT);
+            if (!isIgnored(name)) {
+                params.add(normalizeEscapes(param));
+            }
+        }
+        // Порядок параметров не влияет на ответ сервера в подавляющем большинстве случаев
+        params.sort(null);
+        return String.join("&", params);
+    }
+
+    private boolean isIgnored(String name) {
+        if (ignoredParams.contains(name)) {
+            return true;
+        }
+        for (String prefix : ignoredPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // %7e и %7E - одно и то же, а незарезервированные символы в экранировании не нуждаются
+    private static String normalizeEscapes(String value) {
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' && i + 2 < value.length() && isHex(value.charAt(i + 1)) && isHex(value.charAt(i + 2))) {
+                char decoded = (char) Integer.parseInt(value.substring(i + 1, i + 3), 16);
+                if (isUnreserved(decoded)) {
+                    result.append(decoded);
+                } else {
+                    result.append('%')
+                            .append(Character.toUpperCase(value.charAt(i + 1)))
+                            .append(Character.toUpperCase(value.charAt(i + 2)));
+                }
+                i += 2;
+                continue;
+            }
+            result.append(c);
+        }
+        return result.toString();
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+}
@@ -0,0 +1,220 @@
+package com.crawler.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+// Очередь URL с вежливостью по хостам: у каждого хоста своя очередь, а хосты лежат в куче,
+// упорядоченной по времени, когда к хосту снова можно обратиться.
+@Component
+public class UrlFrontier {
+
+    private final long crawlDelayNanos;
+    private final int capacity;
+    private final ReentrantLock lock;
+    private final Condition changed;
+    private final Map<String, HostQueue> hosts;
+    private final PriorityQueue<HostQueue> readyHeap;
+    // Хосты с опустевшей очередью в порядке опустошения. Пока не истекла задержка, хост хранит время
+    // следующего обращения; после этого запись о нём не нужна и удаляется из hosts
+    private final ArrayDeque<HostQueue> idleHosts;
+    private int size;
+
+    public UrlFrontier(long crawlDelayMs) {
+        this(crawlDelayMs, Integer.MAX_VALUE);
+    }
+
+    @Autowired
+    public UrlFrontier(@Value("${crawler.frontier.crawl-delay-ms:1000}") long crawlDelayMs,
+                       @Value("${crawler.frontier.capacity:100000}") int capacity) {
+        this.crawlDelayNanos = TimeUnit.MILLISECONDS.toNanos(crawlDelayMs);
+        this.capacity = capacity;
+        this.lock = new ReentrantLock();
+        this.changed = lock.newCondition();
+        this.hosts = new HashMap<>();
+        this.readyHeap = new PriorityQueue<>(Comparator.comparingLong(host -> host.nextFetchAt));
+        this.idleHosts = new ArrayDeque<>();
+    }
+
+    public void offer(CrawlRequest request) {
+        String host = hostOf(request.url());
+
+        lock.lock();
+        try {
+            evictIdleHosts();
+            HostQueue queue = hosts.computeIfAbsent(host, key -> new HostQueue(key, System.nanoTime()));
+            queue.requests.add(request);
+            size++;
+
+            // Хост без очереди не лежит в куче - возвращаем его с сохранённым временем доступа
+            if (queue.requests.size() == 1) {
+                readyHeap.add(queue);
+                if (readyHeap.peek() == queue) {
+                    changed.signalAll();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Блокируется, пока не появится хост, к которому уже можно обратиться
+    public CrawlRequest take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                HostQueue queue = readyHeap.peek();
+                if (queue == null) {
+                    changed.await();
+                    continue;
+                }
+
+                long waitNanos = queue.nextFetchAt - System.nanoTime();
+                if (waitNanos > 0) {
+                    changed.awaitNanos(waitNanos);
+                    continue;
+                }
+
+                readyHeap.poll();
+                CrawlRequest request = queue.requests.poll();
+                size--;
+                queue.nextFetchAt = System.nanoTime() + crawlDelayNanos;
+                if (!queue.requests.isEmpty()) {
+                    readyHeap.add(queue);
+                } else {
+                    idleHosts.add(queue);
+                }
+                evictIdleHosts();
+                return request;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ёмкость не ограничивает offer: стартовые URL и восстановленные запросы принимаются всегда,
+    // а новые ссылки краулер откладывает в H2, пока очередь заполнена
+    public boolean isFull() {
+        return size() >= capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getReadyHosts() {
+        lock.lock();
+        try {
+            return readyHeap.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Убирает запросы, например отменённого обхода. Хосты с опустевшей очередью уходят из кучи
+    public List<CrawlRequest> removeIf(Predicate<CrawlRequest> filter) {
+        List<CrawlRequest> removed = new ArrayList<>();
+        lock.lock();
+        try {
+            for (HostQueue queue : hosts.values()) {
+                boolean hadRequests = !queue.requests.isEmpty();
+                queue.requests.removeIf(request -> {
+                    if (filter.test(request)) {
+                        removed.add(request);
+                        return true;
+                    }
+                    return false;
+                });
+                if (hadRequests && queue.requests.isEmpty()) {
+                    readyHeap.remove(queue);
+                    idleHosts.add(queue);
+                }
+            }
+            size -= removed.size();
+        } finally {
+            lock.unlock();
+        }
+        return removed;
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            hosts.clear();
+            readyHeap.clear();
+            idleHosts.clear();
+            size = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getTrackedHosts() {
+        lock.lock();
+        try {
+            evictIdleHosts();
+            return hosts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Вызывается под lock. Хост, снова получивший запросы, остаётся; если он опустеет ещё раз,
+    // то попадёт в очередь заново с новым временем
+    private void evictIdleHosts() {
+        long now = System.nanoTime();
+        while (!idleHosts.isEmpty()) {
+            HostQueue queue = idleHosts.peek();
+            boolean idle = queue.requests.isEmpty();
+            if (idle && queue.nextFetchAt - now > 0) {
+                return;
+            }
+            idleHosts.poll();
+            if (idle && hosts.get(queue.host) == queue) {
+                hosts.remove(queue.host);
+            }
+        }
+    }
+
+    private String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host.toLowerCase() : url;
+        } catch (IllegalArgumentException e) {
+            return url;
+        }
+    }
+
+    private static final class HostQueue {
+        private final String host;
+        private final ArrayDeque<CrawlRequest> requests = new ArrayDeque<>();
+        private long nextFetchAt;
+
+        private HostQueue(String host, long nextFetchAt) {
+            this.host = host;
+            this.nextFetchAt = nextFetchAt;
+        }
+    }
+}
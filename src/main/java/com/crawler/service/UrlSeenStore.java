@@ -0,0 +1,46 @@
+package com.crawler.service;
+
+// Множество уже встреченных URL. Реализации хранят 64-битные отпечатки вместо строк
+// и допускают одновременный add из рабочих потоков краулера.
+public interface UrlSeenStore {
+
+    // true, если URL раньше не встречался и теперь добавлен
+    boolean add(String url);
+
+    // Добавление готового отпечатка - для загрузки сохранённого множества
+    boolean addFingerprint(long fingerprint);
+
+    boolean contains(String url);
+
+    long size();
+
+    void clear();
+
+    // Оценка занимаемой памяти в байтах
+    long memoryBytes();
+
+    // Создаёт множество для одного обхода: expectedUrls - его бюджет страниц
+    @FunctionalInterface
+    interface Factory {
+        UrlSeenStore create(long expectedUrls);
+    }
+
+    // FNV-1a по символам с финальным перемешиванием из MurmurHash3
+    static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,192 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+// Кэш контактов по url с версиями. Каждая запись получает номер из общего счётчика и ссылку
+// на предыдущую версию того же url. Снимок запоминает номер на момент начала и берёт по каждому
+// url последнюю версию не новее него, поэтому читатель получает неизменяемое состояние
+// на один момент времени без блокировок, а писатели не ждут читателей.
+// Старые версии хранятся, только пока их может запросить ещё не завершённый снимок.
+public class VersionedContactStore implements ContactCache {
+
+    private record ReadTicket(long version, long id) {
+    }
+
+    private static final Comparator<ReadTicket> TICKET_ORDER = Comparator
+            .comparingLong(ReadTicket::version)
+            .thenComparingLong(ReadTicket::id);
+
+    private static final class Version {
+        private final ContactInfo contact;
+        private final long stamp;
+        // Обнуляется, когда более старые версии не нужны ни одному снимку
+        private volatile Version previous;
+
+        private Version(ContactInfo contact, long stamp) {
+            this.contact = contact;
+            this.stamp = stamp;
+        }
+    }
+
+    private volatile ConcurrentHashMap<String, Version> entries;
+    // Выданные номера версий и завершённые записи: равенство значит, что незавершённых записей нет
+    private final AtomicLong clock;
+    private final AtomicLong completed;
+    private final AtomicLong ticketIds;
+    private final NavigableSet<ReadTicket> readers;
+    private volatile Snapshot lastSnapshot;
+
+    public VersionedContactStore() {
+        this.entries = new ConcurrentHashMap<>();
+        this.clock = new AtomicLong();
+        this.completed = new AtomicLong();
+        this.ticketIds = new AtomicLong();
+        this.readers = new ConcurrentSkipListSet<>(TICKET_ORDER);
+    }
+
+    @Override
+    public ContactInfo get(String url) {
+        Version head = entries.get(url);
+        return head != null ? head.contact : null;
+    }
+
+    // onChange вызывается под блокировкой ключа в ConcurrentHashMap: записи одного url
+    // доходят до индексов в том же порядке, что и до кэша
+    @Override
+    public ContactInfo put(ContactInfo contact, BiConsumer<ContactInfo, ContactInfo> onChange) {
+        ContactInfo[] previous = new ContactInfo[1];
+        try {
+            entries.compute(contact.getUrl(), (url, head) -> {
+                Version next = new Version(contact, clock.incrementAndGet());
+                long oldestReader = oldestReader();
+                if (head != null) {
+                    previous[0] = head.contact;
+                    // Снимки, начатые после этой записи, увидят её саму, а не прежние версии
+                    if (next.stamp > oldestReader) {
+                        next.previous = head;
+                        prune(head, oldestReader);
+                    }
+                }
+                onChange.accept(previous[0], contact);
+                return next;
+            });
+        } finally {
+            completed.incrementAndGet();
+        }
+        return previous[0];
+    }
+
+    @Override
+    public boolean putIfAbsent(ContactInfo contact, BiConsumer<ContactInfo, ContactInfo> onChange) {
+        boolean[] added = new boolean[1];
+        try {
+            entries.compute(contact.getUrl(), (url, head) -> {
+                // Номер выдаётся и без добавления: иначе счётчики выданных и завершённых записей разошлись бы
+                long stamp = clock.incrementAndGet();
+                if (head != null) {
+                    return head;
+                }
+                onChange.accept(null, contact);
+                added[0] = true;
+                return new Version(contact, stamp);
+            });
+        } finally {
+            completed.incrementAndGet();
+        }
+        return added[0];
+    }
+
+    // Начальная загрузка одним номером версии
+    @Override
+    public void putAll(Collection<ContactInfo> contacts) {
+        long stamp = clock.incrementAndGet();
+        try {
+            contacts.forEach(contact -> entries.put(contact.getUrl(), new Version(contact, stamp)));
+        } finally {
+            completed.incrementAndGet();
+        }
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        Snapshot cached = lastSnapshot;
+        if (cached != null && cached.version() == clock.get()) {
+            return cached;
+        }
+
+        // Билет регистрируется до чтения номера снимка: запись с большим номером уже видит
+        // читателя и сохраняет нужную ему версию
+        ReadTicket ticket = new ReadTicket(clock.get(), ticketIds.incrementAndGet());
+        readers.add(ticket);
+        try {
+            long version = clock.get();
+            boolean settled = completed.get() == version;
+            ConcurrentHashMap<String, Version> current = entries;
+
+            List<ContactInfo> contacts = new ArrayList<>(current.size());
+            for (Version head : current.values()) {
+                Version visible = head;
+                while (visible != null && visible.stamp > version) {
+                    visible = visible.previous;
+                }
+                if (visible != null) {
+                    contacts.add(visible.contact);
+                }
+            }
+
+            Snapshot snapshot = new Snapshot(version, List.copyOf(contacts));
+            // Снимок, начатый при незавершённых записях, может не совпасть с последующим состоянием
+            if (settled) {
+                lastSnapshot = snapshot;
+            }
+            return snapshot;
+        } finally {
+            readers.remove(ticket);
+        }
+    }
+
+    @Override
+    public int size() {
+        return entries.size();
+    }
+
+    public long version() {
+        return clock.get();
+    }
+
+    // Снимки, начатые до очистки, дочитывают прежнюю карту. Одновременные записи вызывающий
+    // должен исключить сам: запись в прежнюю карту после замены потерялась бы
+    @Override
+    public void clear() {
+        clock.incrementAndGet();
+        entries = new ConcurrentHashMap<>();
+        lastSnapshot = null;
+        completed.incrementAndGet();
+    }
+
+    private long oldestReader() {
+        Iterator<ReadTicket> iterator = readers.iterator();
+        return iterator.hasNext() ? iterator.next().version() : Long.MAX_VALUE;
+    }
+
+    // Самому старому снимку нужна первая версия не новее его номера, всё, что за ней, - никому
+    private static void prune(Version head, long oldestReader) {
+        for (Version version = head; version != null; version = version.previous) {
+            if (version.stamp <= oldestReader) {
+                version.previous = null;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.crawler.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Ограниченная очередь отложенной записи: отдельный поток собирает элементы в пачки
+// по batchSize штук или за окно flushIntervalMs и передаёт их writer одним вызовом.
+// Когда очередь заполнена, put блокирует производителя. Если пачка не записалась, элементы
+// записываются по одному: теряется только тот, который не удаётся записать и отдельно.
+public class WriteBehindQueue<T> implements MeterBinder {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindQueue.class);
+
+    private final String name;
+    private final BlockingQueue<Object> queue;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Consumer<List<T>> writer;
+    // Элемент не записан даже по одному - вызывающий может откатить то, что от записи зависело
+    private final Consumer<T> onDropped;
+    private final Thread writerThread;
+    private final AtomicLong writtenItems;
+    private final AtomicLong writtenBatches;
+    private final AtomicLong failedItems;
+    private volatile boolean closed;
+    // Задаются в bindTo; до привязки к реестру пачки не измеряются
+    private volatile Timer batchTimer;
+    private volatile DistributionSummary batchSizes;
+
+    public WriteBehindQueue(String name, int capacity, int batchSize, long flushIntervalMs, Consumer<List<T>> writer) {
+        this(name, capacity, batchSize, flushIntervalMs, writer, item -> { });
+    }
+
+    public WriteBehindQueue(String name, int capacity, int batchSize, long flushIntervalMs, Consumer<List<T>> writer,
+                            Consumer<T> onDropped) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        this.writer = writer;
+        this.onDropped = onDropped;
+        this.writtenItems = new AtomicLong();
+        this.writtenBatches = new AtomicLong();
+        this.failedItems = new AtomicLong();
+
+        this.writerThread = new Thread(this::runWriter, name + "-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    public void put(T item) {
+        if (closed) {
+            throw new IllegalStateException(name + " queue is closed");
+        }
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for space in " + name + " queue");
+        }
+    }
+
+    // Ждёт, пока будет записано всё, что было поставлено в очередь до вызова
+    public void flush() {
+        awaitBarrier(new Barrier(false));
+    }
+
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        awaitBarrier(new Barrier(true));
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public long getWrittenItems() {
+        return writtenItems.get();
+    }
+
+    public long getWrittenBatches() {
+        return writtenBatches.get();
+    }
+
+    public long getFailedItems() {
+        return failedItems.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("crawler.write_behind.queue.size", queue, BlockingQueue::size)
+                .tag("queue", name)
+                .description("Items waiting to be written")
+                .register(registry);
+        FunctionCounter.builder("crawler.write_behind.items", writtenItems, AtomicLong::get)
+                .tag("queue", name)
+                .register(registry);
+        FunctionCounter.builder("crawler.write_behind.failed", failedItems, AtomicLong::get)
+                .tag("queue", name)
+                .description("Items dropped because they could not be written even one by one")
+                .register(registry);
+        batchTimer = Timer.builder("crawler.write_behind.batch.duration")
+                .tag("queue", name)
+                .description("Time to write one batch to H2")
+                .publishPercentileHistogram()
+                .register(registry);
+        batchSizes = DistributionSummary.builder("crawler.write_behind.batch.size")
+                .tag("queue", name)
+                .baseUnit("items")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private void awaitBarrier(Barrier barrier) {
+        if (!writerThread.isAlive()) {
+            return;
+        }
+        try {
+            queue.put(barrier);
+            barrier.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runWriter() {
+        List<T> batch = new ArrayList<>(batchSize);
+
+        while (true) {
+            Barrier barrier = null;
+            try {
+                Object item = queue.take();
+                long deadline = System.nanoTime() + flushIntervalNanos;
+
+                while (item != null) {
+                    if (item instanceof Barrier) {
+                        barrier = (Barrier) item;
+                        break;
+                    }
+                    batch.add((T) item);
+                    if (batch.size() >= batchSize) {
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    item = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                }
+            } catch (InterruptedException e) {
+                writeBatch(batch);
+                return;
+            }
+
+            writeBatch(batch);
+
+            if (barrier != null) {
+                barrier.done.countDown();
+                if (barrier.stop) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void writeBatch(List<T> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            writer.accept(batch);
+            Timer timer = batchTimer;
+            if (timer != null) {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batchSizes.record(batch.size());
+            }
+            writtenItems.addAndGet(batch.size());
+            writtenBatches.incrementAndGet();
+        } catch (Exception e) {
+            logger.error("Error writing batch of {} items in {} queue: {}", batch.size(), name, e.getMessage());
+            if (batch.size() > 1) {
+                writeOneByOne(batch);
+            } else {
+                dropped(batch.get(0), e);
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+
+    // Порядок элементов сохраняется, поэтому события, зависящие друг от друга, применяются как в пачке
+    private void writeOneByOne(List<T> batch) {
+        for (T item : batch) {
+            try {
+                writer.accept(List.of(item));
+                writtenItems.incrementAndGet();
+            } catch (Exception e) {
+                dropped(item, e);
+            }
+        }
+        writtenBatches.incrementAndGet();
+    }
+
+    private void dropped(T item, Exception e) {
+        failedItems.incrementAndGet();
+        logger.error("Dropped item in {} queue: {} - {}", name, item, e.getMessage());
+        try {
+            onDropped.accept(item);
+        } catch (Exception callbackError) {
+            logger.error("Error handling dropped item in {} queue: {}", name, callbackError.getMessage());
+        }
+    }
+
+    private static final class Barrier {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final boolean stop;
+
+        private Barrier(boolean stop) {
+            this.stop = stop;
+        }
+    }
+}
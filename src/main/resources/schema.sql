@@ -1,11 +1,35 @@
 CREATE TABLE IF NOT EXISTS contact_info (
     url VARCHAR(1000) PRIMARY KEY,
     title VARCHAR(500),
-    timestamp BIGINT,
-    phones CLOB,
-    emails CLOB,
-    addresses CLOB
+    timestamp BIGINT
 );
 
 CREATE INDEX IF NOT EXISTS idx_timestamp ON contact_info(timestamp);
-CREATE INDEX IF NOT EXISTS idx_title ON contact_info(title);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_title ON contact_info(title);
+
+CREATE TABLE IF NOT EXISTS contact_phone (
+    url VARCHAR(1000) NOT NULL,
+    phone VARCHAR(64) NOT NULL,
+    PRIMARY KEY (url, phone),
+    FOREIGN KEY (url) REFERENCES contact_info(url) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_contact_phone_phone ON contact_phone(phone);
+
+CREATE TABLE IF NOT EXISTS contact_email (
+    url VARCHAR(1000) NOT NULL,
+    email VARCHAR(500) NOT NULL,
+    PRIMARY KEY (url, email),
+    FOREIGN KEY (url) REFERENCES contact_info(url) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_contact_email_email ON contact_email(email);
+
+CREATE TABLE IF NOT EXISTS contact_address (
+    url VARCHAR(1000) NOT NULL,
+    address VARCHAR(2000) NOT NULL,
+    PRIMARY KEY (url, address),
+    FOREIGN KEY (url) REFERENCES contact_info(url) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_contact_address_address ON contact_address(address);
\ No newline at end of file
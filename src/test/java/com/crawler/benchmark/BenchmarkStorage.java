@@ -0,0 +1,48 @@
+package com.crawler.benchmark;
+
+import com.crawler.model.ContactInfo;
+import com.crawler.service.H2StorageService;
+import com.crawler.service.WriteBehindQueue;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// H2StorageService вне Spring для бенчмарков: отдельная in-memory H2 на каждый экземпляр
+final class BenchmarkStorage {
+
+    private BenchmarkStorage() {
+    }
+
+    static H2StorageService create(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "password");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        H2StorageService storageService = new H2StorageService();
+        ReflectionTestUtils.setField(storageService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(storageService, "transactionTemplate",
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(storageService, "writeQueueCapacity", 10000);
+        ReflectionTestUtils.setField(storageService, "writeBatchSize", 500);
+        ReflectionTestUtils.setField(storageService, "writeFlushIntervalMs", 200L);
+        storageService.initialize();
+        return storageService;
+    }
+
+    // Для бенчмарков чтения: миллионы строк в H2 не нужны, кэш и индексы заполняются как обычно,
+    // а пачки записи отбрасываются
+    static H2StorageService createWithoutWrites(String name) {
+        H2StorageService storageService = create(name);
+        WriteBehindQueue<?> queue = (WriteBehindQueue<?>) ReflectionTestUtils.getField(storageService, "writeQueue");
+        queue.close();
+        Consumer<List<ContactInfo>> discard = batch -> { };
+        ReflectionTestUtils.setField(storageService, "writeQueue",
+                new WriteBehindQueue<>("discard", 10000, 500, 200, discard));
+        return storageService;
+    }
+}
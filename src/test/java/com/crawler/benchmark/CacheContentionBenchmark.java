@@ -0,0 +1,122 @@
+package com.crawler.benchmark;
+
+import com.crawler.model.ContactInfo;
+import com.crawler.service.VersionedContactStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Кэш контактов под смешанной нагрузкой: два потока снимают полный список, как getAllContacts,
+// шесть потоков сохраняют контакты. Группа locked - прежняя схема с ReentrantReadWriteLock
+// вокруг ConcurrentHashMap, versioned - VersionedContactStore. Интересна скорость записи:
+// под общей блокировкой писатели ждут, пока читатель копирует весь кэш.
+// Запуск: mvn -Pbenchmark verify -Djmh.include=CacheContentionBenchmark
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CacheContentionBenchmark {
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private ReadWriteLock lock;
+    private Map<String, ContactInfo> lockedCache;
+    private VersionedContactStore versionedStore;
+    private ContactInfo[] updates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lock = new ReentrantReadWriteLock();
+        lockedCache = new ConcurrentHashMap<>();
+        versionedStore = new VersionedContactStore();
+        SyntheticCorpus.forEachContact(1, rows, contact -> {
+            lockedCache.put(contact.getUrl(), contact);
+            versionedStore.put(contact);
+        });
+
+        // Обновления уже загруженных url с другим seed, заготовленные заранее
+        updates = new ContactInfo[Math.min(rows, 10_000)];
+        for (int i = 0; i < updates.length; i++) {
+            ContactInfo contact = SyntheticCorpus.contact(2, i);
+            ContactInfo update = new ContactInfo(SyntheticCorpus.contact(1, i).getUrl());
+            update.setTitle(contact.getTitle());
+            update.setTimestamp(contact.getTimestamp());
+            contact.getPhones().forEach(update::addPhone);
+            updates[i] = update;
+        }
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(2)
+    public List<ContactInfo> lockedRead() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(lockedCache.values());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(6)
+    public ContactInfo lockedWrite() {
+        ContactInfo contact = nextUpdate();
+        lock.writeLock().lock();
+        try {
+            return lockedCache.put(contact.getUrl(), contact);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Benchmark
+    @Group("versioned")
+    @GroupThreads(2)
+    public List<ContactInfo> versionedRead() {
+        return versionedStore.snapshot().contacts();
+    }
+
+    @Benchmark
+    @Group("versioned")
+    @GroupThreads(6)
+    public ContactInfo versionedWrite() {
+        return versionedStore.put(nextUpdate());
+    }
+
+    private ContactInfo nextUpdate() {
+        return updates[ThreadLocalRandom.current().nextInt(updates.length)];
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(CacheContentionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,113 @@
+package com.crawler.benchmark;
+
+import com.crawler.model.ContactInfo;
+import com.crawler.service.H2StorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Поиск и сортировка по хранилищу с rows контактами от 10 тысяч до 10 миллионов.
+// Строки в H2 не пишутся: запросы обслуживаются кэшем и индексами в памяти.
+// Точка отсчёта для поиска - прежний параллельный полный просмотр копии кэша.
+// 10 миллионов строк требуют около 16 ГБ кучи; на машине меньше - -p rows=10000,100000,1000000.
+// Запуск: mvn -Pbenchmark verify -Djmh.include=ContactQueryBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx16g")
+public class ContactQueryBenchmark {
+
+    private static final int PAGE_SIZE = 100;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    private int rows;
+
+    private H2StorageService storageService;
+    private String phoneTerm;
+    private String emailTerm;
+    private List<ContactInfo> contacts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storageService = BenchmarkStorage.createWithoutWrites("query");
+        SyntheticCorpus.forEachContact(1, rows, storageService::saveContactInfo);
+
+        // Искомые значения берутся из набора, чтобы результат не был пустым
+        ContactInfo sample = SyntheticCorpus.contact(1, rows / 2);
+        phoneTerm = sample.getPhones().iterator().next().substring(2, 9);
+        emailTerm = "@site-" + (rows / 2 % 5000) + ".ru";
+        storageService.awaitCacheWarm(1, TimeUnit.MINUTES);
+        contacts = storageService.getAllContacts();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storageService.shutdown();
+    }
+
+    @Benchmark
+    public List<ContactInfo> filterByPhone() {
+        return storageService.filterContacts(phoneTerm);
+    }
+
+    @Benchmark
+    public List<ContactInfo> filterByEmailDomain() {
+        return storageService.filterContacts(emailTerm);
+    }
+
+    @Benchmark
+    public List<ContactInfo> filterByPhoneFullScan() {
+        // Прежняя реализация H2StorageService.filterContacts: копия кэша и полный просмотр
+        List<ContactInfo> copy = new ArrayList<>(contacts);
+        String lowerTerm = phoneTerm.toLowerCase();
+        return copy.parallelStream()
+                .filter(contact ->
+                        contact.getUrl().toLowerCase().contains(lowerTerm) ||
+                                (contact.getTitle() != null && contact.getTitle().toLowerCase().contains(lowerTerm)) ||
+                                contact.getPhones().stream().anyMatch(phone -> phone.contains(lowerTerm)) ||
+                                contact.getEmails().stream().anyMatch(email -> email.contains(lowerTerm)) ||
+                                contact.getAddresses().stream().anyMatch(address -> address.toLowerCase().contains(lowerTerm))
+                )
+                .toList();
+    }
+
+    // Короче трёх символов - полный просмотр кэша без индекса
+    @Benchmark
+    public List<ContactInfo> filterShortTerm() {
+        return storageService.filterContacts("ин");
+    }
+
+    @Benchmark
+    public List<ContactInfo> sortedByTitleFirstPage() {
+        return storageService.getContactsSortedBy("title", true, 0, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<ContactInfo> sortedByTimestampMiddlePage() {
+        return storageService.getContactsSortedBy("timestamp", false, rows / 2, PAGE_SIZE);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ContactQueryBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
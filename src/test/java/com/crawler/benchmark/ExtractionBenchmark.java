@@ -0,0 +1,102 @@
+package com.crawler.benchmark;
+
+import com.crawler.model.ContactInfo;
+import com.crawler.service.ContactExtractorService;
+import com.crawler.service.RegexContactExtractor;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Извлечение контактов из страниц синтетического корпуса разного размера и плотности контактов:
+// однопроходный сканер против прежних четырёх регулярных выражений и полная обработка страницы,
+// где один Jsoup-документ даёт и ссылки, и контакты.
+// Запуск: mvn -Pbenchmark verify -Djmh.include=ExtractionBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ExtractionBenchmark {
+
+    // Страниц в наборе: извлечение идёт по кругу, чтобы JIT не подстроился под одну страницу
+    private static final int PAGES = 16;
+
+    @Param({"10000", "100000", "1000000"})
+    private int pageSize;
+
+    @Param({"SPARSE", "TYPICAL", "DENSE"})
+    private SyntheticCorpus.Density density;
+
+    private String[] pages;
+    private ContactExtractorService extractorService;
+    private RegexContactExtractor regexExtractor;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(pageSize * 31L + density.ordinal());
+        pages = new String[PAGES];
+        for (int i = 0; i < PAGES; i++) {
+            pages[i] = SyntheticCorpus.page(random, pageSize, density);
+        }
+        extractorService = new ContactExtractorService();
+        regexExtractor = new RegexContactExtractor();
+    }
+
+    @Benchmark
+    public ContactInfo extractContactInfo() {
+        next = (next + 1) % PAGES;
+        return extractorService.extractContactInfo("https://example.ru/page/" + next, pages[next]);
+    }
+
+    // Прежнее извлечение регулярными выражениями по сырой разметке - точка отсчёта
+    @Benchmark
+    public ContactInfo regexBaseline() {
+        next = (next + 1) % PAGES;
+        return regexExtractor.extractContactInfo("https://example.ru/page/" + next, pages[next]);
+    }
+
+    // Как в CrawlerService.processPage: разбор один раз, из документа - ссылки и контакты
+    @Benchmark
+    public void processPage(Blackhole blackhole) {
+        next = (next + 1) % PAGES;
+        String url = "https://example.ru/page/" + next;
+        Document document = Jsoup.parse(pages[next], url);
+        blackhole.consume(extractorService.extractFromDocument(url, document));
+        blackhole.consume(links(document));
+    }
+
+    private static Set<String> links(Document document) {
+        Set<String> links = new HashSet<>();
+        for (Element link : document.select("a[href]")) {
+            links.add(link.attr("abs:href"));
+        }
+        return links;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ExtractionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,132 @@
+package com.crawler.benchmark;
+
+import com.crawler.service.FetchEngine;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Сравнение FetchEngine с прежним пулом из 10 потоков и RestTemplate на локальном stub-сервере,
+// который отвечает с искусственной задержкой, имитируя медленные сайты.
+// Запуск: java -cp <test-classpath> com.crawler.benchmark.FetchEngineBenchmark [requests] [latencyMs]
+public class FetchEngineBenchmark {
+
+    private static final byte[] PAGE = ("<html><head><title>Stub</title></head><body>"
+            + "<p>Телефон: +7 (999) 123-45-67</p>".repeat(50)
+            + "</body></html>").getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 100;
+
+        ScheduledExecutorService delayer = Executors.newSingleThreadScheduledExecutor();
+        ExecutorService serverExecutor = Executors.newFixedThreadPool(4);
+        HttpServer server = startStubServer(serverExecutor, delayer, latencyMs);
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/page/";
+
+        try {
+            List<String> urls = new ArrayList<>(requests);
+            for (int i = 0; i < requests; i++) {
+                urls.add(baseUrl + i);
+            }
+
+            System.out.printf("Stub latency: %d ms, requests: %d%n", latencyMs, requests);
+            runFixedPool(urls);
+            runFetchEngine(urls);
+        } finally {
+            server.stop(0);
+            serverExecutor.shutdownNow();
+            delayer.shutdownNow();
+        }
+    }
+
+    private static HttpServer startStubServer(ExecutorService executor, ScheduledExecutorService delayer,
+                                              long latencyMs) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        server.createContext("/", exchange ->
+                delayer.schedule(() -> respond(exchange), latencyMs, TimeUnit.MILLISECONDS));
+        server.setExecutor(executor);
+        server.start();
+        return server;
+    }
+
+    private static void respond(HttpExchange exchange) {
+        try (exchange) {
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(200, PAGE.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(PAGE);
+            }
+        } catch (IOException e) {
+            // Клиент мог закрыть соединение по таймауту
+        }
+    }
+
+    private static void runFixedPool(List<String> urls) throws InterruptedException {
+        RestTemplate restTemplate = new RestTemplate();
+        ExecutorService pool = Executors.newFixedThreadPool(10);
+        CountDownLatch done = new CountDownLatch(urls.size());
+        AtomicInteger ok = new AtomicInteger();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        for (String url : urls) {
+            pool.submit(() -> {
+                try {
+                    if (restTemplate.getForObject(url, String.class) != null) {
+                        ok.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    // Ошибку учитываем как неуспешный запрос
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        report("fixed pool (10 threads) + RestTemplate", urls.size(), ok.get(), start, threads.getPeakThreadCount());
+        pool.shutdownNow();
+    }
+
+    private static void runFetchEngine(List<String> urls) {
+        ExecutorService ioExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        FetchEngine engine = new FetchEngine(ioExecutor, 2000, 2000, 5000, 30000, 30000, 2_097_152, "text/html");
+        AtomicInteger ok = new AtomicInteger();
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        CompletableFuture<?>[] futures = urls.stream()
+                .map(url -> engine.fetch(url).thenAccept(body -> {
+                    if (body != null) {
+                        ok.incrementAndGet();
+                    }
+                }))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(futures).join();
+        report("FetchEngine (HttpClient.sendAsync)", urls.size(), ok.get(), start, threads.getPeakThreadCount());
+        ioExecutor.shutdownNow();
+    }
+
+    private static void report(String name, int total, int ok, long startNanos, int peakThreads) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%-40s %6d/%d ok  %8.2f s  %8.1f req/s  peak threads: %d%n",
+                name, ok, total, seconds, total / seconds, peakThreads);
+    }
+}
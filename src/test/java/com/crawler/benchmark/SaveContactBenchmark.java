@@ -0,0 +1,115 @@
+package com.crawler.benchmark;
+
+import com.crawler.model.ContactInfo;
+import com.crawler.service.H2StorageService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Сохранение контактов в хранилище с уже загруженными rows строками: обновление кэша и индексов
+// и запись в in-memory H2 через очередь отложенной записи. Заполненная очередь тормозит вызывающих,
+// поэтому установившаяся скорость - это скорость записи в H2, а не только приёма в очередь.
+// Точка отсчёта - прежний MERGE на каждую страницу под глобальной блокировкой.
+// Запуск: mvn -Pbenchmark verify -Djmh.include=SaveContactBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(4)
+public class SaveContactBenchmark {
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private static final String LEGACY_MERGE_SQL = """
+            MERGE INTO contact_info (url, title, timestamp, phones, emails, addresses)
+            KEY(url)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    private H2StorageService storageService;
+    private JdbcTemplate legacyTemplate;
+    private ReentrantReadWriteLock legacyLock;
+    private AtomicInteger next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        storageService = BenchmarkStorage.create("save");
+        SyntheticCorpus.forEachContact(1, rows, storageService::saveContactInfo);
+        storageService.flush();
+        setUpLegacy();
+        next = new AtomicInteger(rows);
+    }
+
+    private void setUpLegacy() {
+        legacyTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:legacy-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "password"));
+        legacyTemplate.execute("""
+                CREATE TABLE contact_info (
+                    url VARCHAR(1000) PRIMARY KEY,
+                    title VARCHAR(500),
+                    timestamp BIGINT,
+                    phones CLOB,
+                    emails CLOB,
+                    addresses CLOB
+                )
+                """);
+        legacyLock = new ReentrantReadWriteLock();
+        SyntheticCorpus.forEachContact(1, rows, this::legacyMerge);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        storageService.shutdown();
+        legacyTemplate.execute("SHUTDOWN");
+    }
+
+    @Benchmark
+    public void saveContactInfo() {
+        ContactInfo contact = SyntheticCorpus.contact(1, next.getAndIncrement());
+        storageService.saveContactInfo(contact);
+    }
+
+    @Benchmark
+    public void legacyMergeBaseline() {
+        legacyMerge(SyntheticCorpus.contact(1, next.getAndIncrement()));
+    }
+
+    private void legacyMerge(ContactInfo contact) {
+        legacyLock.writeLock().lock();
+        try {
+            legacyTemplate.update(LEGACY_MERGE_SQL, contact.getUrl(), contact.getTitle(), contact.getTimestamp(),
+                    String.join(";;", contact.getPhones()), String.join(";;", contact.getEmails()),
+                    String.join(";;", contact.getAddresses()));
+        } finally {
+            legacyLock.writeLock().unlock();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SaveContactBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
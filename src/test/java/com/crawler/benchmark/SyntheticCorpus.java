@@ -0,0 +1,135 @@
+package com.crawler.benchmark;
+
+import com.crawler.model.ContactInfo;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+// Синтетический корпус для бенчмарков: HTML-страницы заданного размера и плотности контактов
+// и наборы контактов любого объёма. Всё детерминировано по seed, поэтому прогоны сравнимы.
+public final class SyntheticCorpus {
+
+    // Контактов на 10 КБ разметки: каталог почти без контактов, страница "Контакты" с филиалами
+    public enum Density {
+        SPARSE(0.2),
+        TYPICAL(1),
+        DENSE(8);
+
+        private final double contactsPer10Kb;
+
+        Density(double contactsPer10Kb) {
+            this.contactsPer10Kb = contactsPer10Kb;
+        }
+    }
+
+    private static final String[] CITIES = {"Москва", "Санкт-Петербург", "Казань", "Новосибирск", "Екатеринбург"};
+    private static final String[] STREETS = {"Тверская", "Ленина", "Мира", "Садовая", "Профсоюзная", "Пушкина"};
+    private static final String[] WORDS = {"доставка", "каталог", "скидка", "гарантия", "товар", "заказ",
+            "компания", "услуги", "производство", "оптом", "склад", "цена", "акция", "новинка", "отзывы"};
+    private static final String[] PHONE_FORMATS = {"+7 (%03d) %03d-%02d-%02d", "8 %03d %03d %02d %02d",
+            "+7%03d%03d%02d%02d", "8-%03d-%03d-%02d-%02d"};
+
+    private SyntheticCorpus() {
+    }
+
+    // Страница типичного сайта компании: меню, карточки товаров, inline-скрипты и блоки с контактами
+    public static String page(Random random, int size, Density density) {
+        StringBuilder html = new StringBuilder(size + 1024);
+        html.append("<!DOCTYPE html>\n<html lang=\"ru\">\n<head>\n<meta charset=\"utf-8\">\n")
+                .append("<title>").append(companyName(random)).append(" - официальный сайт</title>\n")
+                .append("<link rel=\"stylesheet\" href=\"/bitrix/templates/main/styles.css?")
+                .append(random.nextInt(1_000_000)).append("\">\n</head>\n<body>\n<nav>\n");
+        for (int i = 0; i < 12; i++) {
+            html.append("<a href=\"/catalog/section-").append(i).append("/\">").append(word(random)).append("</a>\n");
+        }
+        html.append("</nav>\n");
+
+        // Средний блок разметки - около 120 символов
+        double contactChance = density.contactsPer10Kb * 120 / 10_000;
+        while (html.length() < size) {
+            if (random.nextDouble() < contactChance) {
+                contactBlock(random, html);
+                continue;
+            }
+            switch (random.nextInt(4)) {
+                case 0 -> html.append("<div class=\"item\"><a href=\"/product/").append(random.nextInt(100_000))
+                        .append("/\">").append(sentence(random, 4)).append("</a><span class=\"price\">")
+                        .append(random.nextInt(100)).append(" 990 ₽</span></div>\n");
+                case 1 -> html.append("<script>dataLayer.push({'event':'view','id':").append(random.nextInt(100_000))
+                        .append(",'price':").append(random.nextInt(10_000)).append("});</script>\n");
+                case 2 -> html.append("<p>").append(sentence(random, 25)).append("</p>\n");
+                default -> html.append("<img src=\"/upload/iblock/").append(random.nextInt(1000))
+                        .append("/photo.jpg\" alt=\"").append(word(random)).append("\" width=\"800\">\n");
+            }
+        }
+        html.append("<footer>");
+        contactBlock(random, html);
+        html.append("</footer>\n</body>\n</html>\n");
+        return html.toString();
+    }
+
+    // Контакт с номером i: один и тот же i всегда даёт тот же контакт, поэтому наборы
+    // на 10 млн строк не нужно держать в памяти до загрузки в хранилище
+    public static ContactInfo contact(long seed, int i) {
+        Random random = new Random(seed * 31 + i);
+        int site = i % 5000;
+        ContactInfo contact = new ContactInfo("https://site-" + site + ".ru/page/" + i);
+        contact.setTitle(companyName(random) + " " + i);
+        contact.setTimestamp(1_700_000_000_000L + random.nextInt(1_000_000_000));
+        int phones = 1 + random.nextInt(3);
+        for (int p = 0; p < phones; p++) {
+            contact.addPhone(String.format("+7%03d%07d", 900 + random.nextInt(100), random.nextInt(10_000_000)));
+        }
+        if (random.nextInt(4) != 0) {
+            contact.addEmail(mailbox(random) + "@site-" + site + ".ru");
+        }
+        contact.addAddress(address(random));
+        return contact;
+    }
+
+    public static void forEachContact(long seed, int count, Consumer<ContactInfo> action) {
+        for (int i = 0; i < count; i++) {
+            action.accept(contact(seed, i));
+        }
+    }
+
+    private static void contactBlock(Random random, StringBuilder html) {
+        html.append("<div class=\"contacts\"><p>Телефон: ");
+        int a = 300 + random.nextInt(700);
+        html.append(String.format(PHONE_FORMATS[random.nextInt(PHONE_FORMATS.length)],
+                a, random.nextInt(1000), random.nextInt(100), random.nextInt(100)));
+        html.append("</p><p>Email: <a href=\"mailto:").append(mailbox(random)).append("@example.ru\">")
+                .append("написать</a></p><p>Адрес: ").append(address(random)).append("</p></div>\n");
+    }
+
+    private static String address(Random random) {
+        return "г. " + CITIES[random.nextInt(CITIES.length)] + ", ул. " + STREETS[random.nextInt(STREETS.length)]
+                + ", д. " + (1 + random.nextInt(200));
+    }
+
+    private static String mailbox(Random random) {
+        String[] boxes = {"info", "sales", "zakaz", "office", "support", "hr"};
+        return boxes[random.nextInt(boxes.length)] + random.nextInt(1000);
+    }
+
+    private static String companyName(Random random) {
+        String[] forms = {"ООО", "АО", "ИП", "ПАО"};
+        return forms[random.nextInt(forms.length)] + " " + capitalize(word(random));
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder sentence = new StringBuilder(capitalize(word(random)));
+        for (int i = 1; i < words; i++) {
+            sentence.append(' ').append(word(random));
+        }
+        return sentence.append('.').toString();
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
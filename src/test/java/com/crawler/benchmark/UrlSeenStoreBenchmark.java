@@ -0,0 +1,58 @@
+package com.crawler.benchmark;
+
+import com.crawler.service.BloomUrlSeenStore;
+import com.crawler.service.FingerprintUrlSeenStore;
+import com.crawler.service.UrlSeenStore;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Память и скорость множества виденных URL: прежний ConcurrentHashMap.newKeySet() со строками
+// против отпечатков и фильтра Блума. Память - прирост занятой кучи после сборки мусора.
+// Запуск: java -Xmx6g -cp <test-classpath> com.crawler.benchmark.UrlSeenStoreBenchmark [urls]
+public class UrlSeenStoreBenchmark {
+
+    public static void main(String[] args) {
+        int urls = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        System.out.printf("URLs: %d%n", urls);
+
+        measure("ConcurrentHashMap<String>", urls, () -> {
+            Set<String> set = ConcurrentHashMap.newKeySet();
+            return set::add;
+        });
+        measure("exact fingerprints", urls, () -> {
+            UrlSeenStore store = new FingerprintUrlSeenStore();
+            return store::add;
+        });
+        measure("bloom, fpp 0.001", urls, () -> {
+            UrlSeenStore store = new BloomUrlSeenStore(urls, 0.001);
+            return store::add;
+        });
+    }
+
+    private static void measure(String name, int urls, Supplier<Predicate<String>> factory) {
+        long before = usedHeap();
+        long start = System.nanoTime();
+        Predicate<String> store = factory.get();
+        for (int i = 0; i < urls; i++) {
+            store.test("https://www.site-" + (i % 10_000) + ".ru/catalog/item/" + i + "?page=" + (i % 7));
+        }
+        long elapsed = System.nanoTime() - start;
+        long used = usedHeap() - before;
+
+        System.out.printf("%-28s %8.1f MB  %6.1f bytes/URL  %6.0f ns/add%n",
+                name, used / 1048576.0, (double) used / urls, (double) elapsed / urls);
+        // Держим ссылку до замера, иначе сборщик мог бы освободить хранилище раньше
+        store.test("");
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
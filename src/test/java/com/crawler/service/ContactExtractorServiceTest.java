@@ -1,10 +1,14 @@
 package com.crawler.service;
 
 import com.crawler.model.ContactInfo;
+import org.jsoup.Jsoup;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.Random;
+import java.util.Set;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -142,4 +146,64 @@ class ContactExtractorServiceTest {
             assertEquals(12, phone.length()); // +7 + 10 цифр
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void testExtractFromDocument() {
+        String html = """
+            <html>
+                <head>
+                    <title>  Shop
+                        Contacts  </title>
+                    <style>.icon-89991234567 { color: red; }</style>
+                </head>
+                <body>
+                    <script>var tracker = "+7 (999) 765-43-21"; var cdn = "assets@cdn.example.com";</script>
+                    <div data-phone="+79990000000">Звоните: <b>8 (495)</b> 123-45-67</div>
+                    <a href="tel:+7-812-555-01-02">Позвонить</a>
+                    <a href="MAILTO:Sales%40Shop.ru?subject=Заказ">Написать</a>
+                    <p>г. Москва, ул. Тверская, 7</p>
+                </body>
+            </html>
+            """;
+
+        ContactInfo result = contactExtractorService.extractFromDocument("http://test.com",
+                Jsoup.parse(html, "http://test.com"));
+
+        assertEquals("Shop Contacts", result.getTitle());
+        // Скрипты, стили и атрибуты не сканируются
+        assertEquals(Set.of("+74951234567", "+78125550102"), result.getPhones());
+        assertEquals(Set.of("sales@shop.ru"), result.getEmails());
+        assertEquals(Set.of("г. Москва, ул. Тверская, 7"), result.getAddresses());
+    }
+
+    @Test
+    void testMatchesRegexExtractor() {
+        // Случайные тексты из фрагментов, на которых у регулярных выражений есть возвраты и границы слов
+        String[] fragments = {
+                "+7", "+", "8", "7", "9", "0", "12", "345", " ", "  ", "-", "(", ")", "\t", "\n",
+                "a", "Z", "x_y", "%", ".", "..", "@", "ru", "com", "|", "info", "mail.", "é", "\u0301", "й",
+                "г", "Г", "г.", "город", "Город", "ГОРОД", "ул", "ул.", "Ул.", "улица", "проспект", "Проспект",
+                "Москва", "Санкт-Петербург", "ёлка", ",", "д.", "10", "25а", "Тверская",
+                "<", "<title>", "</title>", "<TITLE>", "</Title>", "Компания"
+        };
+        Random random = new Random(42);
+        RegexContactExtractor reference = new RegexContactExtractor();
+
+        for (int n = 0; n < 5000; n++) {
+            StringBuilder html = new StringBuilder();
+            int parts = 1 + random.nextInt(40);
+            for (int i = 0; i < parts; i++) {
+                html.append(fragments[random.nextInt(fragments.length)]);
+            }
+
+            ContactInfo expected = reference.extractContactInfo("http://test.com", html.toString());
+            ContactInfo actual = contactExtractorService.extractContactInfo("http://test.com", html.toString());
+
+            String message = "Input: " + html;
+            assertEquals(expected.getTitle(), actual.getTitle(), message);
+            assertEquals(expected.getPhones(), actual.getPhones(), message);
+            assertEquals(expected.getEmails(), actual.getEmails(), message);
+            assertEquals(expected.getAddresses(), actual.getAddresses(), message);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.crawler.service;
+
+import com.crawler.benchmark.SyntheticCorpus;
+import com.crawler.model.ContactInfo;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Память кэша на запись по графу объектов (JOL). По умолчанию 20 тыс. контактов,
+// полный замер: mvn test -Dtest=ContactFootprintTest -Dfootprint.records=1000000 -DargLine="-Xmx4g -Djdk.attach.allowAttachSelf"
+class ContactFootprintTest {
+
+    private static final int RECORDS = Integer.getInteger("footprint.records", 20_000);
+
+    @Test
+    void testCompactContactFootprint() {
+        List<ContactInfo> mutable = new ArrayList<>(RECORDS);
+        SyntheticCorpus.forEachContact(7, RECORDS, mutable::add);
+        long mutableBytes = GraphLayout.parseInstance(mutable).totalSize();
+
+        List<ContactInfo> compact = new ArrayList<>(RECORDS);
+        for (int i = 0; i < mutable.size(); i++) {
+            compact.add(mutable.get(i).compact());
+            mutable.set(i, null);
+        }
+        long compactBytes = GraphLayout.parseInstance(compact).totalSize();
+
+        System.out.printf("Contact footprint at %d records: %d bytes/record mutable, %d bytes/record compact%n",
+                RECORDS, mutableBytes / RECORDS, compactBytes / RECORDS);
+        // Адреса не интернируются, поэтому выигрыш чуть меньше двукратного
+        assertTrue(compactBytes * 10 < mutableBytes * 6,
+                "compact " + compactBytes / RECORDS + " vs mutable " + mutableBytes / RECORDS + " bytes/record");
+    }
+
+    @Test
+    void testEmptySetsAreShared() {
+        ContactInfo first = new ContactInfo("http://footprint-a.com").compact();
+        ContactInfo second = new ContactInfo("http://footprint-b.com").compact();
+
+        assertSame(first.getPhones(), second.getEmails());
+        assertSame(first.getAddresses(), second.getAddresses());
+        assertThrows(UnsupportedOperationException.class, () -> first.addPhone("+79991234567"));
+    }
+
+    @Test
+    void testValuesAreInterned() {
+        ContactInfo first = new ContactInfo("http://footprint-a.com");
+        first.addEmail(new String("info@footprint.ru"));
+        ContactInfo second = new ContactInfo("http://footprint-b.com");
+        second.addEmail(new String("info@footprint.ru"));
+
+        String firstEmail = first.compact().getEmails().iterator().next();
+        String secondEmail = second.compact().getEmails().iterator().next();
+        assertSame(firstEmail, secondEmail);
+    }
+
+    @Test
+    void testAddressesAreNotInterned() {
+        // Адреса почти не повторяются - пул строк для них только растёт
+        ContactInfo first = new ContactInfo("http://footprint-a.com");
+        first.addAddress(new String("г. Москва, ул. Тверская, д. 1"));
+        ContactInfo second = new ContactInfo("http://footprint-b.com");
+        second.addAddress(new String("г. Москва, ул. Тверская, д. 1"));
+
+        String firstAddress = first.compact().getAddresses().iterator().next();
+        String secondAddress = second.compact().getAddresses().iterator().next();
+        assertEquals(firstAddress, secondAddress);
+        assertNotSame(firstAddress, secondAddress);
+    }
+
+    @Test
+    void testCompactCopyRejectsEveryMutator() {
+        ContactInfo source = new ContactInfo("http://footprint-a.com");
+        source.addPhone("+79991234567");
+        ContactInfo compact = source.compact();
+
+        source.addPhone("+79990000000");
+        List<Runnable> mutators = List.of(
+                () -> compact.setUrl("http://footprint-b.com"),
+                () -> compact.setTitle("title"),
+                () -> compact.setTimestamp(0),
+                () -> compact.setPhones(Set.of()),
+                () -> compact.setEmails(Set.of()),
+                () -> compact.setAddresses(Set.of()),
+                () -> compact.addPhone("+79990000000"),
+                () -> compact.addEmail("info@footprint.ru"),
+                () -> compact.addAddress("г. Москва"));
+        for (Runnable mutator : mutators) {
+            UnsupportedOperationException e = assertThrows(UnsupportedOperationException.class, mutator::run);
+            assertTrue(e.getMessage().contains("read-only"), e.getMessage());
+        }
+        assertEquals("http://footprint-a.com", compact.getUrl());
+        assertEquals(Set.of("+79991234567"), compact.getPhones());
+        assertEquals(2, source.getPhones().size());
+    }
+}
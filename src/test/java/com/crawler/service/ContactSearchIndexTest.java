@@ -0,0 +1,111 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContactSearchIndexTest {
+
+    private final Map<String, ContactInfo> cache = new ConcurrentHashMap<>();
+    private final ContactSearchIndex index = new ContactSearchIndex(cache::get);
+
+    @Test
+    void testSearchAllFields() {
+        ContactInfo contact = new ContactInfo("http://Index-Test.com/contacts");
+        contact.setTitle("Рога и Копыта");
+        contact.addPhone("+79991234567");
+        contact.addEmail("Sales@Index-Test.com");
+        contact.addAddress("г. Москва, ул. Тверская, 10");
+        save(contact);
+
+        assertEquals(1, index.search("index-test").size());
+        assertEquals(1, index.search("копыта").size());
+        assertEquals(1, index.search("1234567").size());
+        assertEquals(1, index.search("sales@").size());
+        assertEquals(1, index.search("ТВЕРСКАЯ").size());
+        assertTrue(index.search("yandex").isEmpty());
+    }
+
+    @Test
+    void testGramsMustFormSubstring() {
+        ContactInfo contact = new ContactInfo("http://abcd-bcde.com");
+        save(contact);
+
+        // Все триграммы запроса есть в документе, но подстроки "abcde" нет
+        assertTrue(index.search("abcde").isEmpty());
+        assertEquals(1, index.search("abcd-").size());
+    }
+
+    @Test
+    void testUpdateReplacesOldVersion() {
+        ContactInfo first = new ContactInfo("http://update-test.com");
+        first.addPhone("+79990000001");
+        save(first);
+
+        ContactInfo second = new ContactInfo("http://update-test.com");
+        second.addPhone("+79990000002");
+        save(second);
+
+        assertTrue(index.search("+79990000001").isEmpty());
+        List<ContactInfo> found = index.search("+79990000002");
+        assertEquals(1, found.size());
+        assertSame(second, found.get(0));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testShortTermIsNotIndexed() {
+        assertNull(index.search("ab"));
+    }
+
+    @Test
+    void testClear() {
+        save(new ContactInfo("http://clear-index.com"));
+        index.clear();
+
+        assertTrue(index.search("clear-index").isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    // Перестройка после 100 000 мёртвых документов не должна быть видна читателю
+    @Test
+    void testSearchDuringRebuild() throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            save(new ContactInfo("http://stable-doc.com/" + i));
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> violation = new AtomicReference<>();
+        Thread reader = new Thread(() -> {
+            while (running.get() && violation.get() == null) {
+                List<ContactInfo> found = index.search("stable-doc");
+                if (found.size() != 50 || found.stream().map(ContactInfo::getUrl).distinct().count() != 50) {
+                    violation.set("found " + found.size());
+                }
+            }
+        });
+        reader.start();
+        for (int i = 0; i < 250_000; i++) {
+            ContactInfo churn = new ContactInfo("http://churn-doc.com");
+            churn.setTitle("title " + i);
+            save(churn);
+        }
+        running.set(false);
+        reader.join();
+
+        assertNull(violation.get());
+        assertEquals(51, index.size());
+        assertEquals(1, index.search("title 249999").size());
+    }
+
+    private void save(ContactInfo contact) {
+        ContactInfo previous = cache.put(contact.getUrl(), contact);
+        index.update(previous, contact);
+    }
+}
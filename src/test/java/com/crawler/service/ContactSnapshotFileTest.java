@@ -0,0 +1,127 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContactSnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRoundTrip() throws IOException {
+        ContactInfo contact = new ContactInfo("http://snapshot-test.com/контакты");
+        contact.setTitle("ООО Ромашка");
+        contact.setTimestamp(1_700_000_000_000L);
+        contact.addPhone("+79991234567");
+        contact.addPhone("+79997654321");
+        contact.addEmail("info@snapshot-test.com");
+        contact.addAddress("г. Москва, ул. Тверская, д. 1");
+        ContactInfo empty = new ContactInfo("http://empty.com");
+        empty.setTimestamp(1_600_000_000_000L);
+
+        ContactSnapshotFile file = new ContactSnapshotFile(directory.resolve("contacts.bin"));
+        ContactSnapshotFile.Info written = file.write(List.of(contact.compact(), empty.compact()));
+        assertFalse(Files.exists(file.getFile()));
+        file.commit();
+
+        List<ContactInfo> read = new ArrayList<>();
+        ContactSnapshotFile.Info info = file.read(read::add);
+
+        assertEquals(written, info);
+        assertEquals(2, info.count());
+        assertEquals(1_700_000_000_000L, info.maxTimestamp());
+        assertEquals(2, read.size());
+        ContactInfo stored = read.get(0);
+        assertEquals("http://snapshot-test.com/контакты", stored.getUrl());
+        assertEquals("ООО Ромашка", stored.getTitle());
+        assertEquals(1_700_000_000_000L, stored.getTimestamp());
+        assertEquals(Set.of("+79991234567", "+79997654321"), stored.getPhones());
+        assertEquals(Set.of("info@snapshot-test.com"), stored.getEmails());
+        assertEquals(Set.of("г. Москва, ул. Тверская, д. 1"), stored.getAddresses());
+        assertNull(read.get(1).getTitle());
+        assertTrue(read.get(1).getPhones().isEmpty());
+    }
+
+    // Колонки больше буфера записи и строки длиннее него
+    @Test
+    void testLargeSnapshot() throws IOException {
+        List<ContactInfo> contacts = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            ContactInfo contact = new ContactInfo("http://large-snapshot-test.com/" + i);
+            contact.setTitle(i == 7 ? "x".repeat(100_000) : "title " + i);
+            contact.setTimestamp(i);
+            contact.addPhone("+7999" + (i % 100));
+            contacts.add(contact.compact());
+        }
+        ContactSnapshotFile file = new ContactSnapshotFile(directory.resolve("contacts.bin"));
+        file.write(contacts);
+        file.commit();
+
+        List<ContactInfo> read = new ArrayList<>();
+        ContactSnapshotFile.Info info = file.read(read::add);
+
+        assertEquals(19_999, info.maxTimestamp());
+        assertEquals(contacts, read);
+        assertEquals(100_000, read.get(7).getTitle().length());
+        assertEquals(Set.of("+799942"), read.get(4242).getPhones());
+    }
+
+    @Test
+    void testMissingSnapshot() throws IOException {
+        ContactSnapshotFile file = new ContactSnapshotFile(directory.resolve("missing.bin"));
+        assertNull(file.info());
+        assertNull(file.read(contact -> fail("no contacts expected")));
+    }
+
+    @Test
+    void testCorruptedSnapshotRejected() throws IOException {
+        ContactSnapshotFile file = new ContactSnapshotFile(directory.resolve("contacts.bin"));
+        List<ContactInfo> contacts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            contacts.add(new ContactInfo("http://corrupt-test.com/" + i).compact());
+        }
+        file.write(contacts);
+        file.commit();
+
+        try (RandomAccessFile raw = new RandomAccessFile(file.getFile().toFile(), "rw")) {
+            raw.seek(raw.length() / 2);
+            int value = raw.read();
+            raw.seek(raw.length() / 2);
+            raw.write(value ^ 0xFF);
+        }
+        assertThrows(IOException.class, () -> file.read(contact -> fail("corrupt snapshot must not be loaded")));
+
+        try (RandomAccessFile raw = new RandomAccessFile(file.getFile().toFile(), "rw")) {
+            raw.setLength(raw.length() - 10);
+        }
+        assertThrows(IOException.class, () -> file.read(contact -> fail("truncated snapshot must not be loaded")));
+    }
+
+    @Test
+    void testDiscardAndDelete() throws IOException {
+        ContactSnapshotFile file = new ContactSnapshotFile(directory.resolve("contacts.bin"));
+        file.write(List.of(new ContactInfo("http://a.com").compact()));
+        file.commit();
+        file.write(List.of(new ContactInfo("http://b.com").compact()));
+        file.discard();
+
+        List<ContactInfo> read = new ArrayList<>();
+        file.read(read::add);
+        assertEquals("http://a.com", read.get(0).getUrl());
+
+        file.delete();
+        assertNull(file.info());
+    }
+}
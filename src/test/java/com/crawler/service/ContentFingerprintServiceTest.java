@@ -0,0 +1,71 @@
+package com.crawler.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class ContentFingerprintServiceTest {
+
+    @Autowired
+    private ContentFingerprintService fingerprintService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testExactDuplicate() {
+        // Отпечатки сохраняются между запусками; при повторном запуске первая проверка - та же страница того же URL
+        String text = randomText(new Random(1), 200);
+
+        assertEquals(ContentFingerprintService.Verdict.UNIQUE, fingerprintService.check("http://dedup-test.com/a", text));
+        // Повторная загрузка того же URL - не дубликат
+        assertEquals(ContentFingerprintService.Verdict.UNIQUE, fingerprintService.check("http://dedup-test.com/a", text));
+        // Разметка и регистр не влияют на отпечаток
+        assertEquals(ContentFingerprintService.Verdict.EXACT_DUPLICATE,
+                fingerprintService.check("http://mirror.dedup-test.com/a", "  " + text.toUpperCase().replace(" ", " | ") + "!"));
+    }
+
+    @Test
+    void testNearDuplicate() {
+        Random random = new Random(2);
+        String text = randomText(random, 400);
+        String changed = text.replaceFirst(" ", " новинка ");
+
+        assertEquals(ContentFingerprintService.Verdict.UNIQUE, fingerprintService.check("http://dedup-test.com/page1", text));
+        assertEquals(ContentFingerprintService.Verdict.NEAR_DUPLICATE,
+                fingerprintService.check("http://dedup-test.com/page1?sort=price", changed));
+        assertEquals(ContentFingerprintService.Verdict.UNIQUE,
+                fingerprintService.check("http://dedup-test.com/page2", randomText(random, 400)));
+    }
+
+    @Test
+    void testShortTextIsNeverDuplicate() {
+        assertEquals(ContentFingerprintService.Verdict.UNIQUE, fingerprintService.check("http://dedup-test.com/x", "Loading..."));
+        assertEquals(ContentFingerprintService.Verdict.UNIQUE, fingerprintService.check("http://dedup-test.com/y", "Loading..."));
+    }
+
+    @Test
+    void testFingerprintsArePersisted() {
+        String url = "http://dedup-test.com/persisted/" + System.nanoTime();
+        fingerprintService.check(url, randomText(new Random(), 100));
+        fingerprintService.flush();
+
+        Integer stored = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM content_fingerprint WHERE url = ?", Integer.class, url);
+        assertEquals(1, stored);
+    }
+
+    private static String randomText(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(Long.toString(random.nextLong() & Long.MAX_VALUE, 36), 0, 3 + random.nextInt(5)).append(' ');
+        }
+        return text.toString();
+    }
+}
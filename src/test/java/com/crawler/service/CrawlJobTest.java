@@ -0,0 +1,94 @@
+package com.crawler.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlJobTest {
+
+    @Test
+    void testPageBudget() {
+        CrawlJob job = new CrawlJob("1", Set.of("https://site.ru/"), 2, 3);
+
+        assertTrue(job.claimStart("site.ru"));
+        assertTrue(job.tryClaim("site.ru/a"));
+        // Повтор внутри обхода не занимает бюджет
+        assertFalse(job.tryClaim("site.ru/a"));
+        assertTrue(job.tryClaim("site.ru/b"));
+        assertFalse(job.tryClaim("site.ru/c"));
+
+        assertEquals(3, job.getPagesClaimed());
+        assertTrue(job.isSeen("site.ru/b"));
+        assertFalse(job.isSeen("site.ru/c"));
+    }
+
+    @Test
+    void testCompletesWhenNoTasksLeft() {
+        CrawlJob job = new CrawlJob("2", Set.of("https://site.ru/"), 1, 10);
+        job.taskStarted();
+        job.seedingFinished();
+        assertEquals(CrawlJob.Status.RUNNING, job.getStatus());
+
+        // Дочерняя задача ставится до завершения родительской
+        job.taskStarted();
+        job.taskFinished();
+        assertFalse(job.getCompletion().isDone());
+
+        job.taskFinished();
+        assertTrue(job.getCompletion().isDone());
+        assertEquals(CrawlJob.Status.COMPLETED, job.getStatus());
+        assertTrue(job.getFinishedAt() >= job.getStartedAt());
+    }
+
+    @Test
+    void testCancel() {
+        CrawlJob job = new CrawlJob("3", Set.of("https://site.ru/"), 1, 10);
+        job.taskStarted();
+        job.seedingFinished();
+        job.cancel();
+
+        assertFalse(job.tryClaim("site.ru/a"));
+        job.taskFinished();
+        assertEquals(CrawlJob.Status.CANCELLED, job.getStatus());
+    }
+
+    @Test
+    void testEmptyJobCompletesImmediately() {
+        CrawlJob job = new CrawlJob("4", Set.of(), 1, 10);
+        job.seedingFinished();
+
+        assertEquals(CrawlJob.Status.COMPLETED, job.getCompletion().join().getStatus());
+    }
+
+    @Test
+    void testResumedJobSkipsPreviouslySeenUrls() {
+        CrawlJob job = new CrawlJob("5", Set.of("https://site.ru/"), 2, 3, 0, 2,
+                expectedUrls -> new FingerprintUrlSeenStore());
+        job.restoreSeen(UrlSeenStore.fingerprint("site.ru/done"));
+        job.restorePending("site.ru/queued");
+
+        assertFalse(job.tryClaim("site.ru/done"));
+        assertFalse(job.tryClaim("site.ru/queued"));
+        assertTrue(job.tryClaim("site.ru/new"));
+        // Бюджет продолжается с сохранённого значения
+        assertFalse(job.tryClaim("site.ru/other"));
+    }
+
+    // Фильтр Блума рассчитывается на бюджет обхода, а не на все URL краулера
+    @Test
+    void testSeenStoreComesFromFactory() {
+        long[] requested = new long[1];
+        CrawlJob job = new CrawlJob("6", Set.of("https://site.ru/"), 1, 1000, expectedUrls -> {
+            requested[0] = expectedUrls;
+            return new BloomUrlSeenStore(expectedUrls, 0.001);
+        });
+
+        assertEquals(1000, requested[0]);
+        assertTrue(job.tryClaim("site.ru/a"));
+        assertFalse(job.tryClaim("site.ru/a"));
+        assertTrue(job.isSeen("site.ru/a"));
+        assertTrue(job.getSeenBytes() < 64 * 1024);
+    }
+}
@@ -1,10 +1,23 @@
 package com.crawler.service;
 
+import com.crawler.model.ContactInfo;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -18,7 +31,7 @@ class CrawlerServiceTest {
     void testCrawlerInitialization() {
         assertNotNull(crawlerService);
         assertTrue(crawlerService.getActiveTasks() >= 0);
-        assertNotNull(crawlerService.getVisitedUrls());
+        assertTrue(crawlerService.getVisitedUrls() >= 0);
     }
 
     @Test
@@ -36,7 +49,76 @@ class CrawlerServiceTest {
         });
     }
 
+    // Повторный обход с большей глубиной: стартовая страница не изменилась, но её ссылки обходятся
     @Test
+    void testFollowsLinksOfUnchangedPage() throws Exception {
+        Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.computeIfAbsent(exchange.getRequestURI().getPath(), path -> new AtomicInteger()).incrementAndGet();
+            if (exchange.getRequestHeaders().containsKey("If-None-Match")) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            respond(exchange, exchange.getRequestURI().getPath().equals("/start")
+                    ? "<p>Start</p><a href=\"/linked\">linked</a>" : "<p>Linked</p>");
+        });
+        server.start();
+        try {
+            String start = "http://127.0.0.1:" + server.getAddress().getPort() + "/start";
+
+            crawlerService.startCrawling(Set.of(start), 0, 10).getCompletion().get(30, TimeUnit.SECONDS);
+            assertNull(requests.get("/linked"));
+
+            CrawlJob job = crawlerService.startCrawling(Set.of(start), 1, 10);
+            job.getCompletion().get(30, TimeUnit.SECONDS);
+            assertEquals(2, requests.get("/start").get());
+            assertEquals(1, requests.get("/linked").get());
+            assertEquals(2, job.getPagesProcessed());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    // Контакты не сохранились: хэш текста не запоминается, и следующая загрузка извлекает их снова
+    @Test
+    void testFailedSaveIsExtractedAgain() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/contacts", exchange -> respond(exchange, "<p>Телефон: +7 999 123-45-67</p>"));
+        server.start();
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/contacts";
+        AtomicInteger saves = new AtomicInteger();
+        H2StorageService failing = new H2StorageService() {
+            @Override
+            public boolean saveContactInfo(ContactInfo contactInfo) {
+                if (contactInfo.getUrl().equals(url)) {
+                    saves.incrementAndGet();
+                }
+                return false;
+            }
+
+            @Override
+            public int getPendingWrites() {
+                return 0;
+            }
+        };
+        Object storageService = ReflectionTestUtils.getField(crawlerService, "storageService");
+        ReflectionTestUtils.setField(crawlerService, "storageService", failing);
+        try {
+            crawlerService.startCrawling(Set.of(url), 0, 10).getCompletion().get(30, TimeUnit.SECONDS);
+            crawlerService.startCrawling(Set.of(url), 0, 10).getCompletion().get(30, TimeUnit.SECONDS);
+            assertEquals(2, saves.get());
+        } finally {
+            ReflectionTestUtils.setField(crawlerService, "storageService", storageService);
+            server.stop(0);
+        }
+    }
+
+    // Остановленный сервис не годится для следующих тестов
+    @Test
+    @DirtiesContext(methodMode = DirtiesContext.MethodMode.AFTER_METHOD)
     void testCrawlerShutdown() {
         assertDoesNotThrow(() -> {
             crawlerService.shutdown();
@@ -45,13 +127,20 @@ class CrawlerServiceTest {
     }
 
     @Test
-    void testVisitedUrlsCollection() {
-        Set<String> visitedUrls = crawlerService.getVisitedUrls();
-        assertNotNull(visitedUrls);
-        // Коллекция должна быть потокобезопасной
-        assertDoesNotThrow(() -> {
-            visitedUrls.size();
-            visitedUrls.contains("test");
-        });
+    void testVisitedUrlsCounter() {
+        // Множества встреченных URL у каждого обхода свои, сервис хранит только их число и объём
+        assertTrue(crawlerService.getVisitedUrls() >= 0);
+        assertTrue(crawlerService.getSeenStoreBytes() >= 0);
+    }
+
+    private static void respond(HttpExchange exchange, String html) throws IOException {
+        byte[] body = html.getBytes(StandardCharsets.UTF_8);
+        try (exchange) {
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
     }
 }
@@ -0,0 +1,215 @@
+package com.crawler.service;
+
+import com.crawler.model.PageState;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FetchEngineTest {
+
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private ExecutorService executor;
+    private HttpServer server;
+    private FetchEngine fetchEngine;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        executor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        fetchEngine = new FetchEngine(executor, 10, 10, 2000, 2000, 500, MAX_BODY_BYTES, "text/html");
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testDecodesDeclaredCharset() throws Exception {
+        Charset windows1251 = Charset.forName("windows-1251");
+        server.createContext("/cp1251", exchange ->
+                respond(exchange, "text/html; charset=windows-1251", "<p>Телефон</p>".getBytes(windows1251), false));
+
+        assertEquals("<p>Телефон</p>", fetchEngine.fetch(baseUrl + "/cp1251").get());
+    }
+
+    @Test
+    void testDecodesCharsetDeclaredOnlyInMeta() throws Exception {
+        Charset windows1251 = Charset.forName("windows-1251");
+        String metaCharset = "<html><head><meta charset=\"windows-1251\"></head><body><p>Телефон</p></body></html>";
+        String httpEquiv = "<html><head><meta http-equiv=\"Content-Type\" content=\"text/html; charset=windows-1251\">"
+                + "</head><body>" + "<p>Адрес: г. Москва</p>".repeat(500) + "</body></html>";
+        server.createContext("/meta", exchange ->
+                respond(exchange, "text/html", metaCharset.getBytes(windows1251), false));
+        server.createContext("/http-equiv", exchange ->
+                respond(exchange, "text/html", httpEquiv.getBytes(windows1251), true));
+
+        assertEquals(metaCharset, fetchEngine.fetch(baseUrl + "/meta").get());
+        // Тело длиннее просматриваемого начала и приходит частями
+        assertEquals(httpEquiv, fetchEngine.fetch(baseUrl + "/http-equiv").get());
+    }
+
+    @Test
+    void testDecodesCharactersSplitBetweenChunks() throws Exception {
+        String text = "г. Москва, ул. Тверская ".repeat(1000);
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        server.createContext("/chunks", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                // Нечётный размер куска режет двухбайтовые символы пополам
+                for (int offset = 0; offset < bytes.length; offset += 999) {
+                    body.write(bytes, offset, Math.min(999, bytes.length - offset));
+                    body.flush();
+                }
+            }
+        });
+
+        assertEquals(text, fetchEngine.fetch(baseUrl + "/chunks").get());
+    }
+
+    @Test
+    void testSkipsUnsupportedContentType() throws Exception {
+        server.createContext("/file.pdf", exchange ->
+                respond(exchange, "application/pdf", new byte[1024], false));
+
+        assertNull(fetchEngine.fetch(baseUrl + "/file.pdf").get());
+        assertEquals(1, fetchEngine.getSkippedByContentType());
+    }
+
+    @Test
+    void testRejectsOversizedBody() throws Exception {
+        byte[] large = "x".repeat(MAX_BODY_BYTES * 2).getBytes(StandardCharsets.UTF_8);
+        server.createContext("/declared", exchange -> respond(exchange, "text/html", large, false));
+        server.createContext("/chunked", exchange -> respond(exchange, "text/html", large, true));
+
+        // Превышение видно по Content-Length до чтения тела либо обнаруживается по ходу чтения
+        assertNull(fetchEngine.fetch(baseUrl + "/declared").get());
+        assertNull(fetchEngine.fetch(baseUrl + "/chunked").get());
+        assertEquals(2, fetchEngine.getAbortedBySize());
+    }
+
+    @Test
+    void testAbortsStalledBody() throws Exception {
+        server.createContext("/stalled", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write("<html>".getBytes(StandardCharsets.UTF_8));
+                body.flush();
+                Thread.sleep(5000);
+            } catch (InterruptedException | IOException e) {
+                // Клиент закрыл соединение по таймауту чтения
+            }
+        });
+
+        long start = System.nanoTime();
+        assertNull(fetchEngine.fetch(baseUrl + "/stalled").get());
+        assertTrue(System.nanoTime() - start < 4_000_000_000L);
+    }
+
+    @Test
+    void testConditionalRequest() throws Exception {
+        server.createContext("/etag", exchange -> {
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().add("ETag", "\"v1\"");
+            exchange.getResponseHeaders().add("Last-Modified", "Wed, 01 Oct 2025 10:00:00 GMT");
+            respond(exchange, "text/html", "<p>v1</p>".getBytes(StandardCharsets.UTF_8), false);
+        });
+
+        FetchResult first = fetchEngine.fetch(baseUrl + "/etag", null).get();
+        assertEquals(200, first.statusCode());
+        assertEquals("<p>v1</p>", first.body());
+        assertEquals("\"v1\"", first.etag());
+        assertEquals("Wed, 01 Oct 2025 10:00:00 GMT", first.lastModified());
+
+        PageState state = new PageState(baseUrl + "/etag");
+        state.setEtag(first.etag());
+        state.setLastModified(first.lastModified());
+        FetchResult second = fetchEngine.fetch(baseUrl + "/etag", state).get();
+        assertTrue(second.isNotModified());
+        assertNull(second.body());
+        assertEquals(1, fetchEngine.getNotModified());
+    }
+
+    @Test
+    void testFetchMetrics() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        fetchEngine.bindTo(registry);
+        server.createContext("/page", exchange ->
+                respond(exchange, "text/html", "<p>hello</p>".getBytes(StandardCharsets.UTF_8), false));
+
+        fetchEngine.fetch(baseUrl + "/page").get();
+
+        Timer timer = registry.find("crawler.fetch").tag("host", "127.0.0.1").tag("outcome", "2xx").timer();
+        assertNotNull(timer);
+        assertEquals(1, timer.count());
+        assertEquals(12, registry.get("crawler.fetch.response.size").summary().totalAmount());
+    }
+
+    @Test
+    void testHostsPastLimitShareOtherTag() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        fetchEngine.bindTo(registry);
+        ReflectionTestUtils.setField(fetchEngine, "maxMetricHosts", 1);
+        server.createContext("/page", exchange ->
+                respond(exchange, "text/html", "<p>hello</p>".getBytes(StandardCharsets.UTF_8), false));
+
+        fetchEngine.fetch(baseUrl + "/page").get();
+        fetchEngine.fetch(baseUrl + "/page").get();
+        fetchEngine.fetch("http://localhost:" + server.getAddress().getPort() + "/page").get();
+
+        assertEquals(2, registry.get("crawler.fetch").tag("host", "127.0.0.1").timer().count());
+        assertEquals(1, registry.get("crawler.fetch").tag("host", FetchEngine.OTHER_HOST).timer().count());
+        assertNull(registry.find("crawler.fetch").tag("host", "localhost").timer());
+    }
+
+    @Test
+    void testEvictsIdleHostLimiters() throws Exception {
+        server.createContext("/page", exchange ->
+                respond(exchange, "text/html", "<p>hello</p>".getBytes(StandardCharsets.UTF_8), false));
+
+        fetchEngine.fetch(baseUrl + "/page").get();
+        fetchEngine.fetch("http://localhost:" + server.getAddress().getPort() + "/page").get();
+
+        assertEquals(0, fetchEngine.getTrackedHosts());
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, byte[] body, boolean chunked)
+            throws IOException {
+        try (exchange) {
+            exchange.getResponseHeaders().add("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, chunked ? 0 : body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            } catch (IOException e) {
+                // Клиент отменил чтение тела
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.crawler.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class FrontierCheckpointServiceTest {
+
+    @Autowired
+    private FrontierCheckpointService checkpointService;
+
+    @Test
+    void testUnfinishedJobIsRestored() {
+        // Контрольная точка общая с работающим краулером - ищем только своё задание
+        String id = "checkpoint-test-" + System.nanoTime();
+        CrawlJob job = new CrawlJob(id, Set.of("https://checkpoint-test.ru/"), 2, 50);
+        job.claimStart("checkpoint-test.ru");
+        CrawlRequest start = new CrawlRequest("https://checkpoint-test.ru/", 0, job);
+
+        checkpointService.jobStarted(job);
+        checkpointService.queued(start);
+        checkpointService.flush();
+        job.tryClaim("checkpoint-test.ru/a");
+        checkpointService.queued(start.next("https://checkpoint-test.ru/a"));
+        checkpointService.done(start);
+        checkpointService.flush();
+
+        FrontierCheckpointService.SavedJob saved = find(checkpointService.loadJobs(), id);
+        assertNotNull(saved);
+        assertEquals(2, saved.maxDepth());
+        assertEquals(2, saved.pagesClaimed());
+        assertEquals(Set.of("https://checkpoint-test.ru/"), saved.startUrls());
+        assertEquals(List.of(new FrontierCheckpointService.SavedRequest("https://checkpoint-test.ru/a", 1)),
+                saved.pending());
+
+        checkpointService.jobFinished(job);
+        checkpointService.flush();
+        assertNull(find(checkpointService.loadJobs(), id));
+    }
+
+    @Test
+    void testRequestQueuedAndDoneInOneBatchIsNotStored() {
+        String id = "checkpoint-test-" + System.nanoTime();
+        CrawlJob job = new CrawlJob(id, Set.of("https://checkpoint-test.ru/"), 1, 10);
+        CrawlRequest request = new CrawlRequest("https://checkpoint-test.ru/", 0, job);
+
+        checkpointService.queued(request);
+        checkpointService.done(request);
+        checkpointService.flush();
+
+        FrontierCheckpointService.SavedJob saved = find(checkpointService.loadJobs(), id);
+        assertNotNull(saved);
+        assertTrue(saved.pending().isEmpty());
+
+        checkpointService.jobFinished(job);
+        checkpointService.flush();
+    }
+
+    @Test
+    void testSpilledRequestsComeBackInOrder() {
+        CrawlJob job = new CrawlJob("checkpoint-test-" + System.nanoTime(), Set.of("https://checkpoint-test.ru/"), 3, 10);
+        CrawlRequest start = new CrawlRequest("https://checkpoint-test.ru/", 0, job);
+        List<CrawlRequest> overflow = List.of(start.next("https://checkpoint-test.ru/a"),
+                start.next("https://checkpoint-test.ru/b"));
+
+        assertTrue(checkpointService.spill(overflow));
+
+        List<FrontierCheckpointService.SpilledRequest> restored = checkpointService.unspill(1000).stream()
+                .filter(spilled -> spilled.jobId().equals(job.getId()))
+                .toList();
+        assertEquals(List.of(new FrontierCheckpointService.SpilledRequest(job.getId(), "https://checkpoint-test.ru/a", 1),
+                new FrontierCheckpointService.SpilledRequest(job.getId(), "https://checkpoint-test.ru/b", 1)), restored);
+        // Возвращённые запросы из таблицы удаляются
+        assertTrue(checkpointService.unspill(1000).stream().noneMatch(spilled -> spilled.jobId().equals(job.getId())));
+    }
+
+    @Test
+    void testSeenUrlsArePersistedPerJob() {
+        CrawlJob job = new CrawlJob("checkpoint-test-" + System.nanoTime(), Set.of("https://checkpoint-test.ru/"), 1, 10);
+        CrawlJob other = new CrawlJob("checkpoint-test-" + System.nanoTime(), Set.of("https://checkpoint-test.ru/"), 1, 10);
+        String key = "checkpoint-test.ru/seen/" + System.nanoTime();
+        String otherKey = key + "/other";
+        checkpointService.jobStarted(job);
+        checkpointService.jobStarted(other);
+        checkpointService.seen(job, key);
+        checkpointService.seen(other, otherKey);
+        checkpointService.flush();
+
+        Set<Long> loaded = new HashSet<>();
+        checkpointService.loadSeen(job.getId(), loaded::add);
+        assertEquals(Set.of(UrlSeenStore.fingerprint(key)), loaded);
+
+        // Завершённое задание уносит свои отпечатки, чужие остаются
+        checkpointService.jobFinished(job);
+        checkpointService.flush();
+        loaded.clear();
+        checkpointService.loadSeen(job.getId(), loaded::add);
+        assertTrue(loaded.isEmpty());
+        checkpointService.loadSeen(other.getId(), loaded::add);
+        assertEquals(Set.of(UrlSeenStore.fingerprint(otherKey)), loaded);
+
+        checkpointService.jobFinished(other);
+        checkpointService.flush();
+    }
+
+    private static FrontierCheckpointService.SavedJob find(List<FrontierCheckpointService.SavedJob> jobs, String id) {
+        return jobs.stream().filter(job -> job.id().equals(id)).findFirst().orElse(null);
+    }
+}
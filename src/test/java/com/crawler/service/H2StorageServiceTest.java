@@ -1,12 +1,25 @@
 package com.crawler.service;
 
 import com.crawler.model.ContactInfo;
+import com.crawler.model.ContactPage;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -16,6 +29,18 @@ class H2StorageServiceTest {
     @Autowired
     private H2StorageService storageService;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    Path cacheDirectory;
+
     @Test
     void testSaveAndRetrieveContactInfo() {
         ContactInfo contactInfo = new ContactInfo("http://test-save.com");
@@ -62,6 +87,56 @@ class H2StorageServiceTest {
         assertTrue(first.getPhones().size() >= 1);
     }
 
+    @Test
+    void testSortedPaging() {
+        for (int i = 0; i < 5; i++) {
+            ContactInfo contact = new ContactInfo("http://paging-test.com/" + i);
+            contact.setTitle("Paging " + i);
+            contact.setTimestamp(4_000_000_000_000L + i);
+            storageService.saveContactInfo(contact);
+        }
+
+        List<ContactInfo> newest = storageService.getContactsSortedBy("timestamp", false, 0, 2);
+        assertEquals(2, newest.size());
+        assertEquals("http://paging-test.com/4", newest.get(0).getUrl());
+        assertEquals("http://paging-test.com/3", newest.get(1).getUrl());
+
+        List<ContactInfo> next = storageService.getContactsSortedBy("timestamp", false, 2, 2);
+        assertEquals("http://paging-test.com/2", next.get(0).getUrl());
+        assertEquals("http://paging-test.com/1", next.get(1).getUrl());
+    }
+
+    @Test
+    void testCursorPaging() {
+        for (int i = 0; i < 5; i++) {
+            ContactInfo contact = new ContactInfo("http://cursor-test.com/" + i);
+            contact.setTimestamp(5_000_000_000_000L + i);
+            storageService.saveContactInfo(contact);
+        }
+
+        ContactPage first = storageService.getContactsPage("timestamp", false, null, 3);
+        assertEquals("http://cursor-test.com/4", first.getItems().get(0).getUrl());
+        assertEquals("http://cursor-test.com/2", first.getItems().get(2).getUrl());
+        assertNotNull(first.getNextCursor());
+
+        // Изменение строки курсора не сдвигает следующую страницу
+        ContactInfo moved = new ContactInfo("http://cursor-test.com/2");
+        moved.setTimestamp(1L);
+        storageService.saveContactInfo(moved);
+
+        ContactPage second = storageService.getContactsPage("timestamp", false, first.getNextCursor(), 2);
+        assertEquals("http://cursor-test.com/1", second.getItems().get(0).getUrl());
+        assertEquals("http://cursor-test.com/0", second.getItems().get(1).getUrl());
+
+        ContactPage filtered = storageService.filterContactsPage("cursor-test.com", null, 3);
+        assertEquals(3, filtered.getItems().size());
+        assertEquals("http://cursor-test.com/0", filtered.getItems().get(0).getUrl());
+        ContactPage rest = storageService.filterContactsPage("cursor-test.com", filtered.getNextCursor(), 3);
+        assertEquals(2, rest.getItems().size());
+        assertEquals("http://cursor-test.com/3", rest.getItems().get(0).getUrl());
+        assertNull(rest.getNextCursor());
+    }
+
     @Test
     void testFilterContacts() {
         ContactInfo contact = new ContactInfo("http://filter-test.com");
@@ -106,4 +181,311 @@ class H2StorageServiceTest {
         // После очистки данных может остаться 0 или больше записей (в зависимости от других тестов)
         assertNotNull(contacts);
     }
+
+    @Test
+    void testWriteBehindFlush() {
+        for (int i = 0; i < 50; i++) {
+            ContactInfo contact = new ContactInfo("http://write-behind-test.com/" + i);
+            contact.addPhone("+7999000000" + (i % 10));
+            storageService.saveContactInfo(contact);
+        }
+
+        storageService.flush();
+
+        Integer stored = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM contact_info WHERE url LIKE 'http://write-behind-test.com/%'", Integer.class);
+        assertEquals(50, stored);
+        assertEquals(0, storageService.getPendingWrites());
+    }
+
+    // Строка, которая не помещается в колонки, не должна уносить с собой остальную пачку
+    @Test
+    void testOversizeRowDoesNotDropBatch() {
+        String prefix = "http://oversize-test.com/" + System.nanoTime() + "/";
+        WriteBehindQueue<ContactInfo> queue = new WriteBehindQueue<>("oversize-test", 100, 100, 60_000,
+                batch -> ReflectionTestUtils.invokeMethod(storageService, "writeBatch", batch));
+        try {
+            for (int i = 0; i < 5; i++) {
+                ContactInfo contact = new ContactInfo(prefix + i);
+                // В обход saveContactInfo: проверяется запись пачки с уже попавшей в очередь плохой строкой
+                contact.setTitle(i == 2 ? "x".repeat(600) : "ok");
+                queue.put(contact);
+            }
+            queue.flush();
+            assertEquals(1, queue.getFailedItems());
+        } finally {
+            queue.close();
+        }
+        assertEquals(4, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM contact_info WHERE url LIKE ?", Integer.class, prefix + "%"));
+        // Этих строк нет в кэше общего сервиса: убираем, чтобы кэш и таблица не расходились для других тестов
+        jdbcTemplate.update("DELETE FROM contact_info WHERE url LIKE ?", prefix + "%");
+
+        // Через saveContactInfo значения подгоняются под колонки до кэша и очереди
+        ContactInfo oversize = new ContactInfo(prefix + "saved");
+        oversize.setTitle("x".repeat(600));
+        oversize.addPhone("+7" + "9".repeat(100));
+        oversize.addPhone("+79995550044");
+        oversize.addAddress("г. Москва, " + "д".repeat(3000));
+        storageService.saveContactInfo(oversize);
+        storageService.flush();
+
+        ContactInfo stored = storageService.findByPhone("+79995550044").get(0);
+        assertEquals(500, stored.getTitle().length());
+        assertEquals(Set.of("+79995550044"), stored.getPhones());
+        assertEquals(2000, stored.getAddresses().iterator().next().length());
+        assertEquals(500, storageService.getAllContacts().stream()
+                .filter(c -> c.getUrl().equals(prefix + "saved"))
+                .findFirst()
+                .orElseThrow()
+                .getTitle().length());
+    }
+
+    @Test
+    void testFindByPhoneAndEmail() {
+        ContactInfo contact = new ContactInfo("http://lookup-test.com");
+        contact.setTitle("Lookup Company");
+        contact.addPhone("+79995550011");
+        contact.addEmail("Lookup@Test.com");
+        contact.addAddress("г. Москва, ул. Индексная, 5");
+        storageService.saveContactInfo(contact);
+        storageService.flush();
+
+        List<ContactInfo> byPhone = storageService.findByPhone("+79995550011");
+        assertEquals(1, byPhone.size());
+        assertEquals("http://lookup-test.com", byPhone.get(0).getUrl());
+        assertTrue(byPhone.get(0).getEmails().contains("lookup@test.com"));
+        assertTrue(byPhone.get(0).getAddresses().contains("г. Москва, ул. Индексная, 5"));
+
+        List<ContactInfo> byEmail = storageService.findByEmail("lookup@test.com");
+        assertEquals(1, byEmail.size());
+        assertEquals("Lookup Company", byEmail.get(0).getTitle());
+
+        assertTrue(storageService.findByPhone("+70000000000").isEmpty());
+    }
+
+    @Test
+    void testQueryMetrics() {
+        assertTrue(storageService.awaitCacheWarm(30, TimeUnit.SECONDS));
+        long before = meterRegistry.get("crawler.query").tag("type", "filter").timer().count();
+        storageService.filterContacts("test");
+
+        assertEquals(before + 1, meterRegistry.get("crawler.query").tag("type", "filter").timer().count());
+        assertEquals(storageService.getDataCount(), meterRegistry.get("crawler.cache.size").gauge().value());
+    }
+
+    // Второй экземпляр над той же базой загружает контакты с наборами в mapped-кэш
+    @Test
+    void testLoadIntoMappedCache() {
+        ContactInfo contact = new ContactInfo("http://mapped-load-test.com/" + System.nanoTime());
+        contact.setTitle("Mapped Load");
+        contact.addPhone("+79995550022");
+        contact.addEmail("mapped@load-test.com");
+        storageService.saveContactInfo(contact);
+        storageService.flush();
+
+        MappedContactCache cache = new MappedContactCache(cacheDirectory, 1024 * 1024);
+        H2StorageService reloaded = new H2StorageService();
+        ReflectionTestUtils.setField(reloaded, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(reloaded, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(reloaded, "memoryCache", cache);
+        ReflectionTestUtils.setField(reloaded, "writeQueueCapacity", 100);
+        ReflectionTestUtils.setField(reloaded, "writeBatchSize", 10);
+        ReflectionTestUtils.setField(reloaded, "writeFlushIntervalMs", 200L);
+        reloaded.initialize();
+        try {
+            assertEquals(storageService.getDataCount(), reloaded.getDataCount());
+            ContactInfo loaded = reloaded.filterContacts("mapped@load-test").stream()
+                    .filter(c -> c.getUrl().equals(contact.getUrl()))
+                    .findFirst()
+                    .orElseThrow();
+            assertEquals("Mapped Load", loaded.getTitle());
+            assertEquals(Set.of("+79995550022"), loaded.getPhones());
+            assertTrue(cache.getMappedBytes() > 0);
+        } finally {
+            reloaded.shutdown();
+            cache.close();
+        }
+    }
+
+    // Второй запуск берёт кэш со снимка и дочитывает из H2 только изменения после него
+    @Test
+    void testWarmStartFromSnapshot() throws IOException {
+        String prefix = "http://snapshot-load-test.com/" + System.nanoTime() + "/";
+        ContactInfo first = new ContactInfo(prefix + "first");
+        first.setTitle("Before snapshot");
+        first.addPhone("+79995550033");
+        storageService.saveContactInfo(first);
+        storageService.flush();
+
+        Path snapshotPath = cacheDirectory.resolve("contacts.bin");
+        H2StorageService writer = newInstance(snapshotPath);
+        writer.initialize();
+        try {
+            assertTrue(writer.awaitCacheWarm(30, TimeUnit.SECONDS));
+            assertTrue(writer.writeCacheSnapshot());
+            assertFalse(writer.writeCacheSnapshot());
+        } finally {
+            ReflectionTestUtils.setField(writer, "snapshotEnabled", false);
+            writer.shutdown();
+        }
+
+        // Другие тесты сохраняют контакты с метками из будущего: изменения должны быть новее снимка
+        long after = Math.max(System.currentTimeMillis(), new ContactSnapshotFile(snapshotPath).info().maxTimestamp()) + 1;
+        ContactInfo updated = new ContactInfo(prefix + "first");
+        updated.setTitle("After snapshot");
+        updated.setTimestamp(after);
+        storageService.saveContactInfo(updated);
+        ContactInfo added = new ContactInfo(prefix + "second");
+        added.setTimestamp(after);
+        storageService.saveContactInfo(added);
+        storageService.flush();
+
+        H2StorageService reloaded = newInstance(snapshotPath);
+        reloaded.initialize();
+        try {
+            assertTrue(reloaded.awaitCacheWarm(30, TimeUnit.SECONDS));
+            assertEquals("snapshot", reloaded.getCacheStatus().get("source"));
+            assertEquals(storageService.getDataCount(), reloaded.getDataCount());
+            List<ContactInfo> loaded = reloaded.filterContacts("snapshot-load-test").stream()
+                    .filter(c -> c.getUrl().startsWith(prefix))
+                    .sorted(Comparator.comparing(ContactInfo::getUrl))
+                    .toList();
+            assertEquals(List.of(prefix + "first", prefix + "second"), urls(loaded, prefix));
+            assertEquals("After snapshot", loaded.get(0).getTitle());
+            assertTrue(loaded.get(0).getPhones().isEmpty());
+        } finally {
+            ReflectionTestUtils.setField(reloaded, "snapshotEnabled", false);
+            reloaded.shutdown();
+        }
+    }
+
+    // Снимок, разошедшийся с таблицей, отбрасывается, и кэш загружается из H2 целиком
+    @Test
+    void testStaleSnapshotFallsBackToH2() {
+        ContactInfo contact = new ContactInfo("http://stale-snapshot-test.com/" + System.nanoTime());
+        storageService.saveContactInfo(contact);
+        storageService.flush();
+
+        Path snapshotPath = cacheDirectory.resolve("contacts.bin");
+        H2StorageService writer = newInstance(snapshotPath);
+        writer.initialize();
+        try {
+            assertTrue(writer.awaitCacheWarm(30, TimeUnit.SECONDS));
+            writer.saveContactInfo(new ContactInfo("http://stale-snapshot-test.com/never-stored"));
+            assertTrue(writer.writeCacheSnapshot());
+            // Запись из снимка не дошла до H2, как при аварийной остановке
+            writer.flush();
+            jdbcTemplate.update("DELETE FROM contact_info WHERE url = ?", "http://stale-snapshot-test.com/never-stored");
+        } finally {
+            ReflectionTestUtils.setField(writer, "snapshotEnabled", false);
+            writer.shutdown();
+        }
+
+        H2StorageService reloaded = newInstance(snapshotPath);
+        reloaded.initialize();
+        try {
+            assertTrue(reloaded.awaitCacheWarm(30, TimeUnit.SECONDS));
+            assertEquals("h2", reloaded.getCacheStatus().get("source"));
+            assertEquals(storageService.getDataCount(), reloaded.getDataCount());
+        } finally {
+            ReflectionTestUtils.setField(reloaded, "snapshotEnabled", false);
+            reloaded.shutdown();
+        }
+    }
+
+    private H2StorageService newInstance(Path snapshotPath) {
+        H2StorageService instance = new H2StorageService();
+        ReflectionTestUtils.setField(instance, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(instance, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(instance, "writeQueueCapacity", 100);
+        ReflectionTestUtils.setField(instance, "writeBatchSize", 10);
+        ReflectionTestUtils.setField(instance, "writeFlushIntervalMs", 200L);
+        ReflectionTestUtils.setField(instance, "snapshotEnabled", true);
+        ReflectionTestUtils.setField(instance, "snapshotPath", snapshotPath.toString());
+        ReflectionTestUtils.setField(instance, "snapshotReplayOverlapMs", 0L);
+        return instance;
+    }
+
+    // Значения старых CLOB-колонок длиннее новых колонок не срывают миграцию
+    @Test
+    void testMigrateOversizeLegacyValues() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:legacy-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate legacyJdbc = new JdbcTemplate(dataSource);
+        legacyJdbc.execute("CREATE TABLE contact_info (url VARCHAR(1000) PRIMARY KEY, title VARCHAR(500), "
+                + "phones CLOB, emails CLOB, addresses CLOB, timestamp BIGINT)");
+        legacyJdbc.update("INSERT INTO contact_info VALUES (?, ?, ?, ?, ?, ?)", "http://legacy.com", "Legacy",
+                "+79995550055;;+7" + "9".repeat(100), "legacy@test.com",
+                "г. Москва, " + "д".repeat(3000), 1L);
+
+        H2StorageService migrated = new H2StorageService();
+        ReflectionTestUtils.setField(migrated, "jdbcTemplate", legacyJdbc);
+        ReflectionTestUtils.setField(migrated, "transactionTemplate",
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+        ReflectionTestUtils.setField(migrated, "writeQueueCapacity", 100);
+        ReflectionTestUtils.setField(migrated, "writeBatchSize", 10);
+        ReflectionTestUtils.setField(migrated, "writeFlushIntervalMs", 200L);
+        migrated.initialize();
+        try {
+            ContactInfo contact = migrated.findByEmail("legacy@test.com").get(0);
+            assertEquals(Set.of("+79995550055"), contact.getPhones());
+            assertEquals(2000, contact.getAddresses().iterator().next().length());
+            assertEquals(0, legacyJdbc.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.COLUMNS "
+                    + "WHERE TABLE_NAME = 'CONTACT_INFO' AND COLUMN_NAME = 'PHONES'", Integer.class));
+        } finally {
+            migrated.shutdown();
+            legacyJdbc.execute("SHUTDOWN");
+        }
+    }
+
+    // Пока кэш не прогрет, те же запросы обслуживает H2 - с тем же порядком и теми же курсорами
+    @Test
+    void testColdCacheServesFromH2() {
+        String prefix = "http://cold-read-test.com/" + System.nanoTime() + "/";
+        for (int i = 0; i < 5; i++) {
+            ContactInfo contact = new ContactInfo(prefix + i);
+            contact.setTitle(i == 2 ? null : "Cold " + (i % 3));
+            contact.setTimestamp(1_000 + i % 2);
+            for (int p = 0; p < i; p++) {
+                contact.addPhone("+7999111" + i + p);
+            }
+            storageService.saveContactInfo(contact);
+        }
+        assertTrue(storageService.awaitCacheWarm(30, TimeUnit.SECONDS));
+
+        List<List<String>> warm = readAll(prefix);
+        ReflectionTestUtils.setField(storageService, "cacheWarm", false);
+        try {
+            assertEquals(warm, readAll(prefix));
+            assertEquals(5, storageService.filterContacts("cold-read-test").stream()
+                    .filter(c -> c.getUrl().startsWith(prefix)).count());
+            assertEquals(storageService.getAllContacts().size(), storageService.getDataCount());
+        } finally {
+            ReflectionTestUtils.setField(storageService, "cacheWarm", true);
+        }
+    }
+
+    private List<List<String>> readAll(String prefix) {
+        List<List<String>> result = new ArrayList<>();
+        for (String field : List.of("url", "title", "phones", "timestamp")) {
+            for (boolean ascending : List.of(true, false)) {
+                result.add(urls(storageService.getContactsSortedBy(field, ascending), prefix));
+                // Постранично по две записи: курсоры одного режима понимает и другой
+                List<String> paged = new ArrayList<>();
+                String cursor = null;
+                do {
+                    ContactPage page = storageService.getContactsPage(field, ascending, cursor, 2);
+                    paged.addAll(urls(page.getItems(), prefix));
+                    cursor = page.getNextCursor();
+                } while (cursor != null);
+                result.add(paged);
+            }
+        }
+        return result;
+    }
+
+    private static List<String> urls(List<ContactInfo> contacts, String prefix) {
+        return contacts.stream().map(ContactInfo::getUrl).filter(url -> url.startsWith(prefix)).toList();
+    }
 }
@@ -0,0 +1,201 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedContactCacheTest {
+
+    @TempDir
+    Path directory;
+
+    private MappedContactCache cache;
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.close();
+        }
+    }
+
+    @Test
+    void testRoundTrip() {
+        cache = new MappedContactCache(directory, 4096);
+        ContactInfo contact = new ContactInfo("http://mapped-test.com/контакты");
+        contact.setTitle("ООО Ромашка");
+        contact.setTimestamp(1_700_000_000_000L);
+        contact.addPhone("+79991234567");
+        contact.addPhone("+79997654321");
+        contact.addEmail("info@mapped-test.com");
+        contact.addAddress("г. Москва, ул. Тверская, д. 1");
+
+        assertNull(cache.put(contact));
+        ContactInfo stored = cache.get("http://mapped-test.com/контакты");
+
+        assertEquals("ООО Ромашка", stored.getTitle());
+        assertEquals(1_700_000_000_000L, stored.getTimestamp());
+        assertEquals(Set.of("+79991234567", "+79997654321"), stored.getPhones());
+        assertEquals(Set.of("info@mapped-test.com"), stored.getEmails());
+        assertEquals(Set.of("г. Москва, ул. Тверская, д. 1"), stored.getAddresses());
+        assertNull(cache.get("http://missing.com"));
+    }
+
+    @Test
+    void testNullTitleAndEmptySets() {
+        cache = new MappedContactCache(directory, 4096);
+        cache.put(new ContactInfo("http://empty.com"));
+
+        ContactInfo stored = cache.get("http://empty.com");
+        assertNull(stored.getTitle());
+        assertTrue(stored.getPhones().isEmpty());
+        assertTrue(stored.getAddresses().isEmpty());
+    }
+
+    @Test
+    void testUpdateReturnsPreviousAndKeepsSnapshot() {
+        cache = new MappedContactCache(directory, 4096);
+        cache.put(contact("http://a.com", "1"));
+        ContactCache.Snapshot before = cache.snapshot();
+
+        ContactInfo previous = cache.put(contact("http://a.com", "2"));
+        cache.put(contact("http://b.com", "1"));
+
+        assertEquals("1", previous.getTitle());
+        assertEquals("2", cache.get("http://a.com").getTitle());
+        assertEquals(1, before.contacts().size());
+        assertEquals("1", before.contacts().get(0).getTitle());
+        assertEquals(2, cache.snapshot().contacts().size());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testRecordsSpanManySegments() {
+        cache = new MappedContactCache(directory, 4096);
+        for (int i = 0; i < 2000; i++) {
+            cache.put(contact("http://segment-test.com/" + i, "title " + i));
+        }
+
+        assertTrue(cache.getSegmentCount() > 10);
+        assertEquals(2000, cache.snapshot().contacts().size());
+        assertEquals("title 1234", cache.get("http://segment-test.com/1234").getTitle());
+    }
+
+    @Test
+    void testCompactionReclaimsOverwrittenVersions() throws IOException {
+        cache = new MappedContactCache(directory, 4096);
+        for (int i = 0; i < 10; i++) {
+            cache.put(contact("http://compact-test.com/" + i, "0"));
+        }
+        ContactCache.Snapshot before = cache.snapshot();
+
+        for (int n = 1; n <= 500; n++) {
+            cache.put(contact("http://compact-test.com/" + (n % 10), String.valueOf(n)));
+        }
+
+        assertTrue(cache.getCompactions() > 0);
+        // После сжатия остаются последние версии и то, что перезаписано с тех пор
+        assertTrue(cache.getDeadBytes() * 2 < cache.getMappedBytes() || cache.getDeadBytes() < 4096);
+        assertEquals(10, cache.size());
+        assertEquals("500", cache.get("http://compact-test.com/0").getTitle());
+        assertEquals("499", cache.get("http://compact-test.com/9").getTitle());
+        assertEquals(10, cache.snapshot().contacts().size());
+        // Снимок до сжатия дочитывает удалённое поколение через отображение
+        assertEquals("0", before.contacts().get(3).getTitle());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(cache.getSegmentCount(), files.count());
+        }
+    }
+
+    @Test
+    void testRecordLargerThanSegmentRejected() {
+        cache = new MappedContactCache(directory, 1024);
+        assertThrows(IllegalArgumentException.class, () -> cache.put(contact("http://big.com", "x".repeat(2000))));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testClearAndCloseRemoveSegments() throws IOException {
+        cache = new MappedContactCache(directory, 4096);
+        cache.put(contact("http://a.com", "1"));
+        ContactCache.Snapshot before = cache.snapshot();
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertTrue(cache.snapshot().contacts().isEmpty());
+        // Прежний снимок читает уже удалённый сегмент через отображение
+        assertEquals("1", before.contacts().get(0).getTitle());
+
+        cache.put(contact("http://b.com", "1"));
+        cache.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        cache = null;
+    }
+
+    @Test
+    void testSnapshotsArePointInTimeUnderConcurrentWrites() throws InterruptedException {
+        cache = new MappedContactCache(directory, 64 * 1024);
+        cache.put(contact("http://a.com", "0"));
+        cache.put(contact("http://b.com", "0"));
+        for (int i = 0; i < 200; i++) {
+            cache.put(contact("http://filler-" + i + ".com", "0"));
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (int n = 1; running.get() && n < 200_000; n++) {
+                cache.put(contact("http://a.com", String.valueOf(n)));
+                cache.put(contact("http://b.com", String.valueOf(n)));
+            }
+        });
+        AtomicReference<String> violation = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(new Thread(() -> {
+                for (int i = 0; i < 300 && violation.get() == null; i++) {
+                    Map<String, Long> titles = cache.snapshot().contacts().stream()
+                            .filter(contact -> !contact.getUrl().startsWith("http://filler-"))
+                            .collect(Collectors.toMap(ContactInfo::getUrl, contact -> Long.parseLong(contact.getTitle())));
+                    long a = titles.get("http://a.com");
+                    long b = titles.get("http://b.com");
+                    if (a != b && a != b + 1) {
+                        violation.set("a=" + a + ", b=" + b);
+                    }
+                }
+            }));
+        }
+
+        writer.start();
+        readers.forEach(Thread::start);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        running.set(false);
+        writer.join();
+
+        assertNull(violation.get());
+        assertEquals(202, cache.size());
+    }
+
+    private static ContactInfo contact(String url, String title) {
+        ContactInfo contact = new ContactInfo(url);
+        contact.setTitle(title);
+        return contact;
+    }
+}
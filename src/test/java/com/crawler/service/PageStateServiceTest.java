@@ -0,0 +1,60 @@
+package com.crawler.service;
+
+import com.crawler.model.PageState;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class PageStateServiceTest {
+
+    @Autowired
+    private PageStateService pageStateService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testRecordFetchDetectsChanges() {
+        String url = "http://page-state-test.com/" + System.nanoTime();
+        FetchResult result = new FetchResult(200, "<p>a</p>", "\"abc\"", null);
+
+        assertTrue(pageStateService.recordFetch(url, result, 1L));
+        pageStateService.recordContent(url, 1L);
+        assertFalse(pageStateService.recordFetch(url, result, 1L));
+        assertTrue(pageStateService.recordFetch(url, result, 2L));
+        pageStateService.recordContent(url, 2L);
+        pageStateService.recordNotModified(url);
+
+        PageState state = pageStateService.get(url);
+        assertEquals("\"abc\"", state.getEtag());
+        assertEquals(2L, state.getContentHash());
+        assertEquals(4, state.getFetchCount());
+        assertEquals(1, state.getChangeCount());
+
+        pageStateService.flush();
+        Integer fetchCount = jdbcTemplate.queryForObject(
+                "SELECT fetch_count FROM page_state WHERE url = ?", Integer.class, url);
+        assertEquals(4, fetchCount);
+    }
+
+    // Контакты страницы не записались - тот же текст при следующей загрузке обрабатывается заново
+    @Test
+    void testForgottenContentCountsAsNew() {
+        String url = "http://page-state-test.com/forget/" + System.nanoTime();
+        FetchResult result = new FetchResult(200, "<p>a</p>", null, null);
+
+        assertTrue(pageStateService.recordFetch(url, result, 1L));
+        // Хэш не сохранён, пока контакты не приняты к записи
+        assertTrue(pageStateService.recordFetch(url, result, 1L));
+        pageStateService.recordContent(url, 1L);
+        assertFalse(pageStateService.recordFetch(url, result, 1L));
+
+        pageStateService.forgetContent(url);
+        assertTrue(pageStateService.recordFetch(url, result, 1L));
+        assertEquals(0, pageStateService.get(url).getChangeCount());
+    }
+}
@@ -0,0 +1,98 @@
+package com.crawler.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PipelineStageTest {
+
+    @Test
+    void testSubmitBlocksWhenQueueIsFull() throws InterruptedException {
+        PipelineStage stage = new PipelineStage("test", 1, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        stage.execute(() -> {
+            started.countDown();
+            await(release);
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        stage.execute(() -> { });
+        stage.execute(() -> { });
+        assertEquals(2, stage.getQueueDepth());
+
+        // Третья задача ждёт, пока обработчик не освободит место в очереди
+        Thread producer = new Thread(() -> stage.execute(() -> { }));
+        producer.start();
+        producer.join(300);
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertEquals(1, stage.getBlockedSubmits());
+
+        stage.shutdown();
+        waitTerminated(stage);
+        assertEquals(4, stage.getProcessed());
+    }
+
+    @Test
+    void testParallelism() throws InterruptedException {
+        PipelineStage stage = new PipelineStage("test", 4, 16);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(16);
+
+        for (int i = 0; i < 16; i++) {
+            stage.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(maxRunning.get() > 1);
+        assertTrue(maxRunning.get() <= 4);
+        stage.shutdownNow();
+    }
+
+    @Test
+    void testRejectsAfterShutdown() {
+        PipelineStage stage = new PipelineStage("test", 1, 1);
+        stage.shutdown();
+
+        assertThrows(RejectedExecutionException.class, () -> stage.execute(() -> { }));
+    }
+
+    private static void waitTerminated(PipelineStage stage) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!stage.isTerminated() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(stage.isTerminated());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.crawler.service;
+
+import com.crawler.model.PageState;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecrawlQueueTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private final RecrawlQueue queue = new RecrawlQueue(HOUR / 4, 7 * 24 * HOUR, HOUR);
+
+    @Test
+    void testVolatilePagesAreRevisitedSooner() {
+        PageState news = state("https://news.ru/", 10, 9);
+        PageState about = state("https://company.ru/about", 10, 1);
+        PageState stable = state("https://company.ru/contacts", 10, 0);
+
+        long newsInterval = queue.intervalFor(news);
+        long aboutInterval = queue.intervalFor(about);
+        long stableInterval = queue.intervalFor(stable);
+
+        assertTrue(newsInterval < aboutInterval);
+        assertTrue(aboutInterval < stableInterval);
+        // Без изменений интервал растёт с числом проверок, но не выше максимума
+        assertEquals(10 * HOUR, stableInterval);
+        assertEquals(7 * 24 * HOUR, queue.intervalFor(state("https://company.ru/", 1000, 0)));
+        assertEquals(HOUR, queue.intervalFor(null));
+        assertEquals(HOUR / 4, queue.intervalFor(state("https://ticker.ru/", 100, 100)));
+    }
+
+    @Test
+    void testPollDueRespectsOrderAndLimit() {
+        queue.schedule("https://a.ru/", 300);
+        queue.schedule("https://b.ru/", 100);
+        queue.schedule("https://c.ru/", 200);
+        queue.schedule("https://d.ru/", 10_000);
+        // Повторное планирование заменяет прежний срок
+        queue.schedule("https://a.ru/", 50);
+
+        assertEquals(List.of("https://a.ru/", "https://b.ru/"), queue.pollDue(1000, 2));
+        assertEquals(List.of("https://c.ru/"), queue.pollDue(1000, 10));
+        assertTrue(queue.pollDue(1000, 10).isEmpty());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void testChangeRateEstimate() {
+        // Каждая проверка находила изменение: оценка выше наивной X / (n * I)
+        assertTrue(RecrawlQueue.changeRate(10, 10, HOUR) > 1.0 / HOUR);
+        assertEquals(0.0, RecrawlQueue.changeRate(10, 0, HOUR), 1e-15);
+    }
+
+    // fetches загрузок с интервалом в час, в changes из них найдено изменение
+    private static PageState state(String url, int fetches, int changes) {
+        PageState state = new PageState(url);
+        state.setFirstCrawled(0);
+        state.setLastCrawled((fetches - 1) * HOUR);
+        state.setFetchCount(fetches);
+        state.setChangeCount(changes);
+        return state;
+    }
+}
@@ -1,10 +1,16 @@
 package com.crawler.service;
 
+import com.sun.net.httpserver.HttpServer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -14,6 +20,18 @@ class SchedulerServiceTest {
     @Autowired
     private SchedulerService schedulerService;
 
+    @Autowired
+    private CrawlerService crawlerService;
+
+    @Autowired
+    private H2StorageService storageService;
+
+    @Autowired
+    private PageStateService pageStateService;
+
+    @Autowired
+    private UrlCanonicalizer urlCanonicalizer;
+
     @Test
     void testSchedulerInitialization() {
         assertNotNull(schedulerService);
@@ -44,4 +62,62 @@ class SchedulerServiceTest {
             schedulerService.statusReport();
         });
     }
-}
\ No newline at end of file
+
+    // URL с наступившим сроком не возвращается в очередь на следующий тик, пока обход ещё идёт
+    @Test
+    void testDueUrlNotPolledAgainBeforeCrawlCompletes() throws Exception {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/recrawl", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = "<p>recrawl</p>".getBytes(StandardCharsets.UTF_8);
+            try (exchange) {
+                exchange.getResponseHeaders().add("Content-Type", "text/html");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        try {
+            SchedulerService scheduler = new SchedulerService(100, 60_000, 100);
+            ReflectionTestUtils.setField(scheduler, "crawlerService", crawlerService);
+            ReflectionTestUtils.setField(scheduler, "storageService", storageService);
+            ReflectionTestUtils.setField(scheduler, "pageStateService", pageStateService);
+            ReflectionTestUtils.setField(scheduler, "urlCanonicalizer", urlCanonicalizer);
+            ReflectionTestUtils.setField(scheduler, "maxPages", 10);
+            ReflectionTestUtils.setField(scheduler, "fetchBudgetPerHour", 3_600_000);
+            ReflectionTestUtils.setField(scheduler, "budget", 100.0);
+            // Очередь только с тестовым URL, без истории страниц из H2
+            ReflectionTestUtils.setField(scheduler, "initialized", true);
+            String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/recrawl";
+            scheduler.addStartUrl(url);
+
+            scheduler.scheduledCrawling();
+            awaitRequests(requests, 1);
+            while (pageStateService.get(url) == null) {
+                Thread.sleep(10);
+            }
+            // Срок по первой загрузке наступает через 100 мс
+            Thread.sleep(200);
+
+            scheduler.scheduledCrawling();
+            scheduler.scheduledCrawling();
+            awaitRequests(requests, 2);
+            // Повторная выдача URL дала бы третью загрузку после задержки между запросами к хосту
+            Thread.sleep(2500);
+            assertEquals(2, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void awaitRequests(AtomicInteger requests, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (requests.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, requests.get());
+    }
+}
@@ -0,0 +1,49 @@
+package com.crawler.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlCanonicalizerTest {
+
+    private final UrlCanonicalizer canonicalizer = new UrlCanonicalizer("utm_*,gclid");
+
+    @Test
+    void testCanonicalize() {
+        assertEquals("https://example.ru/", canonicalizer.canonicalize("HTTPS://Example.RU:443"));
+        assertEquals("http://example.ru:8080/a", canonicalizer.canonicalize("http://example.ru:8080/a#top"));
+        assertEquals("https://example.ru/c", canonicalizer.canonicalize("https://example.ru/a/./b/../../c"));
+        assertEquals("https://example.ru/a?b=2&x=1",
+                canonicalizer.canonicalize("https://example.ru/a?x=1&utm_source=mail&b=2&gclid=abc&UTM_Medium=cpc"));
+        assertEquals("https://example.ru/a", canonicalizer.canonicalize("https://example.ru/a?utm_campaign=spring"));
+        assertEquals("https://example.ru/~user/%2F", canonicalizer.canonicalize("https://example.ru/%7euser/%2f"));
+        assertEquals("https://example.ru/shop", canonicalizer.canonicalize("https://example.ru/shop;jsessionid=A1B2"));
+    }
+
+    @Test
+    void testRejectsNonHttp() {
+        assertNull(canonicalizer.canonicalize("mailto:info@example.ru"));
+        assertNull(canonicalizer.canonicalize("tel:+74951234567"));
+        assertNull(canonicalizer.canonicalize("javascript:void(0)"));
+        assertNull(canonicalizer.canonicalize("ftp://example.ru/file"));
+        assertNull(canonicalizer.canonicalize("https:///path"));
+        assertNull(canonicalizer.canonicalize(null));
+    }
+
+    @Test
+    void testDedupKeyFoldsVariants() {
+        String key = key("https://example.ru/contacts");
+        assertEquals("example.ru/contacts", key);
+        assertEquals(key, key("http://www.example.ru/contacts/"));
+        assertEquals(key, key("HTTP://WWW.EXAMPLE.RU:80/contacts#map"));
+        assertEquals(key, key("https://example.ru/contacts?utm_source=yandex"));
+
+        assertEquals("example.ru", key("https://www.example.ru"));
+        assertEquals("www.ru", key("https://www.ru/"));
+        assertNotEquals(key, key("https://example.ru/contacts?page=2"));
+    }
+
+    private String key(String url) {
+        return canonicalizer.dedupKey(canonicalizer.canonicalize(url));
+    }
+}
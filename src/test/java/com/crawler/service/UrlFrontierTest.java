@@ -0,0 +1,105 @@
+package com.crawler.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlFrontierTest {
+
+    @Test
+    void testHostsAreInterleaved() throws InterruptedException {
+        UrlFrontier frontier = new UrlFrontier(0);
+        for (int i = 0; i < 3; i++) {
+            frontier.offer(new CrawlRequest("https://big-site.ru/page" + i, 0, null));
+        }
+        frontier.offer(new CrawlRequest("https://small-site.ru/", 0, null));
+
+        assertEquals(4, frontier.size());
+        assertEquals(2, frontier.getReadyHosts());
+
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            order.add(frontier.take().url());
+        }
+
+        // Маленький сайт не ждёт, пока обойдут все страницы большого
+        assertTrue(order.indexOf("https://small-site.ru/") < 3);
+        assertEquals(0, frontier.size());
+    }
+
+    @Test
+    void testCrawlDelayPerHost() throws InterruptedException {
+        UrlFrontier frontier = new UrlFrontier(200);
+        frontier.offer(new CrawlRequest("https://site.ru/a", 0, null));
+        frontier.offer(new CrawlRequest("https://site.ru/b", 0, null));
+        frontier.offer(new CrawlRequest("https://other.ru/a", 0, null));
+
+        long start = System.nanoTime();
+        frontier.take();
+        frontier.take();
+        long twoHosts = System.nanoTime() - start;
+        frontier.take();
+        long sameHost = System.nanoTime() - start;
+
+        assertTrue(twoHosts < 150_000_000L);
+        assertTrue(sameHost >= 190_000_000L);
+    }
+
+    @Test
+    void testClear() {
+        UrlFrontier frontier = new UrlFrontier(0);
+        frontier.offer(new CrawlRequest("https://site.ru/a", 0, null));
+        frontier.clear();
+
+        assertEquals(0, frontier.size());
+        assertEquals(0, frontier.getReadyHosts());
+    }
+
+    @Test
+    void testRemoveIf() throws InterruptedException {
+        UrlFrontier frontier = new UrlFrontier(0);
+        frontier.offer(new CrawlRequest("https://site.ru/a", 0, null));
+        frontier.offer(new CrawlRequest("https://site.ru/b", 1, null));
+        frontier.offer(new CrawlRequest("https://other.ru/a", 1, null));
+
+        assertEquals(2, frontier.removeIf(request -> request.depth() == 1).size());
+        assertEquals(1, frontier.size());
+        // Хост, у которого не осталось запросов, больше не выдаётся
+        assertEquals(1, frontier.getReadyHosts());
+        assertEquals("https://site.ru/a", frontier.take().url());
+    }
+
+    @Test
+    void testCapacity() {
+        UrlFrontier frontier = new UrlFrontier(0, 2);
+        frontier.offer(new CrawlRequest("https://site.ru/a", 0, null));
+        assertFalse(frontier.isFull());
+
+        frontier.offer(new CrawlRequest("https://site.ru/b", 0, null));
+        assertTrue(frontier.isFull());
+        assertEquals(2, frontier.getCapacity());
+    }
+
+    @Test
+    void testDrainedHostsAreEvictedAfterCrawlDelay() throws InterruptedException {
+        UrlFrontier frontier = new UrlFrontier(100);
+        for (int i = 0; i < 20; i++) {
+            frontier.offer(new CrawlRequest("https://host-" + i + ".ru/", 0, null));
+        }
+        for (int i = 0; i < 20; i++) {
+            frontier.take();
+        }
+
+        // Пока задержка не истекла, хост помнит время следующего обращения
+        assertEquals(20, frontier.getTrackedHosts());
+        Thread.sleep(150);
+        assertEquals(0, frontier.getTrackedHosts());
+
+        frontier.offer(new CrawlRequest("https://host-1.ru/next", 0, null));
+        assertEquals(1, frontier.getTrackedHosts());
+        assertEquals("https://host-1.ru/next", frontier.take().url());
+    }
+}
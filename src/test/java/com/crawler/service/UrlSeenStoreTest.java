@@ -0,0 +1,98 @@
+package com.crawler.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlSeenStoreTest {
+
+    @Test
+    void testExactStoreAddsOnce() {
+        UrlSeenStore store = new FingerprintUrlSeenStore();
+
+        assertTrue(store.add("https://example.ru/a"));
+        assertFalse(store.add("https://example.ru/a"));
+        assertTrue(store.contains("https://example.ru/a"));
+        assertFalse(store.contains("https://example.ru/b"));
+        assertEquals(1, store.size());
+
+        store.clear();
+        assertFalse(store.contains("https://example.ru/a"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testExactStoreConcurrentAdd() throws Exception {
+        UrlSeenStore store = new FingerprintUrlSeenStore();
+        int urls = 200_000;
+        int threads = 8;
+
+        // Все потоки добавляют одни и те же URL: каждый должен быть принят ровно один раз
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(pool.submit(() -> {
+                int added = 0;
+                for (int i = 0; i < urls; i++) {
+                    if (store.add("https://site-" + (i % 100) + ".ru/page/" + i)) {
+                        added++;
+                    }
+                }
+                return added;
+            }));
+        }
+        int total = 0;
+        for (Future<Integer> result : results) {
+            total += result.get();
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(urls, total);
+        assertEquals(urls, store.size());
+        for (int i = 0; i < urls; i++) {
+            assertTrue(store.contains("https://site-" + (i % 100) + ".ru/page/" + i));
+        }
+    }
+
+    @Test
+    void testBloomStoreFalsePositiveRate() {
+        int expected = 100_000;
+        BloomUrlSeenStore store = new BloomUrlSeenStore(expected, 0.01);
+        for (int i = 0; i < expected; i++) {
+            store.add("https://bloom.ru/seen/" + i);
+        }
+
+        // Добавленные URL не теряются никогда
+        for (int i = 0; i < expected; i++) {
+            assertTrue(store.contains("https://bloom.ru/seen/" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < expected; i++) {
+            if (store.contains("https://bloom.ru/unseen/" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < expected * 0.02, "False positives: " + falsePositives);
+        assertEquals(7, store.getHashCount());
+    }
+
+    @Test
+    void testBloomStoreClear() {
+        UrlSeenStore store = new BloomUrlSeenStore(1000, 0.001);
+        assertTrue(store.add("https://example.ru/"));
+        assertFalse(store.add("https://example.ru/"));
+
+        store.clear();
+        assertFalse(store.contains("https://example.ru/"));
+        assertEquals(0, store.size());
+    }
+}
@@ -0,0 +1,132 @@
+package com.crawler.service;
+
+import com.crawler.model.ContactInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VersionedContactStoreTest {
+
+    private final VersionedContactStore store = new VersionedContactStore();
+
+    @Test
+    void testPutReturnsPreviousVersion() {
+        ContactInfo first = contact("http://versioned-test.com", "1");
+        ContactInfo second = contact("http://versioned-test.com", "2");
+
+        assertNull(store.put(first));
+        assertSame(first, store.put(second));
+        assertSame(second, store.get("http://versioned-test.com"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testSnapshotIsNotAffectedByLaterWrites() {
+        store.put(contact("http://a.com", "1"));
+        ContactCache.Snapshot before = store.snapshot();
+
+        store.put(contact("http://a.com", "2"));
+        store.put(contact("http://b.com", "1"));
+
+        assertEquals(1, before.contacts().size());
+        assertEquals("1", before.contacts().get(0).getTitle());
+        assertThrows(UnsupportedOperationException.class, () -> before.contacts().add(contact("http://c.com", "1")));
+
+        ContactCache.Snapshot after = store.snapshot();
+        assertTrue(after.version() > before.version());
+        assertEquals(2, after.contacts().size());
+    }
+
+    @Test
+    void testSnapshotReusedUntilNextWrite() {
+        store.put(contact("http://a.com", "1"));
+        ContactCache.Snapshot first = store.snapshot();
+        assertSame(first, store.snapshot());
+
+        store.put(contact("http://a.com", "2"));
+        assertNotSame(first, store.snapshot());
+    }
+
+    @Test
+    void testChangeCallbackSeesPreviousAndCurrent() {
+        List<String> changes = new ArrayList<>();
+        store.put(contact("http://a.com", "1"), (previous, current) ->
+                changes.add((previous == null ? "-" : previous.getTitle()) + ">" + current.getTitle()));
+        store.put(contact("http://a.com", "2"), (previous, current) ->
+                changes.add((previous == null ? "-" : previous.getTitle()) + ">" + current.getTitle()));
+
+        assertEquals(List.of("->1", "1>2"), changes);
+    }
+
+    @Test
+    void testClear() {
+        store.put(contact("http://a.com", "1"));
+        ContactCache.Snapshot before = store.snapshot();
+
+        store.clear();
+
+        assertEquals(0, store.size());
+        assertNull(store.get("http://a.com"));
+        assertTrue(store.snapshot().contacts().isEmpty());
+        assertEquals(1, before.contacts().size());
+    }
+
+    // Писатель обновляет a, затем b одним и тем же номером. Снимок на один момент времени видит
+    // либо одинаковые номера, либо a на один впереди; поэлементная копия могла бы увидеть b впереди a
+    @Test
+    void testSnapshotsArePointInTimeUnderConcurrentWrites() throws InterruptedException {
+        store.put(contact("http://a.com", "0"));
+        store.put(contact("http://b.com", "0"));
+        for (int i = 0; i < 1000; i++) {
+            store.put(contact("http://filler-" + i + ".com", "0"));
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            for (int n = 1; running.get(); n++) {
+                store.put(contact("http://a.com", String.valueOf(n)));
+                store.put(contact("http://b.com", String.valueOf(n)));
+            }
+        });
+        AtomicReference<String> violation = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(new Thread(() -> {
+                for (int i = 0; i < 2000 && violation.get() == null; i++) {
+                    Map<String, Long> titles = store.snapshot().contacts().stream()
+                            .filter(contact -> !contact.getUrl().startsWith("http://filler-"))
+                            .collect(Collectors.toMap(ContactInfo::getUrl, contact -> Long.parseLong(contact.getTitle())));
+                    long a = titles.get("http://a.com");
+                    long b = titles.get("http://b.com");
+                    if (a != b && a != b + 1) {
+                        violation.set("a=" + a + ", b=" + b);
+                    }
+                }
+            }));
+        }
+
+        writer.start();
+        readers.forEach(Thread::start);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        running.set(false);
+        writer.join();
+
+        assertNull(violation.get());
+        assertEquals(1002, store.size());
+    }
+
+    private static ContactInfo contact(String url, String title) {
+        ContactInfo contact = new ContactInfo(url);
+        contact.setTitle(title);
+        return contact;
+    }
+}